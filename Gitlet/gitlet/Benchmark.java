@@ -0,0 +1,645 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+/** Micro-benchmarks for parts of Gitlet whose speed matters on large
+ *  repositories.  Usage: java gitlet.Benchmark NAME..., where each NAME
+ *  is one of the benchmarks below (all of them if none is given).  Each
+ *  benchmark prints one line per variant it measures.
+ *  @author Kerem Dilmen
+ */
+public class Benchmark {
+
+    /** Runs the benchmarks named in ARGS. */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            args = new String[] { "codec", "tree", "mergebase", "scan",
+                                  "durability", "find", "log", "diff",
+                                  "changes", "renames", "fetch", "graph" };
+        }
+        for (String name : args) {
+            switch (name) {
+            case "codec":
+                codec();
+                break;
+            case "tree":
+                tree();
+                break;
+            case "mergebase":
+                mergeBase();
+                break;
+            case "scan":
+                scan();
+                break;
+            case "durability":
+                durability();
+                break;
+            case "find":
+                find();
+                break;
+            case "log":
+                log();
+                break;
+            case "diff":
+                diff();
+                break;
+            case "changes":
+                changes();
+                break;
+            case "renames":
+                renames();
+                break;
+            case "fetch":
+                fetch();
+                break;
+            case "graph":
+                graph();
+                break;
+            default:
+                System.out.println("No benchmark named " + name + ".");
+            }
+        }
+    }
+
+    /** Compares Java serialization of the list of files of a commit with
+     *  10000 files, as older versions of Gitlet stored it, against the
+     *  binary format of its tree, and the decoding of a whole commit
+     *  against decoding only its header. */
+    static void codec() {
+        final int files = 10000, reps = 200;
+        TreeMap<String, String> blobs = new TreeMap<String, String>();
+        Tree tree = new Tree();
+        for (int i = 0; i < files; i += 1) {
+            blobs.put("file" + i + ".txt", Utils.sha1("contents " + i));
+        }
+        tree.getFiles().putAll(blobs);
+        byte[] serialized = Utils.serialize(blobs);
+        byte[] encoded = tree.encode();
+        Commit commit = new Commit(Utils.sha1((Object) encoded), "benchmark",
+                                   Utils.sha1("parent"), 1, null);
+        byte[] header = commit.encode();
+
+        time("codec", "java serialization", reps, serialized.length,
+             () -> Utils.deserialize(serialized, TreeMap.class));
+        time("codec", "binary tree decode", reps, encoded.length,
+             () -> Tree.decode(encoded));
+        time("codec", "binary commit decode", reps * 100, header.length,
+             () -> Commit.decode(header));
+    }
+
+    /** Compares the cost of committing a change to one file of a
+     *  repository of 100000 files in 1000 directories when the new tree
+     *  is built from scratch, as when every commit listed all its files,
+     *  and when only the trees on the path to the file are rewritten.
+     *  The size shown is that of the list of all files, which is what
+     *  each commit used to store. */
+    static void tree() {
+        final int dirs = 1000, perDir = 100, reps = 20;
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        TreeMap<String, String> files = new TreeMap<String, String>();
+        for (int i = 0; i < dirs * perDir; i += 1) {
+            files.put("src/dir" + (i / perDir) + "/file" + i + ".txt",
+                      Utils.sha1("contents " + i));
+        }
+        String root = Tree.update(store, null, files);
+        long flat = Utils.serialize(files).length;
+        int[] version = new int[1];
+
+        time("tree", "rebuild all trees", reps, flat, () -> {
+            version[0] += 1;
+            files.put("src/dir7/file700.txt", Utils.sha1("v" + version[0]));
+            Tree.update(store, null, files);
+        });
+        time("tree", "update one path", reps, flat, () -> {
+            version[0] += 1;
+            Tree.update(store, root, Collections.singletonMap(
+                    "src/dir7/file700.txt", Utils.sha1("v" + version[0])));
+        });
+        delete(dir);
+    }
+
+    /** Compares finding the split point of two branches of 100 commits
+     *  each, with a criss-cross merge between them, at the end of a
+     *  history of 100000 commits, by marking every ancestor of one tip
+     *  and by the generation-ordered walk of MergeBase. */
+    static void mergeBase() {
+        final int depth = 100000, branch = 100, reps = 50;
+        File dir = tempDir();
+        ArrayList<Commit> commits = new ArrayList<Commit>();
+        String trunk = null;
+        for (int i = 0; i < depth; i += 1) {
+            trunk = add(commits, "trunk" + i, trunk, null);
+        }
+        String a = add(commits, "a0", trunk, null),
+            b = add(commits, "b0", trunk, null);
+        String a1 = add(commits, "a1", a, b), b1 = add(commits, "b1", b, a);
+        a = a1;
+        b = b1;
+        for (int i = 2; i < branch; i += 1) {
+            a = add(commits, "a" + i, a, null);
+            b = add(commits, "b" + i, b, null);
+        }
+        CommitGraph graph = new CommitGraph(new File(dir, "commit-graph"),
+                                            new ObjectStore(dir));
+        graph.addAll(commits);
+        int tipA = graph.lookup(a), tipB = graph.lookup(b);
+
+        time("mergebase", "mark all ancestors", reps, graph.size(),
+             "commits", () -> {
+            HashSet<Integer> ancestors = new HashSet<Integer>();
+            ArrayDeque<Integer> work = new ArrayDeque<Integer>();
+            work.add(tipA);
+            while (!work.isEmpty()) {
+                int c = work.remove();
+                if (c != CommitGraph.NONE && ancestors.add(c)) {
+                    work.add(graph.parent(c));
+                    work.add(graph.parent2(c));
+                }
+            }
+            work.add(tipB);
+            while (!ancestors.contains(work.peek())) {
+                int c = work.remove();
+                work.add(graph.parent(c));
+            }
+        });
+        time("mergebase", "generation walk", reps, graph.size(), "commits",
+             () -> new MergeBase(graph).find(tipA, tipB));
+        delete(dir);
+    }
+
+    /** Compares listing and hashing a working directory of 4000 files of
+     *  16 KiB in 100 nested directories one file at a time, as status
+     *  used to, against WorkingTree, which lists directories and hashes
+     *  files on all processors.  The index is new each time, so every
+     *  file is read. */
+    static void scan() {
+        final int dirs = 100, perDir = 40, reps = 8;
+        File dir = tempDir();
+        byte[] contents = new byte[1 << 14];
+        for (int i = 0; i < dirs * perDir; i += 1) {
+            File file = Utils.join(dir, "d" + (i / perDir / 10),
+                                   "d" + (i / perDir), "f" + i);
+            file.getParentFile().mkdirs();
+            contents[0] = (byte) i;
+            contents[1] = (byte) (i >> 8);
+            Utils.writeContents(file, contents);
+        }
+        long bytes = (long) dirs * perDir * contents.length;
+
+        time("scan", "serial", reps, bytes, () -> {
+            ArrayDeque<File> work = new ArrayDeque<File>();
+            work.add(dir);
+            while (!work.isEmpty()) {
+                for (File entry : work.remove().listFiles()) {
+                    if (entry.isDirectory()) {
+                        work.add(entry);
+                    } else {
+                        Utils.sha1((Object) Utils.readContents(entry));
+                    }
+                }
+            }
+        });
+        time("scan", "parallel", reps, bytes, () -> {
+            WorkingTree working = new WorkingTree(
+                dir, new StatIndex(new File(dir, "no-index")));
+            working.hashAll(working.files());
+        });
+        delete(dir);
+    }
+
+    /** Compares the durability modes of Transaction on commit-like
+     *  updates that each store 20 new objects of 4 KiB and then move a
+     *  branch to the last of them. */
+    static void durability() {
+        final int objects = 20, reps = 40;
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        File ref = Utils.join(dir, "branches", "master");
+        byte[] contents = new byte[1 << 12];
+        int[] version = new int[1];
+        String[] names = { "none", "batch", "each" };
+        for (int mode = Transaction.NONE; mode <= Transaction.EACH;
+             mode += 1) {
+            final int durability = mode;
+            time("durability", names[mode], reps,
+                 (long) objects * contents.length, () -> {
+                Transaction tx = store.begin(durability);
+                String id = null;
+                for (int i = 0; i < objects; i += 1) {
+                    version[0] += 1;
+                    contents[0] = (byte) version[0];
+                    contents[1] = (byte) (version[0] >> 8);
+                    contents[2] = (byte) (version[0] >> 16);
+                    id = Utils.sha1(contents);
+                    store.write(ObjectStore.BLOBS, id, contents);
+                }
+                tx.setRef(ref, id);
+                tx.commit();
+            });
+        }
+        delete(dir);
+    }
+
+    /** Adds a commit named NAME with parents PARENT and PARENT2 to
+     *  COMMITS, and returns its key. */
+    private static String add(List<Commit> commits, String name,
+                              String parent, String parent2) {
+        Commit commit = new Commit(Utils.sha1(name), name, parent,
+                                   commits.size(), parent2);
+        commits.add(commit);
+        return commit.getHash();
+    }
+
+    /** Returns a new temporary directory. */
+    private static File tempDir() {
+        try {
+            return Files.createTempDirectory("gitlet-bench").toFile();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Deletes FILE and, if it is a directory, everything in it. */
+    private static void delete(File file) {
+        File[] entries = file.listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                delete(entry);
+            }
+        }
+        file.delete();
+    }
+
+    /** Compares finding the commits with a given message, and those
+     *  containing a given word, by reading the whole commit log against
+     *  looking them up in the message index, in a history of 100000
+     *  commits. */
+    static void find() {
+        final int count = 100000, reps = 20;
+        File dir = tempDir();
+        CommitLog log = new CommitLog(new File(dir, "commit-log"),
+                                      new ObjectStore(dir));
+        ArrayList<Commit> commits = new ArrayList<Commit>();
+        for (int i = 0; i < count; i += 1) {
+            String msg = "Change " + i + " to module m" + (i % 500)
+                + " for issue " + (i % 7919);
+            commits.add(new Commit(Utils.sha1(msg), msg,
+                                   null, i, null));
+        }
+        log.addAll(commits);
+        MessageIndex index =
+            new MessageIndex(new File(dir, "message-index"), log);
+        index.find(MessageIndex.WORDS, "m1");
+
+        String msg = "Change 4242 to module m242 for issue 4242";
+        time("find", "exact scan", reps, count, "commits", () -> {
+            ArrayList<Commit> found = new ArrayList<Commit>();
+            log.forEach(c -> {
+                if (c.getMessage().equals(msg)) {
+                    found.add(c);
+                }
+            });
+        });
+        time("find", "exact index", reps, count, "commits", () ->
+             new MessageIndex(new File(dir, "message-index"), log)
+                 .find(MessageIndex.EXACT, msg));
+        time("find", "words scan", reps, count, "commits", () ->
+             new MessageIndex(new File(dir, "none"), log)
+                 .find(MessageIndex.REGEX, "\\bm242\\b"));
+        time("find", "words index", reps, count, "commits", () ->
+             new MessageIndex(new File(dir, "message-index"), log)
+                 .find(MessageIndex.WORDS, "m242"));
+        delete(dir);
+    }
+
+    /** Compares printing 100000 commits as log did, with five println
+     *  calls each on a console-like stream that flushes every line,
+     *  against one buffered writer, both to /dev/null. */
+    static void log() {
+        final int count = 100000, reps = 4;
+        ArrayList<Commit> commits = new ArrayList<Commit>();
+        for (int i = 0; i < count; i += 1) {
+            commits.add(new Commit(Utils.sha1("t" + i), "message " + i,
+                                   null, i, null));
+        }
+        try (FileOutputStream sink = new FileOutputStream("/dev/null")) {
+            time("log", "println", reps, count, "commits", () -> {
+                PrintStream out = new PrintStream(
+                    new BufferedOutputStream(sink, 128), true);
+                for (Commit curr : commits) {
+                    out.println("===");
+                    out.println("commit " + curr.getHash());
+                    out.println("Date: " + curr.getTime() + " -0800");
+                    out.println(curr.getMessage());
+                    out.println();
+                }
+            });
+            time("log", "buffered", reps, count, "commits", () -> {
+                PrintWriter out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(sink), 1 << 16));
+                for (Commit curr : commits) {
+                    out.print("===\ncommit ");
+                    out.print(curr.getHash());
+                    out.print("\nDate: ");
+                    out.print(curr.getTime());
+                    out.print(" -0800\n");
+                    out.print(curr.getMessage());
+                    out.print("\n\n");
+                }
+                out.flush();
+            });
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Compares Diff with each algorithm on a file of 2000 lines and an
+     *  edited copy, printing the time and the bytes allocated per
+     *  comparison, and then on 200000 lines, which the quadratic table
+     *  Diff used to fill could not hold in memory. */
+    static void diff() {
+        diff(2000, 20);
+        diff(200000, 8);
+    }
+
+    /** Runs the diff benchmark on LINES lines with REPS runs each. */
+    private static void diff(int lines, int reps) {
+        Random random = new Random(lines);
+        ArrayList<String> a = new ArrayList<String>();
+        for (int i = 0; i < lines; i += 1) {
+            a.add(i % 10 == 0 ? "}" : "line " + random.nextInt(lines));
+        }
+        ArrayList<String> b = new ArrayList<String>(a);
+        for (int e = 0; e < lines / 50; e += 1) {
+            b.set(random.nextInt(b.size()), "edited " + e);
+            b.add(random.nextInt(b.size()), "added " + e);
+        }
+        String size = lines + " lines";
+        String[] names = { "myers ", "histogram " };
+        for (int algorithm : new int[] { Diff.MYERS, Diff.HISTOGRAM }) {
+            timeAllocation("diff", names[algorithm] + size, reps, lines, () -> {
+                Diff diff = new Diff();
+                diff.setAlgorithm(algorithm);
+                diff.setSequences(a, b);
+                diff.diffs();
+            });
+        }
+    }
+
+    /** Compares finding the files changed between two commits of 100000
+     *  files in 1000 directories, 5 of which differ, by flattening both
+     *  and looking up every path of each in the other, by flattening
+     *  both and walking the sorted manifests together, and by
+     *  Tree.changes, which skips the directories with equal trees. */
+    static void changes() {
+        final int dirs = 1000, perDir = 100, reps = 20;
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        TreeMap<String, String> files = new TreeMap<String, String>();
+        for (int i = 0; i < dirs * perDir; i += 1) {
+            files.put("src/dir" + (i / perDir) + "/file" + i + ".txt",
+                      Utils.sha1("contents " + i));
+        }
+        String a = Tree.update(store, null, files);
+        TreeMap<String, String> edits = new TreeMap<String, String>();
+        for (int i = 0; i < 5; i += 1) {
+            edits.put("src/dir" + (i * 199) + "/file" + (i * 19900) + ".txt",
+                      Utils.sha1("edited " + i));
+        }
+        String b = Tree.update(store, a, edits);
+
+        time("changes", "flatten and look up", reps, files.size(), "files",
+             () -> {
+            TreeMap<String, String> before = new TreeMap<String, String>(),
+                after = new TreeMap<String, String>();
+            Tree.flatten(store, a, "", before);
+            Tree.flatten(store, b, "", after);
+            TreeMap<String, String[]> changes =
+                new TreeMap<String, String[]>();
+            for (String file : before.keySet()) {
+                if (!before.get(file).equals(after.get(file))) {
+                    changes.put(file, new String[] { before.get(file),
+                                                     after.get(file) });
+                }
+            }
+            for (String file : after.keySet()) {
+                if (!before.containsKey(file)) {
+                    changes.put(file, new String[] { null, after.get(file) });
+                }
+            }
+        });
+        time("changes", "flatten and merge-walk", reps, files.size(), "files",
+             () -> {
+            TreeMap<String, String> before = new TreeMap<String, String>(),
+                after = new TreeMap<String, String>();
+            Tree.flatten(store, a, "", before);
+            Tree.flatten(store, b, "", after);
+            Tree.changes(before, after, "", new TreeMap<String, String[]>());
+        });
+        time("changes", "walk trees", reps, files.size(), "files",
+             () -> Tree.changes(store, a, b, "",
+                                new TreeMap<String, String[]>()));
+        delete(dir);
+    }
+
+    /** Compares pairing 4000 deleted files with 4000 added ones, 3000 of
+     *  which are edited renames, by comparing the sketches of every pair
+     *  and by RenameDetector, which only compares files that share a band
+     *  of their sketches.  Sketches are cached, as after the first run. */
+    static void renames() {
+        final int files = 4000, reps = 8;
+        HashMap<String, byte[]> blobs = new HashMap<String, byte[]>();
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        Random random = new Random(files);
+        for (int i = 0; i < files; i += 1) {
+            StringBuilder old = new StringBuilder();
+            for (int k = 0; k < 40; k += 1) {
+                old.append("file ").append(i).append(" line ").append(k)
+                    .append('\n');
+            }
+            String nu = i < 3 * files / 4
+                ? old.toString().replace(
+                    "line " + random.nextInt(40) + "\n", "edited line\n")
+                : old.toString().replace("file " + i, "new file " + i);
+            byte[] a = old.toString().getBytes(), b = nu.getBytes();
+            String idA = Utils.sha1(a), idB = Utils.sha1(b);
+            blobs.put(idA, a);
+            blobs.put(idB, b);
+            changes.put("old/" + i, new String[] { idA, null });
+            changes.put("new/" + i, new String[] { null, idB });
+        }
+        Sketches sketches = new Sketches(new File(tempDir(), "sketches"));
+        RenameDetector detector = new RenameDetector(sketches, blobs::get,
+            (path, id) -> blobs.get(id));
+        detector.find(changes, false);
+
+        time("renames", "compare all pairs", reps, 2 * files, "files", () -> {
+            ArrayList<int[]> old = new ArrayList<int[]>(),
+                nu = new ArrayList<int[]>();
+            for (String[] ids : changes.values()) {
+                if (ids[0] != null) {
+                    old.add(sketches.get(ids[0], null));
+                } else {
+                    nu.add(sketches.get(ids[1], null));
+                }
+            }
+            int found = 0;
+            for (int[] b : nu) {
+                for (int[] a : old) {
+                    if (Sketches.similarity(a, b)
+                        >= RenameDetector.THRESHOLD) {
+                        found += 1;
+                        break;
+                    }
+                }
+            }
+        });
+        time("renames", "banded sketches", reps, 2 * files, "files",
+             () -> detector.find(changes, false));
+        System.out.printf("%-10s %-24s %12d of %d%n", "renames",
+                          "renames found", detector.find(changes, false)
+                          .size(), 3 * files / 4);
+    }
+
+    /** Compares finding the objects of a history of 2000 commits that
+     *  another repository, which has all but its last 10 commits, is
+     *  missing, by listing every object and looking each up there, as
+     *  fetch did, against walking the history from its last commit. */
+    static void fetch() {
+        final int count = 2000, behind = 10, reps = 20;
+        File dir = tempDir();
+        ObjectStore source = new ObjectStore(new File(dir, "source"));
+        ObjectStore dest = new ObjectStore(new File(dir, "dest"));
+        String tree = null, tip = null, old = null;
+        for (int i = 0; i < count; i += 1) {
+            byte[] contents = ("version " + i + "\n").getBytes();
+            String blob = Utils.sha1(contents);
+            source.write(ObjectStore.BLOBS, blob, contents);
+            TreeMap<String, String> change = new TreeMap<String, String>();
+            change.put("dir" + (i % 10) + "/file" + (i % 100) + ".txt", blob);
+            tree = Tree.update(source, tree, change);
+            Commit commit = new Commit(tree, "commit " + i, tip, i, null);
+            tip = commit.getHash();
+            source.write(ObjectStore.COMMITS, tip, commit.encode());
+            if (i == count - behind - 1) {
+                old = tip;
+            }
+        }
+        Transfer copied = new Transfer(source, dest);
+        copied.add(old);
+        copied.copy();
+        final String last = tip;
+
+        time("fetch", "list and look up", reps, count, "commits", () -> {
+            int missing = 0;
+            for (String kind : ObjectStore.KINDS) {
+                for (String id : source.list(kind)) {
+                    if (!dest.contains(kind, id)) {
+                        missing += 1;
+                    }
+                }
+            }
+        });
+        time("fetch", "walk from tip", reps, count, "commits",
+             () -> new Transfer(source, dest).add(last));
+        delete(dir);
+    }
+
+    /** Compares adding a commit just made to a commit graph of 100000
+     *  commits, opened afresh as by each command, by searching the graph
+     *  for it first, as commit did, against adding it without that
+     *  search. */
+    static void graph() {
+        final int count = 100000, reps = 40;
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        File file = new File(dir, "commit-graph");
+        ArrayList<Commit> history = new ArrayList<Commit>();
+        String tip = null;
+        for (int i = 0; i < count; i += 1) {
+            Commit commit = new Commit(Utils.sha1("t" + i), "commit " + i,
+                                       tip, i, null);
+            history.add(commit);
+            tip = commit.getHash();
+        }
+        new CommitGraph(file, store).addAll(history);
+        String[] last = { tip };
+        int[] num = { count };
+        for (boolean search : new boolean[] { true, false }) {
+            time("graph", search ? "search, then add" : "add new", reps,
+                 count, "commits", () -> {
+                    Commit commit = new Commit(Utils.sha1("t" + num[0]),
+                                               "commit", last[0], num[0],
+                                               null);
+                    CommitGraph graph = new CommitGraph(file, store);
+                    if (search) {
+                        graph.add(commit);
+                    } else {
+                        graph.addNew(commit);
+                    }
+                    last[0] = commit.getHash();
+                    num[0] += 1;
+                });
+        }
+        delete(dir);
+    }
+
+    /** As time(NAME, VARIANT, REPS, SIZE, "lines", OP), followed by the
+     *  bytes allocated per run of OP. */
+    private static void timeAllocation(String name, String variant,
+                                       int reps, long size, Runnable op) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        op.run();
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        time(name, variant, reps, size, "lines", op);
+        System.out.printf("%-10s %-24s %12.1f MB allocated%n", name,
+                          variant, allocated / 1e6);
+    }
+
+    /** Runs OP REPS times, after a quarter as many runs to warm up, and
+     *  prints the time per run as VARIANT of benchmark NAME along with
+     *  BYTES, the size of the data involved. */
+    static void time(String name, String variant, int reps, long bytes,
+                     Runnable op) {
+        time(name, variant, reps, bytes, "bytes", op);
+    }
+
+    /** Runs OP REPS times, after a quarter as many runs to warm up, and
+     *  prints the time per run as VARIANT of benchmark NAME along with
+     *  SIZE, the amount of data involved, measured in UNITs. */
+    static void time(String name, String variant, int reps, long size,
+                     String unit, Runnable op) {
+        for (int k = 0; k < reps / 4; k += 1) {
+            op.run();
+        }
+        long start = System.nanoTime();
+        for (int k = 0; k < reps; k += 1) {
+            op.run();
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / reps;
+        System.out.printf("%-10s %-24s %12.1f us/op %12d %s%n",
+                          name, variant, micros, size, unit);
+    }
+}
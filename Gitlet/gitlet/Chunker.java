@@ -0,0 +1,84 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/** Splits a stream into content-defined chunks.  A boundary is placed
+ *  wherever a rolling (gear) hash of the last bytes read has its top
+ *  AVERAGE_BITS bits clear, so boundaries depend only on nearby content:
+ *  inserting or appending data changes only the chunks around the edit,
+ *  and the other chunks of a new version of a file are shared with the
+ *  old one.
+ *  @author Kerem Dilmen
+ */
+class Chunker {
+
+    /** Smallest chunk, other than the last one. */
+    static final int MIN_SIZE = 256 << 10;
+
+    /** Largest chunk. */
+    static final int MAX_SIZE = 4 << 20;
+
+    /** Chunks average about 2 to the power AVERAGE_BITS bytes past
+     *  MIN_SIZE. */
+    private static final int AVERAGE_BITS = 20;
+
+    /** A chunker reading from IN. */
+    Chunker(InputStream in) {
+        _in = in;
+    }
+
+    /** Returns the next chunk of the stream, or null at its end. */
+    byte[] next() throws IOException {
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        long hash = 0;
+        while (true) {
+            if (_pos == _limit) {
+                _limit = _in.read(_buf);
+                _pos = 0;
+                if (_limit <= 0) {
+                    _limit = 0;
+                    return chunk.size() == 0 ? null : chunk.toByteArray();
+                }
+            }
+            int start = _pos;
+            int size = chunk.size();
+            while (_pos < _limit) {
+                hash = (hash << 1) + GEAR[_buf[_pos] & 0xff];
+                _pos += 1;
+                size += 1;
+                if (size >= MAX_SIZE
+                        || (size >= MIN_SIZE
+                            && (hash >>> (64 - AVERAGE_BITS)) == 0)) {
+                    chunk.write(_buf, start, _pos - start);
+                    return chunk.toByteArray();
+                }
+            }
+            chunk.write(_buf, start, _pos - start);
+        }
+    }
+
+    /** Random values mixed into the hash for each byte value. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** Source of the data. */
+    private final InputStream _in;
+
+    /** Data read from _in but not yet put in a chunk. */
+    private final byte[] _buf = new byte[1 << 16];
+
+    /** Position of the next unused byte of _buf. */
+    private int _pos;
+
+    /** Number of valid bytes in _buf. */
+    private int _limit;
+}
@@ -0,0 +1,102 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Chunker.
+ *  @author Kerem Dilmen
+ */
+public class ChunkerTest {
+
+    /** Returns N random bytes drawn with SEED. */
+    private static byte[] random(int n, long seed) {
+        byte[] result = new byte[n];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /** Returns the chunks DATA is split into. */
+    private static List<byte[]> chunks(byte[] data) {
+        ArrayList<byte[]> result = new ArrayList<byte[]>();
+        Chunker chunker = new Chunker(new ByteArrayInputStream(data));
+        try {
+            for (byte[] chunk = chunker.next(); chunk != null;
+                 chunk = chunker.next()) {
+                result.add(chunk);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns the SHA-1 keys of CHUNKS. */
+    private static HashSet<String> ids(List<byte[]> chunks) {
+        HashSet<String> result = new HashSet<String>();
+        for (byte[] chunk : chunks) {
+            result.add(Utils.sha1(chunk));
+        }
+        return result;
+    }
+
+    /** Checks that CHUNKS make up DATA, and that every chunk but the last
+     *  is from MIN_SIZE to MAX_SIZE bytes long. */
+    private static void checkChunks(byte[] data, List<byte[]> chunks) {
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (int k = 0; k < chunks.size(); k += 1) {
+            byte[] chunk = chunks.get(k);
+            assertTrue(chunk.length <= Chunker.MAX_SIZE);
+            assertTrue(k == chunks.size() - 1
+                       || chunk.length >= Chunker.MIN_SIZE);
+            joined.write(chunk, 0, chunk.length);
+        }
+        assertArrayEquals(data, joined.toByteArray());
+    }
+
+    @Test
+    public void chunksStayWithinLimits() {
+        byte[] data = random(24 << 20, 1);
+        List<byte[]> chunks = chunks(data);
+        checkChunks(data, chunks);
+        assertTrue(chunks.size() > 6);
+    }
+
+    @Test
+    public void uniformDataIsCutAtALimit() {
+        byte[] data = new byte[10 << 20];
+        List<byte[]> chunks = chunks(data);
+        checkChunks(data, chunks);
+        int size = chunks.get(0).length;
+        assertTrue(size == Chunker.MIN_SIZE || size == Chunker.MAX_SIZE);
+        for (byte[] chunk : chunks.subList(0, chunks.size() - 1)) {
+            assertEquals(size, chunk.length);
+        }
+    }
+
+    @Test
+    public void boundariesSurviveAnInsertNearTheStart() {
+        byte[] old = random(16 << 20, 2);
+        byte[] nu = new byte[old.length + 100];
+        System.arraycopy(old, 0, nu, 0, 1000);
+        System.arraycopy(random(100, 3), 0, nu, 1000, 100);
+        System.arraycopy(old, 1000, nu, 1100, old.length - 1000);
+        List<byte[]> oldChunks = chunks(old), newChunks = chunks(nu);
+        checkChunks(nu, newChunks);
+        HashSet<String> shared = ids(oldChunks);
+        shared.retainAll(ids(newChunks));
+        assertEquals(oldChunks.size() - 1, shared.size());
+        assertFalse(shared.contains(Utils.sha1(oldChunks.get(0))));
+    }
+
+    @Test
+    public void emptyInputHasNoChunks() {
+        assertTrue(chunks(new byte[0]).isEmpty());
+    }
+}
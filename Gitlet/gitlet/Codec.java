@@ -0,0 +1,71 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+/** Helpers for the hand-written binary formats of Commit and
+ *  StagingArea.  Strings are stored as their length followed by their
+ *  UTF-8 bytes, and SHA-1 keys as their 20 raw bytes.
+ *  @author Kerem Dilmen
+ */
+class Codec {
+
+    /** First two bytes of a file written by Java serialization, as used
+     *  by older versions of Gitlet. */
+    static final int SERIALIZED = 0xaced;
+
+    /** Returns true iff DATA was written by Java serialization. */
+    static boolean isSerialized(byte[] data) {
+        return data.length >= 2
+            && (((data[0] & 0xff) << 8) | (data[1] & 0xff)) == SERIALIZED;
+    }
+
+    /** Writes S, which may be null, to OUT. */
+    static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /** Reads a string, possibly null, written by writeString from IN. */
+    static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Writes the SHA-1 key ID, which may be null, to OUT. */
+    static void writeId(DataOutputStream out, String id) throws IOException {
+        if (id == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.write(HEX.parseHex(id));
+        }
+    }
+
+    /** Reads a SHA-1 key, possibly null, written by writeId from IN. */
+    static String readId(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        byte[] bytes = new byte[Utils.UID_LENGTH / 2];
+        in.readFully(bytes);
+        return HEX.formatHex(bytes);
+    }
+
+    /** Converts between ids and their bytes. */
+    private static final HexFormat HEX = HexFormat.of();
+}
@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the binary formats of Commit and StagingArea.
+ *  @author Kerem Dilmen
+ */
+public class CodecTest {
+
+    /** Returns a map of N files to made-up SHA-1 keys. */
+    private static TreeMap<String, String> files(int n) {
+        TreeMap<String, String> result = new TreeMap<String, String>();
+        for (int i = 0; i < n; i += 1) {
+            result.put("file" + i + ".txt", Utils.sha1("v" + i));
+        }
+        return result;
+    }
+
+    @Test
+    public void commitRoundTrip() {
+        Commit commit = new Commit(Utils.sha1("tree"), "a message",
+                Utils.sha1("p1"), 7, Utils.sha1("p2"));
+        Commit copy = Commit.decode(commit.encode());
+        assertEquals(commit.getHash(), copy.getHash());
+        assertEquals(commit.getTree(), copy.getTree());
+        assertEquals(commit.getMessage(), copy.getMessage());
+        assertEquals(commit.getParent(), copy.getParent());
+        assertEquals(commit.getParent2(), copy.getParent2());
+        assertEquals(commit.getTime(), copy.getTime());
+        assertEquals(commit.getNum(), copy.getNum());
+    }
+
+    @Test
+    public void headerOnly() {
+        Commit commit = new Commit(Utils.sha1("tree"), "header",
+                null, 0, null);
+        Commit header = Commit.decodeHeader(commit.encode());
+        assertEquals(commit.getHash(), header.getHash());
+        assertEquals(commit.getTree(), header.getTree());
+        assertEquals("header", header.getMessage());
+        assertNull(header.getParent());
+        assertNull(header.getBlobs());
+    }
+
+    @Test
+    public void textTimeCommit() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x47434d54);
+        out.writeByte(2);
+        Codec.writeId(out, Utils.sha1("c"));
+        Codec.writeId(out, null);
+        Codec.writeId(out, null);
+        Codec.writeId(out, Utils.sha1("tree"));
+        out.writeInt(3);
+        Codec.writeString(out, "Thu Jan 01 00:00:00 1970");
+        Codec.writeString(out, "old time");
+        Commit commit = Commit.decode(bytes.toByteArray());
+        assertEquals("Thu Jan 01 00:00:00 1970", commit.getTime());
+        long time = commit.getTimestamp();
+        assertTrue(Math.abs(time) <= 14 * 3600);
+        Commit copy = Commit.decode(commit.encode());
+        assertEquals(commit.getHash(), copy.getHash());
+        assertEquals(time, copy.getTimestamp());
+        assertEquals(commit.getTime(), copy.getTime());
+    }
+
+    /** A commit of a.txt and b.txt, in Base64, as serialized by the
+     *  Commit class of repositories older than the binary format. */
+    private static final String LEGACY_COMMIT =
+        "rO0ABXNyAA1naXRsZXQuQ29tbWl0+RH83XWANSUCAAdJAARfbnVtTAAGX2Jsb2Jz" +
+        "dAATTGphdmEvdXRpbC9UcmVlTWFwO0wABV9oYXNodAASTGphdmEvbGFuZy9TdHJp" +
+        "bmc7TAAIX21lc3NhZ2VxAH4AAkwAB19wYXJlbnRxAH4AAkwACF9wYXJlbnQycQB+" +
+        "AAJMAAVfdGltZXEAfgACeHAAAAACc3IAEWphdmEudXRpbC5UcmVlTWFwDMH2Pi0l" +
+        "auYDAAFMAApjb21wYXJhdG9ydAAWTGphdmEvdXRpbC9Db21wYXJhdG9yO3hwcHcE" +
+        "AAAAAnQABWEudHh0dAAoODZmN2U0MzdmYWE1YTdmY2UxNWQxZGRjYjllYWVhZWEz" +
+        "Nzc2NjdiOHQABWIudHh0dAAoZTlkNzFmNWVlN2M5MmQ2ZGM5ZTkyZmZkYWQxN2I4" +
+        "YmQ0OTQxOGY5OHh0ACg0MmU5MmQ5OTdhMmY1NmEwYmVjNmY5MTEzY2FlZmNiYTcy" +
+        "ZmViZWE3dAADb2xkdAAoZDhmZDM5ZDBiYmRkMmRjZjMyMmQ4YjExMzkwYTRjNTgy" +
+        "NWIxMTQ5NXB0ABhTYXQgT2N0IDE3IDEwOjI5OjMzIDIwMjY=";
+
+    @Test
+    public void legacySerializedCommit() {
+        Commit commit =
+            Commit.decode(Base64.getDecoder().decode(LEGACY_COMMIT));
+        assertEquals("42e92d997a2f56a0bec6f9113caefcba72febea7",
+                     commit.getHash());
+        assertEquals("old", commit.getMessage());
+        assertEquals(Utils.sha1("parent"), commit.getParent());
+        assertNull(commit.getParent2());
+        assertEquals(2, commit.getNum());
+        assertEquals("Sat Oct 17 10:29:33 2026", commit.getTime());
+        assertEquals(Utils.sha1("a"), commit.getBlobs().get("a.txt"));
+        assertEquals(Utils.sha1("b"), commit.getBlobs().get("b.txt"));
+        assertEquals(2, commit.getBlobs().size());
+    }
+
+    @Test
+    public void hashDependsOnContents() {
+        Commit a = new Commit(Utils.sha1("t1"), "same", null, 1, null);
+        Commit b = new Commit(Utils.sha1("t2"), "same", null, 1, null);
+        assertFalse(a.getHash().equals(b.getHash()));
+    }
+
+    @Test
+    public void treeRoundTrip() {
+        Tree tree = new Tree();
+        tree.getFiles().putAll(files(20));
+        tree.getDirs().put("sub", Utils.sha1("sub"));
+        Tree copy = Tree.decode(tree.encode());
+        assertEquals(tree.getFiles(), copy.getFiles());
+        assertEquals(tree.getDirs(), copy.getDirs());
+    }
+}
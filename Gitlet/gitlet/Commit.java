@@ -1,34 +1,157 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.TreeMap;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 /** Class to store the properties of a given commit for Gitlet.
+ *  Commits are stored in a compact binary format (see encode) rather than
+ *  with Java serialization.  A commit refers to the files it tracks
+ *  through the SHA-1 key of the Tree of its root directory; commits
+ *  written by older versions of Gitlet, which list every file themselves
+ *  (see getBlobs), can still be decoded.
  *  @author Kerem Dilmen
  */
 public class Commit implements Serializable {
-    public Commit(TreeMap<String, String> blobs,
+    public Commit(String tree,
                   String message, String parent, int num, String parent2) {
-        _blobs = blobs;
+        _tree = tree;
         _message = message;
         _parent = parent;
-        _time = LocalDateTime.now().format(
-                DateTimeFormatter.ofPattern("E MMM dd HH:mm:ss yyyy"));
-        _hash = findHash();
+        _timestamp = Instant.now().getEpochSecond();
         _num = num;
         _parent2 = parent2;
+        _hash = findHash();
+    }
+
+    /** A commit whose fields are filled in by decode. */
+    private Commit() {
     }
 
     private String findHash() {
-        return Utils.sha1((Object) Utils.serialize(this));
+        return Utils.sha1((Object) encode(false));
+    }
+
+    /** Returns this commit in its binary format: a magic number and
+     *  format version, then its SHA-1 key, parents, root tree, number,
+     *  time in seconds since the epoch and message.  (Version 2 had the
+     *  time as formatted text, and version 1 also had no tree, and was
+     *  followed by the number of files and each file name with the SHA-1
+     *  key of its blob, in sorted order.) */
+    public byte[] encode() {
+        return encode(true);
+    }
+
+    /** Returns this commit in its binary format, leaving out its own
+     *  SHA-1 key unless WITHHASH. */
+    private byte[] encode(boolean withHash) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT);
+            Codec.writeId(out, withHash ? _hash : null);
+            Codec.writeId(out, _parent);
+            Codec.writeId(out, _parent2);
+            Codec.writeId(out, _tree);
+            out.writeInt(_num);
+            out.writeLong(getTimestamp());
+            Codec.writeString(out, _message);
+            out.close();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error serializing commit.");
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the commit stored as DATA by encode (or by Java
+     *  serialization in older repositories). */
+    public static Commit decode(byte[] data) {
+        if (Codec.isSerialized(data)) {
+            return Utils.deserialize(data, Commit.class);
+        }
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(data));
+            Commit result = readHeader(in);
+            if (result._tree != null) {
+                return result;
+            }
+            result._blobs = new TreeMap<String, String>();
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String file = Codec.readString(in);
+                result._blobs.put(file, Codec.readId(in));
+            }
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the commit stored as DATA with only its header decoded:
+     *  getBlobs() of the result is null even for commits of the old
+     *  format.  This is all that log, global-log and find need. */
+    public static Commit decodeHeader(byte[] data) {
+        if (Codec.isSerialized(data)) {
+            return Utils.deserialize(data, Commit.class);
+        }
+        try {
+            return readHeader(new DataInputStream(
+                    new ByteArrayInputStream(data)));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Reads the header of an encoded commit from IN. */
+    private static Commit readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IllegalArgumentException("unknown commit format");
+        }
+        byte format = in.readByte();
+        if (format != FORMAT && format != TEXT_TIME_FORMAT
+                && format != FLAT_FORMAT) {
+            throw new IllegalArgumentException("unknown commit format");
+        }
+        Commit result = new Commit();
+        result._hash = Codec.readId(in);
+        result._parent = Codec.readId(in);
+        result._parent2 = Codec.readId(in);
+        if (format != FLAT_FORMAT) {
+            result._tree = Codec.readId(in);
+        }
+        result._num = in.readInt();
+        if (format == FORMAT) {
+            result._timestamp = in.readLong();
+        } else {
+            result._time = Codec.readString(in);
+        }
+        result._message = Codec.readString(in);
+        return result;
     }
 
     public String getHash() {
         return _hash;
     }
 
+    /** Returns the SHA-1 key of the tree of this commit's root
+     *  directory, or null for commits of the old format. */
+    public String getTree() {
+        return _tree;
+    }
+
+    /** Returns the files of a commit of the old format, which has no
+     *  tree, mapped to the SHA-1 keys of their blobs.  Returns null for
+     *  other commits. */
     public TreeMap<String, String> getBlobs() {
         return _blobs;
     }
@@ -41,8 +164,28 @@ public class Commit implements Serializable {
         return _parent;
     }
 
+    /** Returns the date and time of this commit, as printed by log, in
+     *  the local time zone. */
     public String getTime() {
-        return _time;
+        if (_time != null) {
+            return _time;
+        }
+        return Instant.ofEpochSecond(_timestamp).atZone(ZoneId.systemDefault())
+            .format(TIME_FORMAT);
+    }
+
+    /** Returns the time of this commit in seconds since the epoch, or 0
+     *  if its time cannot be read. */
+    public long getTimestamp() {
+        if (_time == null) {
+            return _timestamp;
+        }
+        try {
+            return LocalDateTime.parse(_time, TIME_FORMAT)
+                .atZone(ZoneId.systemDefault()).toEpochSecond();
+        } catch (DateTimeParseException excp) {
+            return 0;
+        }
     }
 
     public int getNum() {
@@ -53,12 +196,31 @@ public class Commit implements Serializable {
         return _parent2;
     }
 
-    public void setParent(String parent) {
-        _parent = parent;
-    }
 
+    /** Version of the Java serialization of this class, fixed at its
+     *  value in older versions of Gitlet so that they can still be read. */
+    private static final long serialVersionUID = -499340055572105947L;
+
+    /** Format of the times of commits. */
+    private static final DateTimeFormatter TIME_FORMAT =
+        DateTimeFormatter.ofPattern("E MMM dd HH:mm:ss yyyy");
 
-    /** A map that stores a mapping of each
+    /** Magic number at the start of an encoded commit. */
+    private static final int MAGIC = 0x47434d54;
+
+    /** Version of the format written by encode. */
+    private static final int FORMAT = 3;
+
+    /** Version of the format of commits whose times are text. */
+    private static final int TEXT_TIME_FORMAT = 2;
+
+    /** Version of the format of commits that list all their files. */
+    private static final int FLAT_FORMAT = 1;
+
+    /** SHA-1 key of the tree of the root directory. */
+    private String _tree;
+
+    /** For commits of the old format, a map that stores a mapping of each
      * file to its corresponding SHA-1 key. */
     private TreeMap<String, String> _blobs;
 
@@ -71,9 +233,14 @@ public class Commit implements Serializable {
     /** SHA-1 key of this commit's optional second parent. */
     private String _parent2;
 
-    /** Date and time of this commit. */
+    /** Date and time of a commit of an older format, as text, or null.
+     *  (Commits stored by Java serialization set this field.) */
     private String _time;
 
+    /** Time of this commit in seconds since the epoch, unless _time is
+     *  set. */
+    private long _timestamp;
+
     /** SHA-1 key of this commit. */
     private String _hash;
 
@@ -0,0 +1,350 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+
+/** The shape of the history of a repository: for each commit, its SHA-1
+ *  key, the positions of its parents in the graph, its generation number
+ *  (one more than the largest generation of its parents, 1 for a commit
+ *  without parents), its time in seconds since the epoch and its commit
+ *  number.  History walks use the graph, which is memory-mapped, instead
+ *  of reading one commit object per step.
+ *  The file holds a header ("GCGR", a version and the number of commits)
+ *  followed by one fixed-size record per commit.  Records are appended as
+ *  commits are made or fetched, parents always before their children, and
+ *  the count in the header is updated last, so a record that was only
+ *  partly written is ignored.  Commits missing from the graph (or the
+ *  whole graph, if the file is missing) are added from the object store
+ *  when they are first asked for.
+ *  @author Kerem Dilmen
+ */
+class CommitGraph {
+
+    /** Position used for a missing parent. */
+    static final int NONE = -1;
+
+    /** Graph format version. */
+    private static final int VERSION = 1;
+
+    /** Size of the header. */
+    private static final int HEADER = 12;
+
+    /** Size of a key. */
+    private static final int KEY = 20;
+
+    /** Size of a record: key, two parent positions, generation, time and
+     *  commit number. */
+    private static final int RECORD = KEY + 4 + 4 + 4 + 8 + 4;
+
+    /** The graph of the commits in STORE, kept in the file FILE. */
+    CommitGraph(File file, ObjectStore store) {
+        _file = file;
+        _store = store;
+    }
+
+    /** Returns the number of commits in the graph. */
+    int size() {
+        load();
+        return _size;
+    }
+
+    /** Returns the position of the commit ID in the graph, adding it (and
+     *  any of its ancestors that are missing) from the object store if
+     *  needed.  Returns NONE if there is no such commit. */
+    int lookup(String id) {
+        int result = indexOf(id);
+        if (result == NONE && _store.contains(ObjectStore.COMMITS, id)) {
+            add(Commit.decodeHeader(_store.read(ObjectStore.COMMITS, id)));
+            result = indexOf(id);
+        }
+        return result;
+    }
+
+    /** Returns the SHA-1 key of the commit at position I. */
+    String id(int i) {
+        load();
+        byte[] key = new byte[KEY];
+        buffer(i).get(offset(i), key);
+        return HEX.formatHex(key);
+    }
+
+    /** Returns the position of the first parent of the commit at position
+     *  I, or NONE. */
+    int parent(int i) {
+        load();
+        return buffer(i).getInt(offset(i) + KEY);
+    }
+
+    /** Returns the position of the second parent of the commit at
+     *  position I, or NONE. */
+    int parent2(int i) {
+        load();
+        return buffer(i).getInt(offset(i) + KEY + 4);
+    }
+
+    /** Returns the generation number of the commit at position I. */
+    int generation(int i) {
+        load();
+        return buffer(i).getInt(offset(i) + KEY + 8);
+    }
+
+    /** Returns the time of the commit at position I in seconds since the
+     *  epoch. */
+    long time(int i) {
+        load();
+        return buffer(i).getLong(offset(i) + KEY + 12);
+    }
+
+    /** Returns the commit number of the commit at position I. */
+    int num(int i) {
+        load();
+        return buffer(i).getInt(offset(i) + KEY + 20);
+    }
+
+    /** Adds COMMIT, of which only the header is needed, to the graph, along
+     *  with any of its ancestors that are not yet in it.  Does nothing if
+     *  COMMIT is already there. */
+    void add(Commit commit) {
+        load();
+        int from = _size;
+        insert(commit, false);
+        if (_size > from) {
+            write(from);
+        }
+    }
+
+    /** Adds COMMIT, which has just been made and so is not in the graph
+     *  yet, as by add, but without searching the graph for it. */
+    void addNew(Commit commit) {
+        load();
+        int from = _size;
+        insert(commit, true);
+        write(from);
+    }
+
+    /** Adds each of COMMITS, as by add, writing the graph file once. */
+    void addAll(Collection<Commit> commits) {
+        load();
+        int from = _size;
+        for (Commit commit : commits) {
+            insert(commit, false);
+        }
+        if (_size > from) {
+            write(from);
+        }
+    }
+
+    /** Adds COMMIT and its missing ancestors to the records, without
+     *  writing them to the graph file.  If FRESH, COMMIT was just made,
+     *  and is only looked for among the commits added or found so far. */
+    private void insert(Commit commit, boolean fresh) {
+        ArrayDeque<Commit> work = new ArrayDeque<Commit>();
+        work.push(commit);
+        while (!work.isEmpty()) {
+            Commit next = work.peek();
+            if (fresh && next == commit
+                ? _positions.containsKey(next.getHash())
+                : indexOf(next.getHash()) != NONE) {
+                work.pop();
+                continue;
+            }
+            boolean ready = true;
+            for (String parent : parents(next)) {
+                if (indexOf(parent) == NONE) {
+                    work.push(Commit.decodeHeader(
+                            _store.read(ObjectStore.COMMITS, parent)));
+                    ready = false;
+                }
+            }
+            if (ready) {
+                work.pop();
+                append(next);
+            }
+        }
+    }
+
+    /** Returns the keys of the parents of COMMIT. */
+    private static List<String> parents(Commit commit) {
+        ArrayList<String> result = new ArrayList<String>();
+        if (commit.getParent() != null) {
+            result.add(commit.getParent());
+        }
+        if (commit.getParent2() != null) {
+            result.add(commit.getParent2());
+        }
+        return result;
+    }
+
+    /** Returns the position of the commit ID in the graph, or NONE.
+     *  Searches from the most recently added commit backwards, since
+     *  those are the ones usually asked for, and remembers what it
+     *  finds. */
+    private int indexOf(String id) {
+        load();
+        Integer known = _positions.get(id);
+        if (known != null) {
+            return known;
+        }
+        while (_unindexed > 0) {
+            _unindexed -= 1;
+            String other = id(_unindexed);
+            _positions.put(other, _unindexed);
+            if (other.equals(id)) {
+                return _unindexed;
+            }
+        }
+        return NONE;
+    }
+
+    /** Adds a record for COMMIT, whose parents are already in the graph,
+     *  to _added, growing it if needed. */
+    private void append(Commit commit) {
+        int parent = commit.getParent() == null ? NONE
+            : indexOf(commit.getParent());
+        int parent2 = commit.getParent2() == null ? NONE
+            : indexOf(commit.getParent2());
+        int generation = 1;
+        if (parent != NONE) {
+            generation = Math.max(generation, generation(parent) + 1);
+        }
+        if (parent2 != NONE) {
+            generation = Math.max(generation, generation(parent2) + 1);
+        }
+        int p = (_size - _mapped) * RECORD;
+        if (p + RECORD > _added.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(2 * (p + RECORD));
+            bigger.put(_added.duplicate().position(0).limit(p));
+            _added = bigger;
+        }
+        _added.put(p, HEX.parseHex(commit.getHash()));
+        _added.putInt(p + KEY, parent);
+        _added.putInt(p + KEY + 4, parent2);
+        _added.putInt(p + KEY + 8, generation);
+        _added.putLong(p + KEY + 12, commit.getTimestamp());
+        _added.putInt(p + KEY + 20, commit.getNum());
+        _positions.put(commit.getHash(), _size);
+        _size += 1;
+    }
+
+    /** Returns the buffer holding the record at position I. */
+    private ByteBuffer buffer(int i) {
+        return i < _mapped ? _data : _added;
+    }
+
+    /** Returns the offset of the record at position I in buffer(I). */
+    private int offset(int i) {
+        return i < _mapped ? HEADER + i * RECORD : (i - _mapped) * RECORD;
+    }
+
+    /** Writes the records from position FROM (which were all added
+     *  since the graph file was mapped) on to the graph file, and then
+     *  the number of records. */
+    private void write(int from) {
+        try (RandomAccessFile out = new RandomAccessFile(_file, "rw")) {
+            byte[] header = new byte[HEADER];
+            ByteBuffer.wrap(header).putInt(MAGIC).putInt(VERSION).putInt(0);
+            if (from == 0) {
+                out.write(header);
+            }
+            byte[] records = new byte[(_size - from) * RECORD];
+            _added.get((from - _mapped) * RECORD, records);
+            out.seek(HEADER + (long) from * RECORD);
+            out.write(records);
+            out.seek(8);
+            out.writeInt(_size);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _store.written(_file);
+    }
+
+    /** Maps the graph file into memory, first building it from the object
+     *  store if it is missing, of another version or shorter than the
+     *  records it counts. */
+    private void load() {
+        if (_data != null) {
+            return;
+        }
+        if (_file.isFile() && !map()) {
+            _file.delete();
+        }
+        if (!_file.isFile()) {
+            _data = ByteBuffer.allocate(HEADER);
+            _size = _mapped = 0;
+            for (String id : _store.list(ObjectStore.COMMITS)) {
+                if (indexOf(id) == NONE) {
+                    insert(Commit.decodeHeader(
+                            _store.read(ObjectStore.COMMITS, id)), false);
+                }
+            }
+            write(0);
+        }
+    }
+
+    /** Maps the graph file into memory and returns true, or returns
+     *  false if it is not a graph of this version holding all the
+     *  records it counts. */
+    private boolean map() {
+        try (FileChannel channel = FileChannel.open(_file.toPath())) {
+            MappedByteBuffer map =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.capacity() < HEADER || map.getInt(0) != MAGIC
+                    || map.getInt(4) != VERSION || map.getInt(8) < 0
+                    || HEADER + (long) map.getInt(8) * RECORD
+                       > map.capacity()) {
+                return false;
+            }
+            _size = map.getInt(8);
+            _mapped = _size;
+            _unindexed = _size;
+            _data = map;
+            return true;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Magic number of graph files. */
+    private static final int MAGIC = 0x47434752;
+
+    /** Converts between ids and their bytes. */
+    private static final HexFormat HEX = HexFormat.of();
+
+    /** The graph file. */
+    private final File _file;
+
+    /** The commits described by the graph. */
+    private final ObjectStore _store;
+
+    /** The graph file mapped into memory (only a header if the graph was
+     *  built in memory), or null if not yet read. */
+    private ByteBuffer _data;
+
+    /** Number of records in _data. */
+    private int _mapped;
+
+    /** Records added since the graph file was mapped, from position
+     *  _mapped on. */
+    private ByteBuffer _added = ByteBuffer.allocate(0);
+
+    /** Number of records in the graph. */
+    private int _size;
+
+    /** Number of records, at the start of the graph, that are not yet in
+     *  _positions. */
+    private int _unindexed;
+
+    /** Positions of the commits looked up or added so far. */
+    private final HashMap<String, Integer> _positions =
+        new HashMap<String, Integer>();
+}
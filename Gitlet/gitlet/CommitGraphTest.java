@@ -0,0 +1,101 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of CommitGraph.
+ *  @author Kerem Dilmen
+ */
+public class CommitGraphTest {
+
+    @Test
+    public void parentsAndGenerations() {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        Commit root = TestUtils.commit(store, "root", null, null, 0);
+        Commit a = TestUtils.commit(store, "a", root.getHash(), null, 0);
+        Commit b1 = TestUtils.commit(store, "b1", root.getHash(), null, 0);
+        Commit b2 = TestUtils.commit(store, "b2", b1.getHash(), null, 0);
+        Commit m = TestUtils.commit(store, "m", a.getHash(), b2.getHash(), 0);
+        CommitGraph graph = new CommitGraph(new File(dir, "graph"), store);
+        graph.add(m);
+        assertEquals(5, graph.size());
+        int im = graph.lookup(m.getHash());
+        assertEquals(4, graph.generation(im));
+        assertEquals(a.getHash(), graph.id(graph.parent(im)));
+        assertEquals(b2.getHash(), graph.id(graph.parent2(im)));
+        assertEquals(1, graph.generation(graph.lookup(root.getHash())));
+        assertEquals(CommitGraph.NONE,
+                     graph.parent(graph.lookup(root.getHash())));
+        assertEquals(CommitGraph.NONE, graph.lookup(Utils.sha1("none")));
+
+        CommitGraph reread = new CommitGraph(new File(dir, "graph"), store);
+        assertEquals(5, reread.size());
+        assertEquals(4, reread.generation(reread.lookup(m.getHash())));
+    }
+
+    @Test
+    public void rebuildsAndHeals() throws IOException {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        Commit root = TestUtils.commit(store, "root", null, null, 0);
+        Commit a = TestUtils.commit(store, "a", root.getHash(), null, 0);
+        CommitGraph graph = new CommitGraph(new File(dir, "graph"), store);
+        assertEquals(2, graph.size());
+
+        try (FileOutputStream out =
+                 new FileOutputStream(new File(dir, "graph"), true)) {
+            out.write(new byte[7]);
+        }
+        Commit b = TestUtils.commit(store, "b", a.getHash(), null, 0);
+        graph = new CommitGraph(new File(dir, "graph"), store);
+        assertEquals(2, graph.size());
+        assertEquals(3, graph.generation(graph.lookup(b.getHash())));
+        assertEquals(3, new CommitGraph(new File(dir, "graph"), store).size());
+    }
+
+    @Test
+    public void newCommitsFollowMappedRecords() {
+        File dir = TestUtils.tempDir(), file = new File(dir, "graph");
+        ObjectStore store = new ObjectStore(dir);
+        Commit root = TestUtils.commit(store, "root", null, null, 0);
+        Commit a = TestUtils.commit(store, "a", root.getHash(), null, 0);
+        new CommitGraph(file, store).add(a);
+        CommitGraph graph = new CommitGraph(file, store);
+        Commit b = TestUtils.commit(store, "b", a.getHash(), null, 0);
+        graph.addNew(b);
+        Commit c = TestUtils.commit(store, "c", b.getHash(), root.getHash(), 0);
+        graph.addNew(c);
+        for (CommitGraph g : new CommitGraph[] {
+                graph, new CommitGraph(file, store) }) {
+            assertEquals(4, g.size());
+            int ic = g.lookup(c.getHash());
+            assertEquals(3, ic);
+            assertEquals(4, g.generation(ic));
+            assertEquals(b.getHash(), g.id(g.parent(ic)));
+            assertEquals(root.getHash(), g.id(g.parent2(ic)));
+            assertEquals(a.getHash(), g.id(g.parent(g.parent(ic))));
+        }
+    }
+
+    @Test
+    public void recordsLostUnderTheCountRebuild() throws IOException {
+        File dir = TestUtils.tempDir(), file = new File(dir, "graph");
+        ObjectStore store = new ObjectStore(dir);
+        Commit root = TestUtils.commit(store, "root", null, null, 0);
+        Commit a = TestUtils.commit(store, "a", root.getHash(), null, 0);
+        new CommitGraph(file, store).add(a);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - 10);
+        }
+        CommitGraph graph = new CommitGraph(file, store);
+        assertEquals(2, graph.size());
+        assertEquals(2, graph.generation(graph.lookup(a.getHash())));
+        assertEquals(root.getHash(), graph.id(graph.parent(
+            graph.lookup(a.getHash()))));
+    }
+}
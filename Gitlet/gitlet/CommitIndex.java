@@ -0,0 +1,253 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+
+/** A persistent index of the SHA-1 keys of all commits of a repository,
+ *  used to resolve abbreviated commit ids.  The index file holds a header
+ *  ("GCIX", a version, the number of sorted keys and the number of
+ *  unsorted ones), the sorted keys as 20 bytes each, and then the keys of
+ *  commits added since the last compaction, in the order they were added.
+ *  Keys are appended before the count in the header is updated, so bytes
+ *  past the keys it counts, left by an append cut short, are ignored (and
+ *  overwritten by the next one).  Lookups binary search the sorted part
+ *  and scan the (short) unsorted tail; once the tail grows past MAX_TAIL
+ *  keys the whole index is written in sorted order to a new file, which
+ *  then replaces the old one.
+ *  @author Kerem Dilmen
+ */
+class CommitIndex {
+
+    /** Index format version. */
+    private static final int VERSION = 2;
+
+    /** Size of the header. */
+    private static final int HEADER = 16;
+
+    /** Size of a key. */
+    private static final int KEY = 20;
+
+    /** Largest number of unsorted keys kept before compaction. */
+    private static final int MAX_TAIL = 1024;
+
+    /** The index of the commits in STORE, kept in the file FILE.  The
+     *  index is rebuilt from STORE if FILE does not exist, is of an
+     *  older version or is damaged. */
+    CommitIndex(File file, ObjectStore store) {
+        _file = file;
+        _store = store;
+    }
+
+    /** Records that the commit ID exists. */
+    void add(String id) {
+        load();
+        int from = _size;
+        insert(id);
+        save(from);
+    }
+
+    /** Records that each of COMMITS exists, writing the index file
+     *  once. */
+    void addAll(Collection<Commit> commits) {
+        load();
+        int from = _size;
+        for (Commit commit : commits) {
+            insert(commit.getHash());
+        }
+        save(from);
+    }
+
+    /** Returns the ids of up to LIMIT commits whose ids start with PREFIX,
+     *  in lexicographic order. */
+    List<String> find(String prefix, int limit) {
+        load();
+        TreeSet<String> result = new TreeSet<String>();
+        if (prefix.isEmpty() || prefix.length() > Utils.UID_LENGTH
+                || !prefix.chars().allMatch(HexFormat::isHexDigit)) {
+            return new ArrayList<String>();
+        }
+        prefix = prefix.toLowerCase();
+        int lo = 0, hi = _sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(HEADER + mid * KEY, prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < _sorted && result.size() < limit
+                 && comparePrefix(HEADER + k * KEY, prefix) == 0; k += 1) {
+            result.add(key(HEADER + k * KEY));
+        }
+        for (int p = HEADER + _sorted * KEY; p < HEADER + _size * KEY;
+             p += KEY) {
+            if (comparePrefix(p, prefix) == 0) {
+                result.add(key(p));
+            }
+        }
+        List<String> all = new ArrayList<String>(result);
+        return all.subList(0, Math.min(limit, all.size()));
+    }
+
+    /** Compares the first hex digits of the key at P with PREFIX. */
+    private int comparePrefix(int p, String prefix) {
+        for (int i = 0; i < prefix.length(); i += 1) {
+            int b = _data[p + i / 2] & 0xff;
+            int digit = i % 2 == 0 ? b >>> 4 : b & 0xf;
+            int c = Integer.compare(digit,
+                    Character.digit(prefix.charAt(i), 16));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the key at P as a hex string. */
+    private String key(int p) {
+        return HEX.formatHex(_data, p, p + KEY);
+    }
+
+    /** Adds the key ID to _data, growing it if needed, unless it is
+     *  already there. */
+    private void insert(String id) {
+        if (!find(id, 1).isEmpty()) {
+            return;
+        }
+        if (HEADER + (_size + 1) * KEY > _data.length) {
+            _data = Arrays.copyOf(_data, 2 * (HEADER + _size * KEY) + KEY);
+        }
+        System.arraycopy(HEX.parseHex(id), 0, _data, HEADER + _size * KEY,
+                         KEY);
+        _size += 1;
+    }
+
+    /** Writes the keys added to _data from position FROM on to the index
+     *  file, compacting it if the unsorted tail has grown too long. */
+    private void save(int from) {
+        if (_size - _sorted > MAX_TAIL) {
+            compact();
+        } else if (_size > from) {
+            append(from);
+        }
+    }
+
+    /** Reads the index, rebuilding it first if it is missing, of an
+     *  older version or counts more keys than it holds. */
+    private void load() {
+        if (_data != null) {
+            return;
+        }
+        if (_file.isFile()) {
+            byte[] data = Utils.readContents(_file);
+            ByteBuffer header = ByteBuffer.wrap(data);
+            if (data.length >= HEADER && header.getInt() == MAGIC
+                    && header.getInt() == VERSION) {
+                _sorted = header.getInt();
+                _size = _sorted + header.getInt();
+                if (_sorted >= 0 && _size >= _sorted
+                        && HEADER + (long) _size * KEY <= data.length) {
+                    _data = data;
+                    return;
+                }
+            }
+        }
+        List<String> ids = _store.list(ObjectStore.COMMITS);
+        _data = new byte[HEADER + ids.size() * KEY];
+        for (int k = 0; k < ids.size(); k += 1) {
+            System.arraycopy(HEX.parseHex(ids.get(k)), 0,
+                    _data, HEADER + k * KEY, KEY);
+        }
+        _size = _sorted = ids.size();
+        write();
+    }
+
+    /** Sorts all keys and rewrites the index. */
+    private void compact() {
+        byte[][] keys = new byte[_size][];
+        for (int k = 0; k < _size; k += 1) {
+            keys[k] = Arrays.copyOfRange(_data, HEADER + k * KEY,
+                    HEADER + (k + 1) * KEY);
+        }
+        Arrays.sort(keys, Arrays::compareUnsigned);
+        for (int k = 0; k < _size; k += 1) {
+            System.arraycopy(keys[k], 0, _data, HEADER + k * KEY, KEY);
+        }
+        _sorted = _size;
+        write();
+    }
+
+    /** Returns the header of the index. */
+    private byte[] header() {
+        byte[] result = new byte[HEADER];
+        ByteBuffer.wrap(result).putInt(MAGIC).putInt(VERSION).putInt(_sorted)
+            .putInt(_size - _sorted);
+        return result;
+    }
+
+    /** Writes the keys from position FROM on at their places in the index
+     *  file, and then the header that counts them. */
+    private void append(int from) {
+        try (RandomAccessFile out = new RandomAccessFile(_file, "rw")) {
+            out.seek(HEADER + (long) from * KEY);
+            out.write(_data, HEADER + from * KEY, (_size - from) * KEY);
+            out.seek(0);
+            out.write(header());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _store.written(_file);
+    }
+
+    /** Writes the whole index to a new file, which then replaces the
+     *  index file. */
+    private void write() {
+        File temp = new File(_file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(header());
+                out.write(_data, HEADER, _size * KEY);
+            }
+            Files.move(temp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _store.written(_file);
+    }
+
+    /** Magic number of index files. */
+    private static final int MAGIC = 0x47434958;
+
+    /** Converts between ids and their bytes. */
+    private static final HexFormat HEX = HexFormat.of();
+
+    /** The index file. */
+    private final File _file;
+
+    /** The objects indexed. */
+    private final ObjectStore _store;
+
+    /** Contents of the index file, perhaps followed by unused space, or
+     *  null if not yet read. */
+    private byte[] _data;
+
+    /** Number of keys in _data. */
+    private int _size;
+
+    /** Number of sorted keys at the start of _data. */
+    private int _sorted;
+}
@@ -0,0 +1,192 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of CommitIndex.
+ *  @author Kerem Dilmen
+ */
+public class CommitIndexTest {
+
+    /** Returns a made-up commit id starting with PREFIX and ending with
+     *  the hex digits of N. */
+    private static String id(String prefix, int n) {
+        String tail = String.format("%08x", n);
+        return prefix + "0".repeat(Utils.UID_LENGTH - prefix.length()
+                                   - tail.length()) + tail;
+    }
+
+    /** Returns an index kept in the file FILE of a repository without
+     *  commits. */
+    private static CommitIndex index(File file) {
+        return new CommitIndex(file, new ObjectStore(file.getParentFile()));
+    }
+
+    /** Returns the number of sorted keys recorded in the index file
+     *  FILE. */
+    private static int sortedKeys(File file) {
+        return ByteBuffer.wrap(Utils.readContents(file)).getInt(8);
+    }
+
+    @Test
+    public void ambiguousPrefix() {
+        CommitIndex index = index(new File(TestUtils.tempDir(), "index"));
+        index.add(id("ab1", 1));
+        index.add(id("ab2", 2));
+        index.add(id("cd", 3));
+        assertEquals(Arrays.asList(id("ab1", 1), id("ab2", 2)),
+                     index.find("ab", 2));
+        assertEquals(Arrays.asList(id("ab1", 1)), index.find("ab", 1));
+        assertEquals(Arrays.asList(id("ab2", 2)), index.find("AB2", 2));
+        assertEquals(Arrays.asList(id("cd", 3)), index.find(id("cd", 3), 2));
+        assertTrue(index.find("ef", 2).isEmpty());
+        assertTrue(index.find("abg", 2).isEmpty());
+        assertTrue(index.find("", 2).isEmpty());
+    }
+
+    @Test
+    public void addingTwiceKeepsOneKey() {
+        File file = new File(TestUtils.tempDir(), "index");
+        CommitIndex index = index(file);
+        index.add(id("ab", 1));
+        long length = file.length();
+        index.add(id("ab", 1));
+        assertEquals(length, file.length());
+        assertEquals(1, index.find("ab", 2).size());
+    }
+
+    @Test
+    public void compactsPastMaxTail() {
+        File file = new File(TestUtils.tempDir(), "index");
+        CommitIndex index = index(file);
+        ArrayList<String> ids = new ArrayList<String>();
+        for (int n = 1023; n >= 0; n -= 1) {
+            ids.add(id(n % 2 == 0 ? "aa" : "bb", n));
+            index.add(ids.get(ids.size() - 1));
+        }
+        assertEquals(0, sortedKeys(file));
+        ids.add(id("aa", 5000));
+        index.add(id("aa", 5000));
+        assertEquals(ids.size(), sortedKeys(file));
+        assertEquals(16 + 20 * ids.size(), file.length());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        byte[] data = Utils.readContents(file);
+        for (int k = 1; k < ids.size(); k += 1) {
+            assertTrue(Arrays.compareUnsigned(
+                data, 16 + (k - 1) * 20, 16 + k * 20,
+                data, 16 + k * 20, 16 + (k + 1) * 20) < 0);
+        }
+    }
+
+    @Test
+    public void findsInSortedPartAndTail() {
+        File file = new File(TestUtils.tempDir(), "index");
+        CommitIndex index = index(file);
+        for (int n = 0; n <= 1024; n += 1) {
+            index.add(id("1" + Integer.toHexString(n % 16), n));
+        }
+        assertEquals(1025, sortedKeys(file));
+        index.add(id("1a", 9000));
+        index.add(id("1a", 1));
+        index.add(id("2a", 9001));
+
+        for (CommitIndex idx : new CommitIndex[] { index, index(file) }) {
+            List<String> found = idx.find("1a", 1000);
+            assertEquals(1025 / 16 + 1 + 1, found.size());
+            assertEquals(id("1a", 1), found.get(0));
+            assertTrue(found.contains(id("1a", 10)));
+            assertTrue(found.contains(id("1a", 9000)));
+            ArrayList<String> sorted = new ArrayList<String>(found);
+            sorted.sort(null);
+            assertEquals(sorted, found);
+            assertEquals(Arrays.asList(id("1a", 1), id("1a", 10)),
+                         idx.find("1a", 2));
+            assertEquals(Arrays.asList(id("2a", 9001)), idx.find("2", 2));
+        }
+    }
+
+    @Test
+    public void tornAppendIsIgnored() throws IOException {
+        File file = new File(TestUtils.tempDir(), "index");
+        CommitIndex index = index(file);
+        index.add(id("ab", 1));
+        index.add(id("cd", 2));
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7 });
+        }
+        CommitIndex loaded = index(file);
+        assertEquals(Arrays.asList(id("cd", 2)), loaded.find("c", 2));
+        loaded.add(id("ef", 3));
+        assertEquals(16 + 3 * 20, file.length());
+        CommitIndex reloaded = index(file);
+        for (String id : new String[] { id("ab", 1), id("cd", 2),
+                                        id("ef", 3) }) {
+            assertEquals(Arrays.asList(id), reloaded.find(id, 2));
+        }
+    }
+
+    @Test
+    public void addAllWritesEachKeyOnce() {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        ArrayList<Commit> commits = new ArrayList<Commit>();
+        for (int n = 0; n < 3000; n += 1) {
+            commits.add(new Commit(Utils.sha1("tree" + n), "message", null,
+                                   n, null));
+        }
+        commits.add(commits.get(0));
+        File file = new File(dir, "index");
+        CommitIndex index = new CommitIndex(file, store);
+        index.addAll(commits.subList(0, 10));
+        index.addAll(commits.subList(5, 20));
+        assertEquals(16 + 20 * 20, file.length());
+        index.addAll(commits);
+        assertEquals(3000, sortedKeys(file));
+        assertEquals(16 + 20 * 3000, file.length());
+        for (Commit commit : commits) {
+            assertEquals(Arrays.asList(commit.getHash()),
+                         index(file).find(commit.getHash(), 2));
+        }
+    }
+
+    @Test
+    public void damagedIndexIsRebuilt() throws IOException {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        Commit commit = new Commit(Utils.sha1("tree"), "message", null, 0,
+                                   null);
+        store.write(ObjectStore.COMMITS, commit.getHash(), commit.encode());
+        File file = new File(dir, "index");
+        CommitIndex index = new CommitIndex(file, store);
+        index.add(id("ab", 1));
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(file.length() - 5);
+        }
+        CommitIndex rebuilt = new CommitIndex(file, store);
+        assertEquals(Arrays.asList(commit.getHash()),
+                     rebuilt.find(commit.getHash(), 2));
+        assertTrue(rebuilt.find("ab", 2).isEmpty());
+        assertEquals(1, sortedKeys(file));
+    }
+
+    @Test
+    public void rebuiltFromObjectStore() {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        Commit commit = new Commit(Utils.sha1("tree"), "message", null, 0,
+                                   null);
+        store.write(ObjectStore.COMMITS, commit.getHash(), commit.encode());
+        CommitIndex index = new CommitIndex(new File(dir, "index"), store);
+        assertEquals(Arrays.asList(commit.getHash()),
+                     index.find(commit.getHash().substring(0, 6), 2));
+        assertEquals(1, sortedKeys(new File(dir, "index")));
+    }
+}
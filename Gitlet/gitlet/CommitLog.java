@@ -0,0 +1,282 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/** The metadata (SHA-1 key, parents, number, time and message) of every
+ *  commit of a repository, in one sequential file, so that global-log
+ *  and find read one file instead of every commit object.
+ *  The file holds a header ("GCLG", a version, the number of records,
+ *  the largest commit number, the length of the records and the offset
+ *  of the last one) and then one record per commit, in the order they
+ *  were added: its length, its time in seconds since the epoch, and the
+ *  commit as encoded by Commit.encode (which leaves out the files of
+ *  commits of the old format).  Records are appended and the header
+ *  updated last, so a record that was only partly written is ignored.
+ *  The file is made durable by the command's transaction along with the
+ *  commits it describes.  Should the header still describe records that
+ *  never reached the disk (the last one not ending the records, or not
+ *  being a stored commit), the file is rebuilt from the object store, as
+ *  it is if it is missing.
+ *  @author Kerem Dilmen
+ */
+class CommitLog {
+
+    /** Log format version. */
+    private static final int VERSION = 2;
+
+    /** Size of the header. */
+    private static final int HEADER = 32;
+
+    /** The log of the commits in STORE, kept in the file FILE. */
+    CommitLog(File file, ObjectStore store) {
+        _file = file;
+        _store = store;
+    }
+
+    /** Returns the number of commits in the log. */
+    int size() {
+        load();
+        return _size;
+    }
+
+    /** Returns the largest commit number in the log, or 0. */
+    int maxNum() {
+        load();
+        return _maxNum;
+    }
+
+    /** Adds COMMIT to the log. */
+    void add(Commit commit) {
+        addAll(Collections.singletonList(commit));
+    }
+
+    /** Adds each of COMMITS to the log, writing it once.  Commits that
+     *  were already stored when the log was rebuilt are in it already,
+     *  and are skipped. */
+    void addAll(Collection<Commit> commits) {
+        load();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int size = _size, maxNum = _maxNum;
+        long last = _last;
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Commit commit : commits) {
+                if (_rebuilt != null && _rebuilt.contains(commit.getHash())) {
+                    continue;
+                }
+                byte[] encoded = commit.encode();
+                last = _end + out.size();
+                out.writeInt(encoded.length + 8);
+                out.writeLong(commit.getTimestamp());
+                out.write(encoded);
+                size += 1;
+                maxNum = Math.max(maxNum, commit.getNum());
+            }
+            if (size == _size) {
+                return;
+            }
+            try (RandomAccessFile file = new RandomAccessFile(_file, "rw")) {
+                file.seek(HEADER + _end);
+                file.write(bytes.toByteArray());
+                file.seek(0);
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeInt(size);
+                file.writeInt(maxNum);
+                file.writeLong(_end + bytes.size());
+                file.writeLong(last);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _store.written(_file);
+        _size = size;
+        _maxNum = maxNum;
+        _end += bytes.size();
+        _last = last;
+    }
+
+    /** Returns the length of the records, which is also the offset the
+     *  next record will be added at. */
+    long end() {
+        load();
+        return _end;
+    }
+
+    /** Calls ACTION on each commit in the log, in the order they were
+     *  added, reading the log once from start to end.  The commits have
+     *  neither files nor a tree. */
+    void forEach(Consumer<Commit> action) {
+        forEach(0, (offset, commit) -> action.accept(commit));
+    }
+
+    /** Calls ACTION with the offset and the commit of each record from
+     *  offset FROM (which must be that of a record, or end()) on, in
+     *  order. */
+    void forEach(long from, BiConsumer<Long, Commit> action) {
+        forEach(from, Long.MIN_VALUE, Long.MAX_VALUE, action);
+    }
+
+    /** Calls ACTION on each commit in the log made from time SINCE to
+     *  time UNTIL (in seconds since the epoch, inclusive), as by forEach.
+     *  Other records are skipped without being decoded. */
+    void forEach(long since, long until, Consumer<Commit> action) {
+        forEach(0, since, until, (offset, commit) -> action.accept(commit));
+    }
+
+    /** Calls ACTION with the offset and the commit of each record from
+     *  offset FROM on whose time is from SINCE to UNTIL, in order. */
+    private void forEach(long from, long since, long until,
+                         BiConsumer<Long, Commit> action) {
+        load();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(_file),
+                                        1 << 16))) {
+            in.skipNBytes(HEADER + from);
+            for (long offset = from; offset < _end; ) {
+                int length = in.readInt();
+                byte[] record = new byte[length - 8];
+                long time = in.readLong();
+                in.readFully(record);
+                if (since <= time && time <= until) {
+                    action.accept(offset, Commit.decodeHeader(record));
+                }
+                offset += 4 + length;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the commits of the records at offsets OFFSETS, in the
+     *  same order, opening the log once. */
+    List<Commit> read(long[] offsets) {
+        load();
+        ArrayList<Commit> result = new ArrayList<Commit>();
+        try (RandomAccessFile in = new RandomAccessFile(_file, "r")) {
+            for (long offset : offsets) {
+                in.seek(HEADER + offset);
+                byte[] record = new byte[in.readInt() - 8];
+                in.readLong();
+                in.readFully(record);
+                result.add(Commit.decodeHeader(record));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns the commits of the log, as by forEach. */
+    List<Commit> commits() {
+        ArrayList<Commit> result = new ArrayList<Commit>();
+        forEach(result::add);
+        return result;
+    }
+
+    /** Reads the header of the log file, first building it from the
+     *  object store if it is missing, of an older version or does not
+     *  match its records. */
+    private void load() {
+        if (_loaded) {
+            return;
+        }
+        _loaded = true;
+        if (_file.isFile() && !readHeader()) {
+            _file.delete();
+            _size = _maxNum = 0;
+            _end = _last = 0;
+        }
+        if (!_file.isFile()) {
+            ArrayList<Commit> commits = new ArrayList<Commit>();
+            for (String id : _store.list(ObjectStore.COMMITS)) {
+                commits.add(Commit.decodeHeader(
+                    _store.read(ObjectStore.COMMITS, id)));
+            }
+            commits.sort(Comparator.comparingInt(Commit::getNum));
+            addAll(commits);
+            _rebuilt = new HashSet<String>();
+            for (Commit commit : commits) {
+                _rebuilt.add(commit.getHash());
+            }
+        }
+    }
+
+    /** Reads the header of the log file, and returns true iff it is of
+     *  this version and its records end with a whole record of a stored
+     *  commit. */
+    private boolean readHeader() {
+        try (RandomAccessFile in = new RandomAccessFile(_file, "r")) {
+            if (in.length() < HEADER || in.readInt() != MAGIC
+                    || in.readInt() != VERSION) {
+                return false;
+            }
+            _size = in.readInt();
+            _maxNum = in.readInt();
+            _end = in.readLong();
+            _last = in.readLong();
+            if (_size == 0) {
+                return _end == 0;
+            }
+            if (_end < 0 || HEADER + _end > in.length() || _last < 0
+                    || _last + 12 > _end) {
+                return false;
+            }
+            in.seek(HEADER + _last);
+            int length = in.readInt();
+            if (_last + 4 + length != _end) {
+                return false;
+            }
+            byte[] record = new byte[length - 8];
+            in.readLong();
+            in.readFully(record);
+            String id = Commit.decodeHeader(record).getHash();
+            return id != null && _store.contains(ObjectStore.COMMITS, id);
+        } catch (IOException | IllegalArgumentException excp) {
+            return false;
+        }
+    }
+
+    /** Magic number of log files. */
+    private static final int MAGIC = 0x47434c47;
+
+    /** The log file. */
+    private final File _file;
+
+    /** The commits described by the log. */
+    private final ObjectStore _store;
+
+    /** True iff the header has been read. */
+    private boolean _loaded;
+
+    /** Number of records. */
+    private int _size;
+
+    /** Largest commit number. */
+    private int _maxNum;
+
+    /** Length of the records. */
+    private long _end;
+
+    /** Offset of the last record. */
+    private long _last;
+
+    /** Keys of the commits put in the log when it was rebuilt by this
+     *  object, or null. */
+    private HashSet<String> _rebuilt;
+}
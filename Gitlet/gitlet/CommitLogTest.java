@@ -0,0 +1,111 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of CommitLog.
+ *  @author Kerem Dilmen
+ */
+public class CommitLogTest {
+
+    /** Returns the messages of the commits in LOG, in order. */
+    private static List<String> messages(CommitLog log) {
+        ArrayList<String> result = new ArrayList<String>();
+        log.forEach(c -> result.add(c.getMessage()));
+        return result;
+    }
+
+    @Test
+    public void appendAndStream() {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        CommitLog log = new CommitLog(new File(dir, "log"), store);
+        assertEquals(0, log.maxNum());
+        Commit a = TestUtils.commit(store, "a", null, null, 0);
+        Commit b = TestUtils.commit(store, "b", a.getHash(), null, 1);
+        log.add(a);
+        log.add(b);
+        assertEquals(List.of("a", "b"), messages(log));
+        log.add(TestUtils.commit(store, "c", b.getHash(), null, 7));
+
+        CommitLog reread = new CommitLog(new File(dir, "log"), store);
+        assertEquals(3, reread.size());
+        assertEquals(7, reread.maxNum());
+        assertEquals(List.of("a", "b", "c"), messages(reread));
+        Commit second = reread.commits().get(1);
+        assertEquals(b.getHash(), second.getHash());
+        assertEquals(a.getHash(), second.getParent());
+        assertEquals(b.getTime(), second.getTime());
+    }
+
+    @Test
+    public void rebuildsFromStore() {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        Commit a = TestUtils.commit(store, "a", null, null, 0);
+        Commit b = TestUtils.commit(store, "b", a.getHash(), null, 5);
+        CommitLog log = new CommitLog(new File(dir, "log"), store);
+        log.add(b);
+        assertEquals(List.of("a", "b"), messages(log));
+        assertEquals(5, log.maxNum());
+    }
+
+    @Test
+    public void tornRecordsAreIgnored() throws IOException {
+        File dir = TestUtils.tempDir(), file = new File(dir, "log");
+        ObjectStore store = new ObjectStore(dir);
+        CommitLog log = new CommitLog(file, store);
+        log.add(TestUtils.commit(store, "a", null, null, 0));
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] { 0, 0, 0, 99, 1, 2 });
+        }
+        CommitLog reread = new CommitLog(file, store);
+        assertEquals(List.of("a"), messages(reread));
+        reread.add(TestUtils.commit(store, "b", null, null, 1));
+        assertEquals(List.of("a", "b"), messages(new CommitLog(file, store)));
+    }
+
+    @Test
+    public void recordsLostUnderTheHeaderRebuild() throws IOException {
+        File dir = TestUtils.tempDir(), file = new File(dir, "log");
+        ObjectStore store = new ObjectStore(dir);
+        CommitLog log = new CommitLog(file, store);
+        Commit a = TestUtils.commit(store, "a", null, null, 0);
+        log.add(a);
+        long end = log.end();
+        log.add(TestUtils.commit(store, "b", a.getHash(), null, 3));
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(32 + end);
+            out.write(new byte[(int) (log.end() - end)]);
+        }
+        CommitLog reread = new CommitLog(file, store);
+        assertEquals(List.of("a", "b"), messages(reread));
+        assertEquals(3, reread.maxNum());
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - 10);
+        }
+        reread = new CommitLog(file, store);
+        assertEquals(List.of("a", "b"), messages(reread));
+        assertEquals(3, reread.maxNum());
+    }
+
+    @Test
+    public void unstoredLastCommitRebuilds() {
+        File dir = TestUtils.tempDir(), file = new File(dir, "log");
+        ObjectStore store = new ObjectStore(dir);
+        CommitLog log = new CommitLog(file, store);
+        Commit a = TestUtils.commit(store, "a", null, null, 0);
+        log.add(a);
+        log.add(new Commit(Utils.sha1("lost"), "lost", a.getHash(), 9,
+                           null));
+        CommitLog reread = new CommitLog(file, store);
+        assertEquals(List.of("a"), messages(reread));
+        assertEquals(0, reread.maxNum());
+    }
+}
@@ -0,0 +1,277 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/** A long-running Gitlet process serving the commands of one repository
+ *  over a Unix domain socket in its .gitlet directory, so that commands
+ *  do not each pay for starting a JVM, loading classes and filling
+ *  caches.  The daemon keeps one Repository, reloading its small state
+ *  files before each command, and runs commands one at a time.
+ *  A client sends the number of arguments and then each argument; the
+ *  daemon answers with frames, each a type byte and a length, holding
+ *  the command's standard output (OUT) and standard error (ERR), and
+ *  ends with an EXIT frame whose length is the exit status.
+ *  @author Kerem Dilmen
+ */
+class Daemon {
+
+    /** Frame of standard output. */
+    private static final int OUT = 1;
+
+    /** Frame of standard error. */
+    private static final int ERR = 2;
+
+    /** Last frame of a reply, holding the exit status. */
+    private static final int EXIT = 0;
+
+    /** Size of the buffers of command output. */
+    private static final int BUFFER = 1 << 16;
+
+    /** Milliseconds a client is given to send its whole command. */
+    static final long TIMEOUT = 5000;
+
+    /** A daemon listening on (or a client of the daemon listening on)
+     *  the socket file SOCKET. */
+    Daemon(File socket) {
+        this(socket, TIMEOUT);
+    }
+
+    /** A daemon listening on the socket file SOCKET that gives a client
+     *  TIMEOUT milliseconds to send its command. */
+    Daemon(File socket, long timeout) {
+        _socket = socket;
+        _timeout = timeout;
+    }
+
+    /** Sends the command ARGS to the daemon, copying its output to
+     *  System.out and System.err, and returns its exit status.  Returns
+     *  null, having done nothing, if no daemon is listening. */
+    Integer forward(String[] args) {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return null;
+        }
+        try (SocketChannel open = channel) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(open)));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                Codec.writeString(out, arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(
+                    Channels.newInputStream(open));
+            while (true) {
+                int type = in.read();
+                int length = in.readInt();
+                if (type == EXIT) {
+                    System.out.flush();
+                    return length;
+                }
+                byte[] data = in.readNBytes(length);
+                (type == ERR ? System.err : System.out).write(data);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns true iff a daemon is listening on the socket. */
+    boolean isRunning() {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return false;
+        }
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return true;
+    }
+
+    /** Serves commands until told to stop by "daemon stop", ignoring
+     *  clients that hang up without sending a command (as isRunning
+     *  does) or that do not send it in time.  Removes the socket file
+     *  when done. */
+    void serve() {
+        _socket.delete();
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(_socket.toPath()));
+            boolean stop = false;
+            while (!stop) {
+                try (SocketChannel client = server.accept()) {
+                    stop = handle(client);
+                } catch (EOFException | SocketTimeoutException excp) {
+                    continue;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            _socket.delete();
+        }
+    }
+
+    /** Runs one command sent by CLIENT, sending back its output.
+     *  Returns true iff the command was "daemon stop". */
+    private boolean handle(SocketChannel client) throws IOException {
+        String[] args = receive(client);
+        DataOutputStream reply = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(client)));
+        boolean stop = args.length == 2 && args[0].equals("daemon")
+            && args[1].equals("stop");
+        int status = 0;
+        PrintStream stdout = System.out, stderr = System.err;
+        PrintStream out = frames(reply, OUT), err = frames(reply, ERR);
+        System.setOut(out);
+        System.setErr(err);
+        try {
+            if (!stop) {
+                run(args);
+            }
+        } catch (RuntimeException | Error excp) {
+            excp.printStackTrace();
+            status = 1;
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        out.flush();
+        err.flush();
+        reply.write(EXIT);
+        reply.writeInt(status);
+        reply.flush();
+        return stop;
+    }
+
+    /** Returns the command sent by CLIENT, waiting at most _timeout
+     *  milliseconds for all of it.  Throws EOFException if the client
+     *  hangs up first and SocketTimeoutException if it is too slow. */
+    private String[] receive(SocketChannel client) throws IOException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+        long deadline = System.currentTimeMillis() + _timeout;
+        String[] args;
+        client.configureBlocking(false);
+        try (Selector selector = Selector.open()) {
+            client.register(selector, SelectionKey.OP_READ);
+            while ((args = parse(received.toByteArray())) == null) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    throw new SocketTimeoutException("client too slow");
+                }
+                selector.select(left);
+                selector.selectedKeys().clear();
+                buffer.clear();
+                if (client.read(buffer) < 0) {
+                    throw new EOFException();
+                }
+                received.write(buffer.array(), 0, buffer.position());
+            }
+        }
+        client.configureBlocking(true);
+        return args;
+    }
+
+    /** Returns the command in DATA, or null if DATA is only the start
+     *  of one.  Throws EOFException if DATA is not a command. */
+    private static String[] parse(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(data));
+        if (data.length < 4) {
+            return null;
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new EOFException();
+        } else if (count > in.available() / 4) {
+            return null;
+        }
+        try {
+            String[] args = new String[count];
+            for (int i = 0; i < args.length; i += 1) {
+                args[i] = Codec.readString(in);
+            }
+            return args;
+        } catch (EOFException excp) {
+            return null;
+        }
+    }
+
+    /** Runs the command ARGS on the repository, which is read when the
+     *  first command arrives and reloaded before each later one. */
+    void run(String[] args) {
+        if (_repo == null) {
+            _repo = new Repository();
+        } else {
+            _repo.reload();
+        }
+        Main.run(args, _repo);
+    }
+
+    /** Returns a stream whose contents are written to OUT as frames of
+     *  type TYPE. */
+    private static PrintStream frames(DataOutputStream out, int type) {
+        OutputStream framer = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (len > 0) {
+                    out.write(type);
+                    out.writeInt(len);
+                    out.write(b, off, len);
+                }
+            }
+        };
+        return new PrintStream(new BufferedOutputStream(framer, BUFFER),
+                               false, StandardCharsets.UTF_8);
+    }
+
+    /** Returns a connection to the daemon, or null if none is
+     *  listening. */
+    private SocketChannel connect() {
+        if (!_socket.exists()) {
+            return null;
+        }
+        try {
+            return SocketChannel.open(
+                    UnixDomainSocketAddress.of(_socket.toPath()));
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** The socket file. */
+    private final File _socket;
+
+    /** Milliseconds a client is given to send its command. */
+    private final long _timeout;
+
+    /** The repository commands are run on, once one has arrived. */
+    private Repository _repo;
+}
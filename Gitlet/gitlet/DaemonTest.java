@@ -0,0 +1,149 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Daemon, served in this process.
+ *  @author Kerem Dilmen
+ */
+public class DaemonTest {
+
+    /** A daemon on SOCKET, giving clients TIMEOUT milliseconds to send
+     *  a command, whose commands print each argument on a line of
+     *  standard output, except that "err" prints "oops" on standard
+     *  error and "fail" fails. */
+    private static Daemon echo(File socket, long timeout) {
+        return new Daemon(socket, timeout) {
+            @Override
+            void run(String[] args) {
+                for (String arg : args) {
+                    if (arg.equals("fail")) {
+                        throw new IllegalStateException("failed");
+                    } else if (arg.equals("err")) {
+                        System.err.println("oops");
+                    } else {
+                        System.out.println(arg);
+                    }
+                }
+            }
+        };
+    }
+
+    /** Returns a thread serving DAEMON, once it is listening. */
+    private static Thread start(Daemon daemon) {
+        Thread server = new Thread(daemon::serve);
+        server.start();
+        for (int i = 0; !daemon.isRunning(); i += 1) {
+            assertTrue("daemon did not start", i < 500);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException excp) {
+                throw new IllegalStateException(excp);
+            }
+        }
+        return server;
+    }
+
+    /** Output of one command sent by forward. */
+    private static class Reply {
+        /** Standard output. */
+        private String _out;
+        /** Standard error. */
+        private String _err;
+        /** Exit status, or null if no daemon was listening. */
+        private Integer _status;
+    }
+
+    /** Sends ARGS to DAEMON, capturing what it copies to System.out and
+     *  System.err. */
+    private static Reply send(Daemon daemon, String... args) {
+        PrintStream stdout = System.out, stderr = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(),
+            err = new ByteArrayOutputStream();
+        Reply reply = new Reply();
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+        try {
+            reply._status = daemon.forward(args);
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        reply._out = out.toString(StandardCharsets.UTF_8);
+        reply._err = err.toString(StandardCharsets.UTF_8);
+        return reply;
+    }
+
+    /** Stops DAEMON, which is served by SERVER, and waits for it. */
+    private static void stop(Daemon daemon, Thread server) {
+        assertEquals(0, (long) send(daemon, "daemon", "stop")._status);
+        try {
+            server.join(5000);
+        } catch (InterruptedException excp) {
+            throw new IllegalStateException(excp);
+        }
+        assertFalse(server.isAlive());
+    }
+
+    @Test
+    public void framesOutputAndStatus() {
+        File socket = new File(TestUtils.tempDir(), "daemon.sock");
+        Daemon daemon = echo(socket, Daemon.TIMEOUT);
+        Thread server = start(daemon);
+        Reply reply = send(daemon, "a", "err", "b");
+        assertEquals(0, (long) reply._status);
+        assertEquals("a\nb\n", reply._out);
+        assertEquals("oops\n", reply._err);
+        reply = send(daemon, "c", "fail");
+        assertEquals(1, (long) reply._status);
+        assertEquals("c\n", reply._out);
+        assertTrue(reply._err.contains("failed"));
+        reply = send(daemon);
+        assertEquals(0, (long) reply._status);
+        assertEquals("", reply._out + reply._err);
+        stop(daemon, server);
+        assertFalse(socket.exists());
+        assertNull(send(daemon, "a")._status);
+    }
+
+    @Test
+    public void silentClientTimesOut() throws IOException {
+        File socket = new File(TestUtils.tempDir(), "daemon.sock");
+        Daemon daemon = echo(socket, 200);
+        Thread server = start(daemon);
+        try (SocketChannel silent = SocketChannel.open(
+                 UnixDomainSocketAddress.of(socket.toPath()))) {
+            silent.write(ByteBuffer.wrap(new byte[] { 0, 0 }));
+            assertEquals("a\n", send(daemon, "a")._out);
+        }
+        stop(daemon, server);
+    }
+
+    @Test
+    public void staleSocketFallsBack() throws IOException {
+        File socket = new File(TestUtils.tempDir(), "daemon.sock");
+        try (ServerSocketChannel dead =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            dead.bind(UnixDomainSocketAddress.of(socket.toPath()));
+        }
+        assertTrue(socket.exists());
+        Daemon daemon = echo(socket, Daemon.TIMEOUT);
+        assertFalse(daemon.isRunning());
+        Reply reply = send(daemon, "a");
+        assertNull(reply._status);
+        assertEquals("", reply._out + reply._err);
+        Thread server = start(daemon);
+        assertEquals("a\n", send(daemon, "a")._out);
+        stop(daemon, server);
+    }
+}
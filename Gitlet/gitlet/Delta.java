@@ -0,0 +1,140 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Binary deltas between two versions of an object, used by packs to store
+ *  an object as a list of edits against a similar base object.  A delta is
+ *  the base length and target length as varints, followed by instructions.
+ *  An instruction byte with its high bit set is a copy of a range of the
+ *  base (varint offset, varint length); otherwise the byte is the number
+ *  (1 - 127) of literal bytes that follow it and are inserted as is.
+ *  @author Kerem Dilmen
+ */
+class Delta {
+
+    /** Number of bytes in the blocks of the base that are indexed. */
+    static final int BLOCK = 16;
+
+    /** Largest number of literal bytes in a single insert instruction. */
+    private static final int MAX_INSERT = 127;
+
+    /** Returns the delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+
+        HashMap<Integer, Integer> blocks = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(hash(base, i), i);
+        }
+
+        int pending = 0;
+        int i = 0;
+        while (i + BLOCK <= target.length) {
+            Integer start = blocks.get(hash(target, i));
+            if (start == null
+                    || !Arrays.equals(base, start, start + BLOCK,
+                                      target, i, i + BLOCK)) {
+                i += 1;
+                continue;
+            }
+            int b = start, t = i;
+            while (b > 0 && t > pending && base[b - 1] == target[t - 1]) {
+                b -= 1;
+                t -= 1;
+            }
+            int end = i + BLOCK, bEnd = start + BLOCK;
+            while (end < target.length && bEnd < base.length
+                    && base[bEnd] == target[end]) {
+                end += 1;
+                bEnd += 1;
+            }
+            writeInserts(out, target, pending, t);
+            out.write(0x80);
+            writeVarint(out, b);
+            writeVarint(out, end - t);
+            pending = end;
+            i = end;
+        }
+        writeInserts(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = new int[] {0};
+        int baseLen = readVarint(delta, pos);
+        int targetLen = readVarint(delta, pos);
+        if (baseLen != base.length) {
+            throw new IllegalArgumentException("delta does not match base");
+        }
+        byte[] result = new byte[targetLen];
+        int t = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]] & 0xff;
+            pos[0] += 1;
+            if ((op & 0x80) != 0) {
+                int offset = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, t, len);
+                t += len;
+            } else {
+                System.arraycopy(delta, pos[0], result, t, op);
+                pos[0] += op;
+                t += op;
+            }
+        }
+        if (t != targetLen) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return result;
+    }
+
+    /** Writes the bytes FROM .. TO - 1 of DATA to OUT as insert
+     *  instructions. */
+    private static void writeInserts(ByteArrayOutputStream out, byte[] data,
+                                     int from, int to) {
+        while (from < to) {
+            int n = Math.min(MAX_INSERT, to - from);
+            out.write(n);
+            out.write(data, from, n);
+            from += n;
+        }
+    }
+
+    /** Returns a hash of the BLOCK bytes of DATA starting at START. */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int k = start; k < start + BLOCK; k += 1) {
+            h = 31 * h + data[k];
+        }
+        return h;
+    }
+
+    /** Writes the non-negative VALUE to OUT, seven bits at a time. */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /** Reads a varint from DATA at POS[0], advancing POS[0] past it. */
+    static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        int shift = 0;
+        while (true) {
+            int b = data[pos[0]] & 0xff;
+            pos[0] += 1;
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+}
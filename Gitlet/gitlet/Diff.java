@@ -1,55 +1,96 @@
 package gitlet;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-
-import java.io.IOException;
-import java.nio.file.InvalidPathException;
-
-import static java.lang.Math.max;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 /** A comparison of two sequences of strings.  After executing setSequences to
  *  initialize the data, methods allow computing longest common sequences
  *  and differences in the form of edits needed to convert one sequence to the
  *  next.
- *  @author P. N. Hilfinger */
+ *  Lines are first replaced by small integers, equal lines by equal
+ *  numbers, so that they are compared as ints.  The common subsequence is
+ *  then found by one of two algorithms, chosen with setAlgorithm:
+ *  MYERS, Myers's O(ND) algorithm in its linear-space form, which
+ *  searches for the middle snake of an optimal edit path from both ends
+ *  at once and recurses on the halves on either side of it; and
+ *  HISTOGRAM, which matches up the longest run of lines around the line
+ *  occurring fewest times in the first sequence, recursing on either
+ *  side, and falls back to Myers where no line occurs few enough times.
+ *  Both take space linear in the lengths of the sequences.  MYERS
+ *  finds a longest common subsequence; HISTOGRAM may find a shorter one,
+ *  but one that pairs up distinctive lines (such as the starts of
+ *  functions) rather than blank lines and braces.
+ *  @author Kerem Dilmen */
 public class Diff {
 
+    /** Algorithm finding a longest common subsequence. */
+    public static final int MYERS = 0;
+
+    /** Algorithm matching rare lines first. */
+    public static final int HISTOGRAM = 1;
+
+    /** Most times a line may occur in the part of the first sequence
+     *  being compared for HISTOGRAM to match around it. */
+    private static final int MAX_CHAIN = 64;
+
+    /** Depth of recursion of HISTOGRAM beyond which it uses MYERS. */
+    private static final int MAX_DEPTH = 64;
+
+    /** Sets the algorithm used to ALGORITHM, MYERS (the default) or
+     *  HISTOGRAM. */
+    public void setAlgorithm(int algorithm) {
+        _algorithm = algorithm;
+        _match = null;
+    }
+
     /** Set the sequences currently being compared to the contents
      *  of SEQ1 and SEQ2 (as delivered by their iterators). */
     public void setSequences(Collection<String> seq1, Collection<String> seq2) {
         _lines1 = new ArrayList<>(seq1);
         _lines2 = new ArrayList<>(seq2);
-        _lls = null;
-        _todo = null;
+        _ids1 = _ids2 = null;
+        _match = null;
+    }
+
+    /** Set the sequences currently being compared to lines already
+     *  replaced by numbers, equal lines by equal numbers (which must be
+     *  small, as they index tables): SEQ1 and SEQ2.  sequence1(),
+     *  sequence2(), get1 and get2 are then not available. */
+    public void setSequences(int[] seq1, int[] seq2) {
+        _ids1 = seq1;
+        _ids2 = seq2;
+        _lines1 = _lines2 = null;
+        _match = null;
     }
 
     /** Set the sequences currently being compared to the contents
      *  of FILE1 and FILE2.  Null Files set empty lists. */
     public void setSequences(File file1, File file2) {
+        _lines1 = readLines(file1);
+        _lines2 = readLines(file2);
+        _ids1 = _ids2 = null;
+        _match = null;
+    }
+
+    /** Returns the lines of FILE, or an empty list if it cannot be
+     *  read. */
+    private static List<String> readLines(File file) {
         try {
-            Path p1 = file1.toPath();
-            _lines1 = Files.readAllLines(p1);
-        } catch (IOException | InvalidPathException | NullPointerException
-                 excp) {
-            _lines1 = Collections.emptyList();
-        }
-        try {
-            Path p2 = file2.toPath();
-            _lines2 = Files.readAllLines(p2);
+            Path path = file.toPath();
+            return Files.readAllLines(path);
         } catch (IOException | InvalidPathException | NullPointerException
                  excp) {
-            _lines2 = Collections.emptyList();
+            return Collections.emptyList();
         }
-        _lls = null;
-        _todo = null;
     }
 
     /** Return the first of the current sequences. */
@@ -73,91 +114,42 @@ public class Diff {
     }
 
     /** Return the length of the longest subsequence of the first K1 and K2
-     *  items, respectively, of the current data sequences. */
+     *  items, respectively, of the current data sequences, as found by the
+     *  current algorithm. */
     public int lls(int k1, int k2) {
         checkData();
-        if (_lls == null) {
-            _lls = new int[_lines1.size() + 1][_lines2.size() + 1];
-            for (int[] row : _lls) {
-                Arrays.fill(row, -1);
-            }
+        k1 = Math.min(k1, size1());
+        k2 = Math.min(k2, size2());
+        if (k1 == size1() && k2 == size2()) {
+            return lls();
         }
-        if (k1 == 0 || k2 == 0
-            || k1 > _lines1.size() || k2 > _lines2.size()) {
-            return 0;
-        } else if (_lls[k1][k2] == -1) {
-            initStack();
-            push(k1, k2, 0);
-            while (!empty()) {
-                pop();
-                if (_llsTop1 == 0 || _llsTop2 == 0) {
-                    _lls[_llsTop1][_llsTop2] = 0;
-                } else if (_lls[_llsTop1][_llsTop2] != -1) {
-                    continue;
-                } else {
-                    switch (_llsState) {
-                    case 0:
-                        if (_lines1.get(_llsTop1 - 1)
-                            .equals(_lines2.get(_llsTop2 - 1))) {
-                            push(_llsTop1, _llsTop2, 4);
-                            push(_llsTop1 - 1, _llsTop2 - 1, 0);
-                        } else {
-                            push(_llsTop1, _llsTop2, 1);
-                        }
-                        continue;
-                    case 1:
-                        push(_llsTop1, _llsTop2, 2);
-                        push(_llsTop1, _llsTop2 - 1, 0);
-                        continue;
-                    case 2:
-                        push(_llsTop1, _llsTop2, 3);
-                        push(_llsTop1 - 1, _llsTop2, 0);
-                        continue;
-                    case 3:
-                        _lls[_llsTop1][_llsTop2]
-                            = max(_lls[_llsTop1][_llsTop2 - 1],
-                                  _lls[_llsTop1 - 1][_llsTop2]);
-                        continue;
-                    case 4:
-                        _lls[_llsTop1][_llsTop2]
-                            = _lls[_llsTop1 - 1][_llsTop2 - 1] + 1;
-                        continue;
-                    default:
-                        assert false;
-                    }
-                }
-            }
+        Diff prefixes = new Diff();
+        prefixes.setAlgorithm(_algorithm);
+        if (_ids1 != null) {
+            prefixes.setSequences(Arrays.copyOf(_ids1, k1),
+                                  Arrays.copyOf(_ids2, k2));
+        } else {
+            prefixes.setSequences(_lines1.subList(0, k1),
+                                  _lines2.subList(0, k2));
         }
-        return _lls[k1][k2];
+        return prefixes.lls();
     }
 
     /** Return the length of the longest common subsequence of the current
      *  data subsequences. */
     public int lls() {
-        checkData();
-        return lls(_lines1.size(), _lines2.size());
+        compare();
+        return _common;
     }
 
     /** Return true iff the sequences currently being compared have identical
      *  content. */
     public boolean sequencesEqual() {
         checkData();
-        if (_lines1.size() != _lines2.size()) {
-            return false;
+        if (_ids1 != null) {
+            return Arrays.equals(_ids1, _ids2);
         }
-        return lls(_lines1.size(), _lines2.size()) == _lines1.size();
-    }
-
-    /** Return an array containing the int values of the items in LIST. */
-    private int[] toIntArr(Collection<Integer> list) {
-        int[] result = new int[list.size()];
-        int i;
-        i = 0;
-        for (int x : list) {
-            result[i] = x;
-            i += 1;
-        }
-        return result;
+        return _lines1.equals(_lines2);
     }
 
     /** Return largest common subsequence of the sequences being compared as
@@ -166,30 +158,25 @@ public class Diff {
      *  first file (0-based), si2 is the starting position in the second
      *  file, and Li is the length of the subsequence. */
     public int[] commonSubsequence() {
-        ArrayDeque<Integer> resultList = new ArrayDeque<>();
-
-        int k1, k2;
-        k1 = _lines1.size(); k2 = _lines2.size();
-        while (k1 > 0 && k2 > 0) {
-            int ls = lls(k1, k2);
-            if (lls(k1 - 1, k2) == ls) {
-                k1 -= 1;
-            } else if (lls(k1, k2 - 1) == ls) {
-                k2 -= 1;
-            } else {
-                int L;
-                L = 1;
-                while (k1 > L && k2 > L && lls(k1 - L - 1, k2 - L) != ls - L
-                       && lls(k1 - L, k2 - L  - 1) != ls - L) {
-                    L += 1;
-                }
-                resultList.offerFirst(L);
-                resultList.offerFirst(k2 - L);
-                resultList.offerFirst(k1 - L);
-                k1 -= L; k2 -= L;
+        compare();
+        int[] result = new int[3 * _common];
+        int n = 0;
+        for (int i = 0; i < _match.length; ) {
+            if (_match[i] < 0) {
+                i += 1;
+                continue;
+            }
+            int start = i;
+            for (i += 1; i < _match.length
+                     && _match[i] == _match[i - 1] + 1; i += 1) {
+                continue;
             }
+            result[n] = start;
+            result[n + 1] = _match[start];
+            result[n + 2] = i - start;
+            n += 3;
         }
-        return toIntArr(resultList);
+        return Arrays.copyOf(result, n);
     }
 
     /** Return the edit that converts the first of the sequences being compared
@@ -202,75 +189,329 @@ public class Diff {
      *  removal of lines or addition of lines. */
     public int[] diffs() {
         int[] common = commonSubsequence();
-        ArrayList<Integer> result = new ArrayList<>();
+        int[] result = new int[4 * (common.length / 3 + 1)];
+        int n = 0;
         int e1, e2;
         e1 = e2 = 0;
         for (int k = 0; k < common.length; k += 3) {
             if (e1 != common[k] || e2 != common[k + 1]) {
-                result.add(e1);
-                result.add(common[k] - e1);
-                result.add(e2);
-                result.add(common[k + 1] - e2);
+                result[n] = e1;
+                result[n + 1] = common[k] - e1;
+                result[n + 2] = e2;
+                result[n + 3] = common[k + 1] - e2;
+                n += 4;
             }
             e1 = common[k] + common[k + 2];
             e2 = common[k + 1] + common[k + 2];
         }
-        if (e1 < _lines1.size() || e2 < _lines2.size()) {
-            result.add(e1);
-            result.add(_lines1.size() - e1);
-            result.add(e2);
-            result.add(_lines2.size() - e2);
+        if (e1 < size1() || e2 < size2()) {
+            result[n] = e1;
+            result[n + 1] = size1() - e1;
+            result[n + 2] = e2;
+            result[n + 3] = size2() - e2;
+            n += 4;
         }
-        return toIntArr(result);
+        return Arrays.copyOf(result, n);
     }
 
     /** Raise an exception if there are no current data sequences for
      *  comparison. */
     private void checkData() {
-        if (_lines1 == null) {
+        if (_lines1 == null && _ids1 == null) {
             throw new IllegalStateException("no sequences specified");
         }
     }
 
-    /** Initialize work stack for lls. */
-    private void initStack() {
-        _todo = new int[6 * (_lines1.size() +  _lines2.size() + 1)];
-        _todop = 0;
+    /** Returns the length of the first sequence. */
+    private int size1() {
+        return _ids1 != null ? _ids1.length : _lines1.size();
+    }
+
+    /** Returns the length of the second sequence. */
+    private int size2() {
+        return _ids2 != null ? _ids2.length : _lines2.size();
+    }
+
+    /** Matches up the lines of the current sequences, if not done yet,
+     *  setting _match and _common. */
+    private void compare() {
+        checkData();
+        if (_match != null) {
+            return;
+        }
+        int distinct;
+        if (_ids1 != null) {
+            _a = _ids1;
+            _b = _ids2;
+            distinct = 0;
+            for (int id : _a) {
+                distinct = Math.max(distinct, id + 1);
+            }
+            for (int id : _b) {
+                distinct = Math.max(distinct, id + 1);
+            }
+        } else {
+            HashMap<String, Integer> ids = new HashMap<String, Integer>();
+            _a = intern(_lines1, ids);
+            _b = intern(_lines2, ids);
+            distinct = ids.size();
+        }
+        _match = new int[_a.length];
+        Arrays.fill(_match, -1);
+        _common = 0;
+        if (_algorithm == HISTOGRAM) {
+            _count = new int[distinct];
+            _head = new int[distinct];
+            Arrays.fill(_head, -1);
+            _next = new int[_a.length];
+            histogram(0, _a.length, 0, _b.length, 0);
+            _count = _head = _next = null;
+        } else {
+            myers(0, _a.length, 0, _b.length);
+        }
+        _a = _b = null;
+        _forward = _backward = null;
+    }
+
+    /** Returns the numbers of LINES, giving equal lines equal numbers
+     *  through IDS, which maps each line seen so far to its number. */
+    private static int[] intern(List<String> lines,
+                                HashMap<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        int k = 0;
+        for (String line : lines) {
+            Integer id = ids.get(line);
+            if (id == null) {
+                id = ids.size();
+                ids.put(line, id);
+            }
+            result[k] = id;
+            k += 1;
+        }
+        return result;
     }
 
-    /** Push an item on the work stack for computing lls(I1, I2). STATE
-     *  indicates which inner recursive calls have happened so far for these
-     *  arguments. */
-    private void push(int i1, int i2, int state) {
-        _todo[_todop + 1] = i1;
-        _todo[_todop + 2] = i2;
-        _todo[_todop] = state;
-        _todop += 3;
+    /** Records that line I of the first sequence matches line J of the
+     *  second. */
+    private void match(int i, int j) {
+        _match[i] = j;
+        _common += 1;
     }
 
-    /** Pop an item from the work stack. */
-    private void pop() {
-        _todop -= 3;
-        _llsTop1 = _todo[_todop + 1]; _llsTop2 = _todo[_todop + 2];
-        _llsState = _todo[_todop];
+    /** Matches up lines [A0 .. A1 - 1] of the first sequence with lines
+     *  [B0 .. B1 - 1] of the second by Myers's algorithm: after matching
+     *  any common prefix and suffix, finds a point on an optimal edit path
+     *  through the rest, and matches the parts before and after it
+     *  separately. */
+    private void myers(int a0, int a1, int b0, int b1) {
+        while (a0 < a1 && b0 < b1 && _a[a0] == _b[b0]) {
+            match(a0, b0);
+            a0 += 1;
+            b0 += 1;
+        }
+        while (a0 < a1 && b0 < b1 && _a[a1 - 1] == _b[b1 - 1]) {
+            a1 -= 1;
+            b1 -= 1;
+            match(a1, b1);
+        }
+        if (a0 == a1 || b0 == b1) {
+            return;
+        }
+        long split = bisect(a0, a1, b0, b1);
+        if (split < 0) {
+            return;
+        }
+        int x = (int) (split >>> 32), y = (int) split;
+        myers(a0, x, b0, y);
+        myers(x, a1, y, b1);
     }
 
-    /** Return true iff the work stack is empty. */
-    private boolean empty() {
-        return _todop <= 0;
+    /** Returns a point (X, Y) on an optimal edit path from (A0, B0) to
+     *  (A1, B1), strictly between them, as X << 32 | Y, or -1 if the lines
+     *  have nothing in common.  The first and last lines of each range must
+     *  differ.  Follows the furthest-reaching paths with D edits from both
+     *  ends, for D = 0, 1, ..., until they overlap, in space proportional to
+     *  the lengths of the ranges. */
+    private long bisect(int a0, int a1, int b0, int b1) {
+        int n = a1 - a0, m = b1 - b0;
+        int maxD = (n + m + 1) / 2, offset = maxD + 1;
+        int length = 2 * maxD + 3;
+        if (_forward == null || _forward.length < length) {
+            _forward = new int[length];
+            _backward = new int[length];
+        }
+        int[] v1 = _forward, v2 = _backward;
+        Arrays.fill(v1, 0, length, -1);
+        Arrays.fill(v2, 0, length, -1);
+        v1[offset + 1] = 0;
+        v2[offset + 1] = 0;
+        int delta = n - m;
+        boolean front = (delta & 1) != 0;
+        int k1start = 0, k1end = 0, k2start = 0, k2end = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d
+                                 && v1[k1offset - 1] < v1[k1offset + 1])) {
+                    x1 = v1[k1offset + 1];
+                } else {
+                    x1 = v1[k1offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && _a[a0 + x1] == _b[b0 + y1]) {
+                    x1 += 1;
+                    y1 += 1;
+                }
+                v1[k1offset] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2offset = offset + delta - k1;
+                    if (k2offset >= 0 && k2offset < length
+                            && v2[k2offset] != -1
+                            && x1 >= n - v2[k2offset]) {
+                        return (long) (a0 + x1) << 32 | (b0 + y1);
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d
+                                 && v2[k2offset - 1] < v2[k2offset + 1])) {
+                    x2 = v2[k2offset + 1];
+                } else {
+                    x2 = v2[k2offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m
+                       && _a[a1 - x2 - 1] == _b[b1 - y2 - 1]) {
+                    x2 += 1;
+                    y2 += 1;
+                }
+                v2[k2offset] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1offset = offset + delta - k2;
+                    if (k1offset >= 0 && k1offset < length
+                            && v1[k1offset] != -1) {
+                        int x1 = v1[k1offset];
+                        int y1 = x1 - (k1offset - offset);
+                        if (x1 >= n - x2) {
+                            return (long) (a0 + x1) << 32 | (b0 + y1);
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
     }
 
-    /** The sequences being compared. */
+    /** Matches up lines [A0 .. A1 - 1] of the first sequence with lines
+     *  [B0 .. B1 - 1] of the second by the histogram algorithm, at
+     *  recursion depth DEPTH. */
+    private void histogram(int a0, int a1, int b0, int b1, int depth) {
+        while (a0 < a1 && b0 < b1 && _a[a0] == _b[b0]) {
+            match(a0, b0);
+            a0 += 1;
+            b0 += 1;
+        }
+        while (a0 < a1 && b0 < b1 && _a[a1 - 1] == _b[b1 - 1]) {
+            a1 -= 1;
+            b1 -= 1;
+            match(a1, b1);
+        }
+        if (a0 == a1 || b0 == b1) {
+            return;
+        }
+        if (depth > MAX_DEPTH) {
+            myers(a0, a1, b0, b1);
+            return;
+        }
+        for (int i = a1 - 1; i >= a0; i -= 1) {
+            _count[_a[i]] += 1;
+            _next[i] = _head[_a[i]];
+            _head[_a[i]] = i;
+        }
+        int bestCount = MAX_CHAIN + 1, bestLength = 0;
+        int bestA = 0, bestB = 0;
+        for (int j = b0; j < b1; j += 1) {
+            if (_count[_b[j]] == 0 || _count[_b[j]] > bestCount) {
+                continue;
+            }
+            for (int i = _head[_b[j]]; i >= 0; i = _next[i]) {
+                int s1 = i, s2 = j, e1 = i + 1, e2 = j + 1;
+                int low = _count[_a[i]];
+                while (s1 > a0 && s2 > b0 && _a[s1 - 1] == _b[s2 - 1]) {
+                    s1 -= 1;
+                    s2 -= 1;
+                    low = Math.min(low, _count[_a[s1]]);
+                }
+                while (e1 < a1 && e2 < b1 && _a[e1] == _b[e2]) {
+                    low = Math.min(low, _count[_a[e1]]);
+                    e1 += 1;
+                    e2 += 1;
+                }
+                if (low < bestCount
+                        || (low == bestCount && e1 - s1 > bestLength)) {
+                    bestCount = low;
+                    bestLength = e1 - s1;
+                    bestA = s1;
+                    bestB = s2;
+                }
+            }
+        }
+        for (int i = a0; i < a1; i += 1) {
+            _count[_a[i]] = 0;
+            _head[_a[i]] = -1;
+        }
+        if (bestLength == 0) {
+            myers(a0, a1, b0, b1);
+            return;
+        }
+        histogram(a0, bestA, b0, bestB, depth + 1);
+        for (int k = 0; k < bestLength; k += 1) {
+            match(bestA + k, bestB + k);
+        }
+        histogram(bestA + bestLength, a1, bestB + bestLength, b1, depth + 1);
+    }
+
+    /** The sequences being compared, or null if given as numbers. */
     private List<String> _lines1, _lines2;
 
-    /** The memo table for longest common subsequence.  _lls[a][b] contains the
-     *  length of the longest common sequence of the prefixes of the current
-     *  data sequences of lengths a and b, or -1 if not calculated. */
-    private int[][] _lls;
+    /** The sequences being compared as numbers, or null if given as
+     *  strings. */
+    private int[] _ids1, _ids2;
+
+    /** Algorithm used, MYERS or HISTOGRAM. */
+    private int _algorithm = MYERS;
+
+    /** For each line of the first sequence, the line of the second it
+     *  matches, or -1; null if not yet computed. */
+    private int[] _match;
+
+    /** Number of lines matched. */
+    private int _common;
+
+    /** The numbers of the lines of the sequences, while comparing them. */
+    private int[] _a, _b;
+
+    /** Furthest-reaching paths from the start and the end, by diagonal,
+     *  used by bisect. */
+    private int[] _forward, _backward;
 
-    /** A stack structure used by lls. */
-    private int[] _todo;
-    /** Structure for the work queue used by lls. */
-    private int _todop, _llsState, _llsTop1, _llsTop2;
+    /** For HISTOGRAM, the number of times each line occurs in the part
+     *  of the first sequence being compared. */
+    private int[] _count;
 
+    /** For HISTOGRAM, the first position of each line in that part, or
+     *  -1, and for each position, the next position with the same line,
+     *  or -1. */
+    private int[] _head, _next;
 }
@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Diff.
+ *  @author Kerem Dilmen
+ */
+public class DiffTest {
+
+    /** Returns N random lines drawn from K different ones. */
+    private static List<String> lines(Random random, int n, int k) {
+        ArrayList<String> result = new ArrayList<String>();
+        for (int i = 0; i < n; i += 1) {
+            result.add("line " + random.nextInt(k));
+        }
+        return result;
+    }
+
+    /** Returns the lines of A changed by editing EDITS random lines. */
+    private static List<String> edit(Random random, List<String> a,
+                                     int edits) {
+        ArrayList<String> result = new ArrayList<String>(a);
+        for (int e = 0; e < edits; e += 1) {
+            int at = random.nextInt(result.size() + 1);
+            switch (random.nextInt(3)) {
+            case 0:
+                result.add(at, "new " + e);
+                break;
+            case 1:
+                if (at < result.size()) {
+                    result.remove(at);
+                }
+                break;
+            default:
+                if (at < result.size()) {
+                    result.set(at, "changed " + e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the length of a longest common subsequence of A and B,
+     *  found by filling the quadratic table. */
+    private static int lcsLength(List<String> a, List<String> b) {
+        int[][] table = new int[a.size() + 1][b.size() + 1];
+        for (int i = a.size() - 1; i >= 0; i -= 1) {
+            for (int j = b.size() - 1; j >= 0; j -= 1) {
+                table[i][j] = a.get(i).equals(b.get(j))
+                    ? table[i + 1][j + 1] + 1
+                    : Math.max(table[i + 1][j], table[i][j + 1]);
+            }
+        }
+        return table[0][0];
+    }
+
+    /** Checks that the common subsequence and the edits found by DIFF
+     *  agree with each other and with its sequences, and returns the
+     *  length of the subsequence. */
+    private static int check(Diff diff) {
+        List<String> a = diff.sequence1(), b = diff.sequence2();
+        int[] common = diff.commonSubsequence();
+        int length = 0, e1 = 0, e2 = 0;
+        for (int k = 0; k < common.length; k += 3) {
+            assertTrue(common[k] >= e1 && common[k + 1] >= e2);
+            assertTrue(common[k + 2] > 0);
+            for (int i = 0; i < common[k + 2]; i += 1) {
+                assertEquals(a.get(common[k] + i), b.get(common[k + 1] + i));
+            }
+            e1 = common[k] + common[k + 2];
+            e2 = common[k + 1] + common[k + 2];
+            length += common[k + 2];
+        }
+        assertEquals(length, diff.lls());
+
+        ArrayList<String> patched = new ArrayList<String>();
+        int[] edits = diff.diffs();
+        int next = 0;
+        for (int k = 0; k < edits.length; k += 4) {
+            patched.addAll(a.subList(next, edits[k]));
+            patched.addAll(b.subList(edits[k + 2],
+                                     edits[k + 2] + edits[k + 3]));
+            next = edits[k] + edits[k + 1];
+        }
+        patched.addAll(a.subList(next, a.size()));
+        assertEquals(b, patched);
+        return length;
+    }
+
+    @Test
+    public void myersFindsLongestCommonSubsequence() {
+        Random random = new Random(20);
+        for (int trial = 0; trial < 300; trial += 1) {
+            List<String> a = lines(random, random.nextInt(40),
+                                   1 + random.nextInt(6));
+            List<String> b = random.nextBoolean()
+                ? edit(random, a, random.nextInt(8))
+                : lines(random, random.nextInt(40), 1 + random.nextInt(6));
+            Diff diff = new Diff();
+            diff.setSequences(a, b);
+            assertEquals(lcsLength(a, b), check(diff));
+            assertEquals(a.equals(b), diff.sequencesEqual());
+        }
+    }
+
+    @Test
+    public void histogramIsAValidDiff() {
+        Random random = new Random(21);
+        for (int trial = 0; trial < 300; trial += 1) {
+            List<String> a = lines(random, random.nextInt(60),
+                                   1 + random.nextInt(30));
+            Diff diff = new Diff();
+            diff.setAlgorithm(Diff.HISTOGRAM);
+            diff.setSequences(a, edit(random, a, random.nextInt(10)));
+            check(diff);
+        }
+    }
+
+    @Test
+    public void histogramKeepsBlocksWhole() {
+        List<String> a = List.of("}", "", "void f() {", "}", "");
+        List<String> b = List.of("}", "", "void g() {", "}", "",
+                                 "void f() {", "}", "");
+        Diff diff = new Diff();
+        diff.setAlgorithm(Diff.HISTOGRAM);
+        diff.setSequences(a, b);
+        check(diff);
+        assertArrayEquals(new int[] { 0, 0, 2, 2, 5, 3 },
+                          diff.commonSubsequence());
+    }
+
+    @Test
+    public void prefixes() {
+        Diff diff = new Diff();
+        diff.setSequences(List.of("a", "b", "c", "d"),
+                          List.of("b", "x", "d", "a"));
+        assertEquals(2, diff.lls());
+        assertEquals(1, diff.lls(2, 1));
+        assertEquals(0, diff.lls(1, 3));
+        assertEquals(0, diff.lls(0, 4));
+    }
+
+    @Test
+    public void emptySequences() {
+        Diff diff = new Diff();
+        diff.setSequences(List.of(), List.of("a", "b"));
+        assertArrayEquals(new int[] { 0, 0, 0, 2 }, diff.diffs());
+        diff.setSequences(List.of("a"), List.of());
+        assertArrayEquals(new int[] { 0, 1, 0, 0 }, diff.diffs());
+        diff.setSequences(List.of(), List.of());
+        assertArrayEquals(new int[0], diff.diffs());
+        assertTrue(diff.sequencesEqual());
+    }
+}
@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/** The limits given to log and global-log: at most how many commits to
+ *  print (-n COUNT), and the earliest and latest times of those printed
+ *  (--since TIME and --until TIME, both inclusive).  A TIME is a date
+ *  (yyyy-MM-dd), a date and time (yyyy-MM-dd HH:mm or yyyy-MM-dd
+ *  HH:mm:ss, with a space or a T), in the local time zone, or @ followed
+ *  by seconds since the epoch.  A date alone stands for the start of the
+ *  day in --since and for its end in --until.
+ *  @author Kerem Dilmen
+ */
+class LogFilter {
+
+    /** Formats of the times accepted, other than plain dates. */
+    private static final DateTimeFormatter[] TIME_FORMATS = {
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"),
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm"),
+    };
+
+    /** A filter with no limits. */
+    LogFilter() {
+    }
+
+    /** Returns the filter given by ARGS[1..], or null if they are not
+     *  valid options. */
+    static LogFilter parse(String[] args) {
+        LogFilter result = new LogFilter();
+        for (int k = 1; k < args.length; k += 2) {
+            if (k + 1 == args.length) {
+                return null;
+            }
+            String value = args[k + 1];
+            switch (args[k]) {
+            case "-n":
+                try {
+                    result._count = Integer.parseInt(value);
+                } catch (NumberFormatException excp) {
+                    return null;
+                }
+                if (result._count < 0) {
+                    return null;
+                }
+                break;
+            case "--since":
+                result._since = time(value, false);
+                if (result._since == Long.MIN_VALUE) {
+                    return null;
+                }
+                break;
+            case "--until":
+                result._until = time(value, true);
+                if (result._until == Long.MIN_VALUE) {
+                    return null;
+                }
+                break;
+            default:
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /** Returns TEXT as seconds since the epoch, taking a date alone as
+     *  the end of the day if END and its start otherwise.  Returns
+     *  Long.MIN_VALUE if TEXT is not a time. */
+    private static long time(String text, boolean end) {
+        ZoneId zone = ZoneId.systemDefault();
+        if (text.startsWith("@")) {
+            try {
+                return Long.parseLong(text.substring(1));
+            } catch (NumberFormatException excp) {
+                return Long.MIN_VALUE;
+            }
+        }
+        try {
+            LocalDate date = LocalDate.parse(text);
+            return end ? date.plusDays(1).atStartOfDay(zone).toEpochSecond() - 1
+                : date.atStartOfDay(zone).toEpochSecond();
+        } catch (DateTimeParseException excp) {
+            for (DateTimeFormatter format : TIME_FORMATS) {
+                try {
+                    return LocalDateTime.parse(text, format).atZone(zone)
+                        .toEpochSecond();
+                } catch (DateTimeParseException excp2) {
+                    continue;
+                }
+            }
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /** Returns the most commits to print, or Integer.MAX_VALUE. */
+    int count() {
+        return _count;
+    }
+
+    /** Returns the earliest time of commits printed, in seconds since the
+     *  epoch. */
+    long since() {
+        return _since;
+    }
+
+    /** Returns the latest time of commits printed, in seconds since the
+     *  epoch. */
+    long until() {
+        return _until;
+    }
+
+    /** Returns true iff commits made at TIME, in seconds since the epoch,
+     *  are printed. */
+    boolean accepts(long time) {
+        return _since <= time && time <= _until;
+    }
+
+    /** Most commits to print. */
+    private int _count = Integer.MAX_VALUE;
+
+    /** Earliest time printed. */
+    private long _since = Long.MIN_VALUE;
+
+    /** Latest time printed. */
+    private long _until = Long.MAX_VALUE;
+}
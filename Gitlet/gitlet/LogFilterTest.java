@@ -0,0 +1,47 @@
+package gitlet;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of LogFilter.
+ *  @author Kerem Dilmen
+ */
+public class LogFilterTest {
+
+    @Test
+    public void noLimits() {
+        LogFilter filter = LogFilter.parse(new String[] { "log" });
+        assertEquals(Integer.MAX_VALUE, filter.count());
+        assertTrue(filter.accepts(0));
+        assertTrue(filter.accepts(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void limits() {
+        LogFilter filter = LogFilter.parse(new String[] {
+            "log", "-n", "5", "--since", "@100", "--until", "2001-02-03" });
+        long end = LocalDate.of(2001, 2, 4)
+            .atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+        assertEquals(5, filter.count());
+        assertEquals(100, filter.since());
+        assertEquals(end - 1, filter.until());
+        assertTrue(filter.accepts(100));
+        assertFalse(filter.accepts(99));
+        assertFalse(filter.accepts(end));
+        assertEquals(LogFilter.parse(new String[] {
+                    "log", "--since", "2001-02-03 12:30" }).since(),
+                     LocalDate.of(2001, 2, 3).atTime(12, 30)
+                     .atZone(ZoneId.systemDefault()).toEpochSecond());
+    }
+
+    @Test
+    public void badOptions() {
+        assertNull(LogFilter.parse(new String[] { "log", "-n" }));
+        assertNull(LogFilter.parse(new String[] { "log", "-n", "x" }));
+        assertNull(LogFilter.parse(new String[] { "log", "-n", "-1" }));
+        assertNull(LogFilter.parse(new String[] { "log", "--since", "now" }));
+        assertNull(LogFilter.parse(new String[] { "log", "extra" }));
+    }
+}
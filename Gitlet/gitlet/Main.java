@@ -1,5 +1,6 @@
 package gitlet;
 import java.io.File;
+import java.util.Arrays;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Kerem Dilmen
@@ -7,15 +8,35 @@ import java.io.File;
 public class Main {
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+     *  <COMMAND> <OPERAND> ....  If a daemon is serving the repository
+     *  in the current directory, the command is sent to it; otherwise it
+     *  runs in this process. */
     public static void main(String... args) {
+        Daemon daemon = new Daemon(new File(".gitlet/daemon.sock"));
+        if (args.length > 0 && args[0].equals("daemon")) {
+            daemon(args, daemon);
+            System.exit(0);
+        }
+        Integer status = daemon.forward(args);
+        if (status == null) {
+            run(args, null);
+            status = 0;
+        }
+        System.exit(status);
+    }
+
+    /** Runs the command in ARGS on REPO, or on the repository in the
+     *  current directory if REPO is null. */
+    static void run(String[] args, Repository repo) {
         if (args.length == 0) {
             System.out.println("Please enter a command.");
         } else if (!args[0].equals("init")
                 && !(new File("./.gitlet").exists())) {
             System.out.println("Not in an initialized Gitlet directory.");
         } else {
-            Repository repo = new Repository();
+            if (repo == null) {
+                repo = new Repository();
+            }
             switch (args[0]) {
             case "init":
                 if (checkArgs(args.length, 1)) {
@@ -23,8 +44,10 @@ public class Main {
                 }
                 break;
             case "add":
-                if (checkArgs(args.length, 2)) {
-                    repo.add(args[1]);
+                if (args.length < 2) {
+                    System.out.println("Incorrect operands.");
+                } else {
+                    repo.add(Arrays.copyOfRange(args, 1, args.length));
                 }
                 break;
             case "commit":
@@ -38,8 +61,8 @@ public class Main {
                 }
                 break;
             case "log":
-                if (checkArgs(args.length, 1)) {
-                    repo.log();
+                if (checkLog(args)) {
+                    repo.log(LogFilter.parse(args));
                 }
                 break;
             case "checkout":
@@ -48,21 +71,47 @@ public class Main {
                 }
                 break;
             case "global-log":
-                if (checkArgs(args.length, 1)) {
-                    repo.globalLog();
+                if (checkLog(args)) {
+                    repo.globalLog(LogFilter.parse(args));
                 }
                 break;
             case "find":
-                if (checkArgs(args.length, 2)) {
-                    repo.find(args[1]);
+                if (checkFind(args)) {
+                    repo.find(args);
+                }
+                break;
+            case "diff":
+                if (checkDiff(args)) {
+                    repo.diff(args);
                 }
                 break;
             default:
                 continued(args, repo);
             }
+            if (System.getenv("GITLET_CACHE_STATS") != null) {
+                System.err.println("object cache: " + repo.cacheStats());
+            }
         }
+    }
 
-        System.exit(0);
+    /** Starts DAEMON for the repository in the current directory, or
+     *  stops it, as requested by ARGS ("daemon" or "daemon stop").  A
+     *  daemon is stopped by sending it the command, so this only needs to
+     *  handle "daemon stop" when no daemon is running. */
+    static void daemon(String[] args, Daemon daemon) {
+        if (!new File("./.gitlet").exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+        } else if (args.length == 2 && args[1].equals("stop")) {
+            if (daemon.forward(args) == null) {
+                System.out.println("No daemon is running.");
+            }
+        } else if (!checkArgs(args.length, 1)) {
+            return;
+        } else if (daemon.isRunning()) {
+            System.out.println("A daemon is already running.");
+        } else {
+            daemon.serve();
+        }
     }
 
     static void continued(String[] args, Repository repo) {
@@ -103,8 +152,10 @@ public class Main {
             }
             break;
         case "fetch":
-            if (checkArgs(args.length, 3)) {
-                repo.fetch(args[1], args[2]);
+            if (args.length == 4 && args[1].equals("-v")) {
+                repo.fetch(args[2], args[3], true);
+            } else if (checkArgs(args.length, 3)) {
+                repo.fetch(args[1], args[2], false);
             }
             break;
         case "push":
@@ -117,6 +168,16 @@ public class Main {
                 repo.pull(args[1], args[2]);
             }
             break;
+        case "repack":
+            if (checkArgs(args.length, 1)) {
+                repo.repack();
+            }
+            break;
+        case "migrate":
+            if (checkArgs(args.length, 1)) {
+                repo.migrate();
+            }
+            break;
         default:
             System.out.println("No command with that name exists.");
         }
@@ -131,6 +192,47 @@ public class Main {
         }
     }
 
+    static boolean checkLog(String[] args) {
+        if (LogFilter.parse(args) != null) {
+            return true;
+        } else {
+            System.out.println("Incorrect operands.");
+            return false;
+        }
+    }
+
+    static boolean checkFind(String[] args) {
+        if (args.length == 2
+                || (args.length == 3 && (args[1].equals("--words")
+                                         || args[1].equals("--substring")
+                                         || args[1].equals("--regex")))) {
+            return true;
+        } else {
+            System.out.println("Incorrect operands.");
+            return false;
+        }
+    }
+
+    static boolean checkDiff(String[] args) {
+        int options = 0, commits = 0;
+        boolean known = true;
+        for (int k = 1; k < args.length; k += 1) {
+            if (args[k].equals("--stat") || args[k].equals("--name-only")) {
+                options += 1;
+            } else if (args[k].startsWith("-")) {
+                known = false;
+            } else {
+                commits += 1;
+            }
+        }
+        if (known && options <= 1 && commits <= 2) {
+            return true;
+        } else {
+            System.out.println("Incorrect operands.");
+            return false;
+        }
+    }
+
     static boolean checkCheckout(String[] args) {
         if (args.length == 2
                 || (args.length == 3 && args[1].equals("--"))
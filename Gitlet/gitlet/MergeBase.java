@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Finds the best common ancestors (merge bases) of two commits of a
+ *  CommitGraph.  A common ancestor is best if it is not an ancestor of
+ *  another common ancestor; criss-cross histories can have several.
+ *  Commits are visited in order of decreasing generation number, each
+ *  painted with the tips it is reachable from.  A commit reachable from
+ *  both tips is a candidate, and everything below it is marked stale;
+ *  the walk stops once only stale commits are left, so it visits only
+ *  the commits between the tips and their bases, not the whole history.
+ *  @author Kerem Dilmen
+ */
+class MergeBase {
+
+    /** Mark of commits reachable from the first tip. */
+    private static final int ONE = 1;
+
+    /** Mark of commits reachable from the second tip. */
+    private static final int TWO = 2;
+
+    /** Mark of commits below a common ancestor. */
+    private static final int STALE = 4;
+
+    /** Mark of commits already in the result. */
+    private static final int RESULT = 8;
+
+    /** The merge-base search over GRAPH. */
+    MergeBase(CommitGraph graph) {
+        _graph = graph;
+    }
+
+    /** Returns the graph positions of the best common ancestors of the
+     *  commits at positions A and B, newest first. */
+    List<Integer> find(int a, int b) {
+        if (a == b) {
+            List<Integer> result = new ArrayList<Integer>();
+            result.add(a);
+            return result;
+        }
+        return removeRedundant(paint(a, b));
+    }
+
+    /** Returns the common ancestors of A and B found by the painting walk,
+     *  newest first.  These include all best common ancestors, and may
+     *  include some that are ancestors of others.  A parent has a lower
+     *  generation than its children, so it is never painted after it has
+     *  left the queue; ACTIVE counts the queued commits that are not
+     *  stale. */
+    private List<Integer> paint(int a, int b) {
+        HashMap<Integer, Integer> marks = new HashMap<Integer, Integer>();
+        PriorityQueue<Integer> queue = new PriorityQueue<Integer>(
+            (x, y) -> compare(y, x));
+        ArrayList<Integer> result = new ArrayList<Integer>();
+        marks.put(a, ONE);
+        marks.put(b, TWO);
+        queue.add(a);
+        queue.add(b);
+        int active = 2;
+        while (active > 0) {
+            int c = queue.poll();
+            int flags = marks.get(c);
+            if ((flags & STALE) == 0) {
+                active -= 1;
+            }
+            int paint = flags & (ONE | TWO | STALE);
+            if (paint == (ONE | TWO)) {
+                if ((flags & RESULT) == 0) {
+                    marks.put(c, flags | RESULT);
+                    result.add(c);
+                }
+                paint |= STALE;
+            }
+            for (int p : parents(c)) {
+                int old = marks.getOrDefault(p, 0);
+                if ((old & paint) == paint) {
+                    continue;
+                }
+                marks.put(p, old | paint);
+                if (old == 0) {
+                    queue.add(p);
+                    active += (paint & STALE) == 0 ? 1 : 0;
+                } else if ((old & STALE) == 0 && (paint & STALE) != 0) {
+                    active -= 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns CANDIDATES without those that are ancestors of another of
+     *  them. */
+    private List<Integer> removeRedundant(List<Integer> candidates) {
+        if (candidates.size() < 2) {
+            return candidates;
+        }
+        ArrayList<Integer> result = new ArrayList<Integer>();
+        for (int c : candidates) {
+            boolean redundant = false;
+            for (int other : candidates) {
+                if (other != c && isAncestor(c, other)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                result.add(c);
+            }
+        }
+        return result;
+    }
+
+    /** Returns true iff the commit at position A is an ancestor of the
+     *  commit at position B.  Only commits with generation numbers above
+     *  that of A are searched. */
+    boolean isAncestor(int a, int b) {
+        int generation = _graph.generation(a);
+        ArrayList<Integer> work = new ArrayList<Integer>();
+        HashSet<Integer> seen = new HashSet<Integer>();
+        work.add(b);
+        while (!work.isEmpty()) {
+            int c = work.remove(work.size() - 1);
+            if (c == a) {
+                return true;
+            }
+            if (!seen.add(c) || _graph.generation(c) <= generation) {
+                continue;
+            }
+            work.addAll(parents(c));
+        }
+        return false;
+    }
+
+    /** Returns the positions of the parents of the commit at C. */
+    private List<Integer> parents(int c) {
+        ArrayList<Integer> result = new ArrayList<Integer>(2);
+        if (_graph.parent(c) != CommitGraph.NONE) {
+            result.add(_graph.parent(c));
+        }
+        if (_graph.parent2(c) != CommitGraph.NONE) {
+            result.add(_graph.parent2(c));
+        }
+        return result;
+    }
+
+    /** Compares the commits at X and Y by generation, then by time and
+     *  then by position, so that a commit comes after all its
+     *  ancestors. */
+    private int compare(int x, int y) {
+        int c = Integer.compare(_graph.generation(x), _graph.generation(y));
+        if (c == 0) {
+            c = Long.compare(_graph.time(x), _graph.time(y));
+        }
+        return c != 0 ? c : Integer.compare(x, y);
+    }
+
+    /** The history searched. */
+    private final CommitGraph _graph;
+}
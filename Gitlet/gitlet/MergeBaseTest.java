@@ -0,0 +1,102 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of MergeBase.
+ *  @author Kerem Dilmen
+ */
+public class MergeBaseTest {
+
+    /** Commits of the history being built. */
+    private ArrayList<Commit> _commits = new ArrayList<Commit>();
+
+    /** Returns the key of a new commit named NAME with parents PARENTS. */
+    private String commit(String name, String... parents) {
+        Commit result = new Commit(Utils.sha1(name), name,
+                parents.length > 0 ? parents[0] : null, _commits.size(),
+                parents.length > 1 ? parents[1] : null);
+        _commits.add(result);
+        return result.getHash();
+    }
+
+    /** Returns a graph of the commits built so far. */
+    private CommitGraph graph() {
+        File dir = TestUtils.tempDir();
+        CommitGraph graph = new CommitGraph(new File(dir, "graph"),
+                                            new ObjectStore(dir));
+        graph.addAll(_commits);
+        return graph;
+    }
+
+    /** Returns the keys of the merge bases of A and B in GRAPH. */
+    private static HashSet<String> bases(CommitGraph graph,
+                                         String a, String b) {
+        HashSet<String> result = new HashSet<String>();
+        for (int c : new MergeBase(graph).find(graph.lookup(a),
+                                               graph.lookup(b))) {
+            result.add(graph.id(c));
+        }
+        return result;
+    }
+
+    @Test
+    public void simpleFork() {
+        String root = commit("root");
+        String base = commit("base", root);
+        String a = commit("a", commit("a0", base));
+        String b = commit("b", base);
+        CommitGraph graph = graph();
+        assertEquals(new HashSet<String>(Arrays.asList(base)),
+                     bases(graph, a, b));
+        assertEquals(new HashSet<String>(Arrays.asList(base)),
+                     bases(graph, b, a));
+    }
+
+    @Test
+    public void ancestor() {
+        String root = commit("root");
+        String a = commit("a", root);
+        String b = commit("b", a);
+        CommitGraph graph = graph();
+        assertEquals(new HashSet<String>(Arrays.asList(a)),
+                     bases(graph, a, b));
+        assertEquals(new HashSet<String>(Arrays.asList(b)),
+                     bases(graph, b, b));
+    }
+
+    @Test
+    public void crissCross() {
+        String root = commit("root");
+        String x = commit("x", root);
+        String y = commit("y", root);
+        String m1 = commit("m1", x, y);
+        String m2 = commit("m2", y, x);
+        String a = commit("a", m1);
+        String b = commit("b", m2);
+        CommitGraph graph = graph();
+        assertEquals(new HashSet<String>(Arrays.asList(x, y)),
+                     bases(graph, a, b));
+    }
+
+    @Test
+    public void followsSecondParents() {
+        String root = commit("root");
+        String side = commit("side", root);
+        String side2 = commit("side2", side);
+        String main = commit("main", root);
+        String merged = commit("merged", main, side);
+        String tip = commit("tip", merged);
+        CommitGraph graph = graph();
+        assertEquals(new HashSet<String>(Arrays.asList(side)),
+                     bases(graph, tip, side2));
+        List<Integer> found = new MergeBase(graph).find(
+                graph.lookup(side2), graph.lookup(main));
+        assertEquals(Arrays.asList(graph.lookup(root)), found);
+    }
+}
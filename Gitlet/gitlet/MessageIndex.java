@@ -0,0 +1,417 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/** An inverted index of the words of the messages in a CommitLog, used
+ *  by find.  Messages are split into tokens (maximal runs of letters and
+ *  digits, in lower case), and each token maps to the offsets in the log
+ *  of the commits whose messages contain it.
+ *  The index file covers the log up to some offset; the records after
+ *  that are read from the log and indexed in memory when the index is
+ *  used, and once there are more than TAIL of them the file is rewritten
+ *  to cover the whole log.  So the index never has to be updated by the
+ *  commands that add commits, and cannot fall out of date.
+ *  The file holds a header ("GMIX", a version, the offset of the log it
+ *  covers and the number of tokens), a table of the tokens in sorted
+ *  order (the offsets of each token's name and postings, and the number
+ *  of postings), the names in UTF-8, and the postings, each a record
+ *  offset, in increasing order.  The file is mapped, and tokens are found
+ *  by binary search without reading the rest of it.
+ *  Queries that no token can answer (regular expressions, and substrings
+ *  and messages without a whole word) are answered by testing every
+ *  message in the log, in parallel.
+ *  @author Kerem Dilmen
+ */
+class MessageIndex {
+
+    /** Query mode matching whole messages. */
+    static final int EXACT = 0;
+
+    /** Query mode matching messages containing each of a set of words, in
+     *  any order and case. */
+    static final int WORDS = 1;
+
+    /** Query mode matching messages containing a string. */
+    static final int SUBSTRING = 2;
+
+    /** Query mode matching messages containing a match of a regular
+     *  expression. */
+    static final int REGEX = 3;
+
+    /** Index format version. */
+    private static final int VERSION = 1;
+
+    /** Size of the header. */
+    private static final int HEADER = 20;
+
+    /** Size of an entry of the token table. */
+    private static final int ENTRY = 12;
+
+    /** Number of log records left out of the index file before it is
+     *  rewritten. */
+    static final int TAIL = 1024;
+
+    /** Length in UTF-8 of the longest token indexed.  Messages with
+     *  longer tokens are still found through their other tokens, or by
+     *  scanning. */
+    private static final int MAX_TOKEN = 255;
+
+    /** Pattern separating tokens. */
+    private static final Pattern SEPARATOR =
+        Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** The index of the messages in LOG, kept in the file FILE. */
+    MessageIndex(File file, CommitLog log) {
+        _file = file;
+        _log = log;
+    }
+
+    /** Returns the tokens of TEXT, in order and with repeats. */
+    static List<String> tokens(String text) {
+        ArrayList<String> result = new ArrayList<String>();
+        for (String token : SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the commits whose messages match PATTERN in mode MODE (one
+     *  of EXACT, WORDS, SUBSTRING and REGEX), in order of commit
+     *  number.  The commits have neither files nor a tree. */
+    List<Commit> find(int mode, String pattern) {
+        List<Commit> result;
+        List<String> words = required(mode, pattern);
+        if (words == null) {
+            result = scan(mode, pattern);
+        } else {
+            result = new ArrayList<Commit>();
+            for (Commit commit : _log.read(lookup(words))) {
+                if (matches(mode, pattern, null, commit.getMessage())) {
+                    result.add(commit);
+                }
+            }
+        }
+        result.sort(Comparator.comparingInt(Commit::getNum));
+        return result;
+    }
+
+    /** Returns tokens that every message matching PATTERN in mode MODE
+     *  contains, or null if no tokens are known to be. */
+    private static List<String> contained(int mode, String pattern) {
+        switch (mode) {
+        case EXACT:
+        case WORDS:
+            return tokens(pattern);
+        case SUBSTRING:
+            List<String> words = tokens(pattern);
+            if (!words.isEmpty() && isTokenChar(pattern, 0)) {
+                words.remove(0);
+            }
+            if (!words.isEmpty()
+                    && isTokenChar(pattern, pattern.length() - 1)) {
+                words.remove(words.size() - 1);
+            }
+            return words;
+        default:
+            return null;
+        }
+    }
+
+    /** Returns the tokens of PATTERN that are indexed and that every
+     *  message matching it in mode MODE contains, or null if there are
+     *  none. */
+    private static List<String> required(int mode, String pattern) {
+        List<String> words = contained(mode, pattern);
+        if (words != null) {
+            words.removeIf(w -> !indexed(w));
+        }
+        return words == null || words.isEmpty() ? null : words;
+    }
+
+    /** Returns true iff TOKEN is short enough to be indexed. */
+    private static boolean indexed(String token) {
+        return token.length() * 3 <= MAX_TOKEN
+            || token.getBytes(StandardCharsets.UTF_8).length <= MAX_TOKEN;
+    }
+
+    /** Returns true iff the character at K in TEXT may be part of a
+     *  token, so that a token of TEXT starting or ending there may be
+     *  only part of a token of a message containing TEXT. */
+    private static boolean isTokenChar(String text, int k) {
+        return Character.isLetterOrDigit(text.codePointAt(
+            Character.isLowSurrogate(text.charAt(k)) && k > 0 ? k - 1 : k));
+    }
+
+    /** Returns true iff MESSAGE matches PATTERN in mode MODE.  REGEX is the
+     *  compiled PATTERN in mode REGEX, or null. */
+    private static boolean matches(int mode, String pattern, Pattern regex,
+                                   String message) {
+        switch (mode) {
+        case EXACT:
+            return message.equals(pattern);
+        case WORDS:
+            return tokens(message).containsAll(tokens(pattern));
+        case SUBSTRING:
+            return message.contains(pattern);
+        default:
+            return regex.matcher(message).find();
+        }
+    }
+
+    /** Returns the commits of the log whose messages match PATTERN in
+     *  mode MODE, testing each message, in parallel. */
+    private List<Commit> scan(int mode, String pattern) {
+        Pattern regex = mode == REGEX ? Pattern.compile(pattern) : null;
+        List<Commit> commits = _log.commits();
+        ArrayList<Commit> result = new ArrayList<Commit>();
+        commits.parallelStream()
+            .filter(c -> matches(mode, pattern, regex, c.getMessage()))
+            .forEachOrdered(result::add);
+        return result;
+    }
+
+    /** Returns the offsets of the records of the log whose messages
+     *  contain all of WORDS, in increasing order. */
+    private long[] lookup(List<String> words) {
+        update();
+        long[] result = null;
+        for (String word : words) {
+            long[] postings = postings(word);
+            result = result == null ? postings : intersect(result, postings);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the offsets of the records containing WORD, from both the
+     *  file and the records after it, in increasing order. */
+    private long[] postings(String word) {
+        long[] stored = stored(word);
+        ArrayList<Long> tail = _tail.get(word);
+        if (tail == null) {
+            return stored;
+        }
+        long[] result = Arrays.copyOf(stored, stored.length + tail.size());
+        for (int k = 0; k < tail.size(); k += 1) {
+            result[stored.length + k] = tail.get(k);
+        }
+        return result;
+    }
+
+    /** Returns the postings of WORD in the index file. */
+    private long[] stored(String word) {
+        if (_map == null) {
+            return new long[0];
+        }
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+        int lo = 0, hi = _tokens - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int entry = HEADER + mid * ENTRY;
+            int cmp = compare(_map.getInt(entry), key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                int at = _map.getInt(entry + 4);
+                long[] result = new long[_map.getInt(entry + 8)];
+                for (int k = 0; k < result.length; k += 1) {
+                    result[k] = _map.getLong(at + 8 * k);
+                }
+                return result;
+            }
+        }
+        return new long[0];
+    }
+
+    /** Compares the token name at offset AT of the index file with KEY,
+     *  as unsigned bytes (which orders UTF-8 as the strings it encodes). */
+    private int compare(int at, byte[] key) {
+        int length = _map.getShort(at) & 0xffff;
+        for (int k = 0; k < length && k < key.length; k += 1) {
+            int cmp = Integer.compare(_map.get(at + 2 + k) & 0xff,
+                                      key[k] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    /** Returns the offsets in both A and B, which are increasing. */
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i += 1;
+            } else if (a[i] > b[j]) {
+                j += 1;
+            } else {
+                result[n++] = a[i];
+                i += 1;
+                j += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Maps the index file and indexes the log records after it,
+     *  rewriting the file first if too many are left out of it. */
+    private void update() {
+        if (_tail != null) {
+            return;
+        }
+        map();
+        _tail = new HashMap<String, ArrayList<Long>>();
+        int[] count = new int[1];
+        _log.forEach(_covered, (offset, commit) -> {
+            count[0] += 1;
+            for (String token : tokens(commit.getMessage())) {
+                if (!indexed(token)) {
+                    continue;
+                }
+                ArrayList<Long> postings =
+                    _tail.computeIfAbsent(token, t -> new ArrayList<Long>());
+                if (postings.isEmpty()
+                        || postings.get(postings.size() - 1) != offset) {
+                    postings.add(offset);
+                }
+            }
+        });
+        if (count[0] > TAIL) {
+            rewrite();
+            map();
+            _tail.clear();
+        }
+    }
+
+    /** Maps the index file, if there is one, setting _covered and
+     *  _tokens.  A missing or unreadable index covers nothing. */
+    private void map() {
+        _map = null;
+        _covered = 0;
+        _tokens = 0;
+        if (!_file.isFile()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(_file.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                         channel.size());
+            if (map.limit() < HEADER || map.getInt(0) != MAGIC
+                    || map.getInt(4) != VERSION
+                    || map.getLong(8) > _log.end()) {
+                return;
+            }
+            _map = map;
+            _covered = map.getLong(8);
+            _tokens = map.getInt(16);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes an index file covering the whole log, replacing the old
+     *  file at once. */
+    private void rewrite() {
+        TreeMap<String, long[]> all = new TreeMap<String, long[]>(
+            Comparator.comparing(t -> t.getBytes(StandardCharsets.UTF_8),
+                                 Arrays::compareUnsigned));
+        for (int k = 0; k < _tokens; k += 1) {
+            int at = _map.getInt(HEADER + k * ENTRY);
+            byte[] name = new byte[_map.getShort(at) & 0xffff];
+            _map.get(at + 2, name);
+            String token = new String(name, StandardCharsets.UTF_8);
+            all.put(token, postings(token));
+        }
+        for (String token : _tail.keySet()) {
+            all.putIfAbsent(token, postings(token));
+        }
+        long covered = _log.end();
+        File temp = new File(_file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(covered);
+                out.writeInt(all.size());
+                ArrayList<byte[]> names = new ArrayList<byte[]>();
+                int at = HEADER + all.size() * ENTRY, postingsAt = at;
+                for (String token : all.keySet()) {
+                    names.add(token.getBytes(StandardCharsets.UTF_8));
+                    postingsAt += 2 + names.get(names.size() - 1).length;
+                }
+                int k = 0;
+                for (long[] postings : all.values()) {
+                    out.writeInt(at);
+                    out.writeInt(postingsAt);
+                    out.writeInt(postings.length);
+                    at += 2 + names.get(k).length;
+                    postingsAt += 8 * postings.length;
+                    k += 1;
+                }
+                for (byte[] name : names) {
+                    out.writeShort(name.length);
+                    out.write(name);
+                }
+                for (long[] postings : all.values()) {
+                    for (long offset : postings) {
+                        out.writeLong(offset);
+                    }
+                }
+            }
+            Files.move(temp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Magic number of index files. */
+    private static final int MAGIC = 0x474d4958;
+
+    /** The index file. */
+    private final File _file;
+
+    /** The log indexed. */
+    private final CommitLog _log;
+
+    /** The mapped index file, or null. */
+    private ByteBuffer _map;
+
+    /** Length of the log covered by the index file. */
+    private long _covered;
+
+    /** Number of tokens in the index file. */
+    private int _tokens;
+
+    /** Postings of the records after those covered by the index file, by
+     *  token, or null if not yet read. */
+    private HashMap<String, ArrayList<Long>> _tail;
+}
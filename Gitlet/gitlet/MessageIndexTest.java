@@ -0,0 +1,88 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of MessageIndex.
+ *  @author Kerem Dilmen
+ */
+public class MessageIndexTest {
+
+    /** Returns an unsaved commit with message MSG and number NUM. */
+    private static Commit commit(String msg, int num) {
+        return new Commit(Utils.sha1(msg, "" + num), msg, null, num, null);
+    }
+
+    /** Returns the numbers of the commits in COMMITS, in order. */
+    private static List<Integer> nums(List<Commit> commits) {
+        ArrayList<Integer> result = new ArrayList<Integer>();
+        for (Commit c : commits) {
+            result.add(c.getNum());
+        }
+        return result;
+    }
+
+    @Test
+    public void tokens() {
+        assertEquals(List.of("fix", "the", "parser", "v2"),
+                     MessageIndex.tokens("Fix the  parser (v2)!"));
+        assertEquals(List.of(), MessageIndex.tokens("--"));
+    }
+
+    @Test
+    public void modes() {
+        File dir = TestUtils.tempDir();
+        CommitLog log = new CommitLog(new File(dir, "log"),
+                                      new ObjectStore(dir));
+        log.add(commit("Fix the parser", 3));
+        log.add(commit("parser: fix crash", 1));
+        log.add(commit("Add prefix parsing", 2));
+        log.add(commit("fix", 4));
+        MessageIndex index = new MessageIndex(new File(dir, "index"), log);
+        assertEquals(List.of(3), nums(index.find(MessageIndex.EXACT,
+                                                 "Fix the parser")));
+        assertEquals(List.of(4), nums(index.find(MessageIndex.EXACT,
+                                                 "fix")));
+        assertEquals(List.of(1, 3), nums(index.find(MessageIndex.WORDS,
+                                                    "PARSER fix")));
+        assertEquals(List.of(3), nums(index.find(MessageIndex.SUBSTRING,
+                                                 "x the p")));
+        assertEquals(List.of(2), nums(index.find(MessageIndex.SUBSTRING,
+                                                 "efix pars")));
+        assertEquals(List.of(1, 3), nums(index.find(MessageIndex.SUBSTRING,
+                                                    "parser")));
+        assertEquals(List.of(1, 2), nums(index.find(MessageIndex.REGEX,
+                                                    "^[a-z]+:|^Add")));
+        assertEquals(List.of(), index.find(MessageIndex.WORDS, "lexer"));
+    }
+
+    @Test
+    public void indexFileFollowsTheLog() {
+        File dir = TestUtils.tempDir(), file = new File(dir, "index");
+        CommitLog log = new CommitLog(new File(dir, "log"),
+                                      new ObjectStore(dir));
+        ArrayList<Commit> commits = new ArrayList<Commit>();
+        for (int k = 0; k <= MessageIndex.TAIL; k += 1) {
+            commits.add(commit("commit " + (k % 3 == 0 ? "three" : "other"),
+                               k));
+        }
+        log.addAll(commits);
+        MessageIndex index = new MessageIndex(file, log);
+        assertEquals(MessageIndex.TAIL / 3 + 1,
+                     index.find(MessageIndex.WORDS, "three").size());
+        assertTrue(file.isFile());
+
+        log.add(commit("one more three", MessageIndex.TAIL + 1));
+        List<Commit> found =
+            new MessageIndex(file, log).find(MessageIndex.WORDS, "three");
+        assertEquals(MessageIndex.TAIL / 3 + 2, found.size());
+        assertEquals(MessageIndex.TAIL + 1,
+                     found.get(found.size() - 1).getNum());
+        assertEquals(List.of(MessageIndex.TAIL + 1),
+                     nums(new MessageIndex(file, log)
+                          .find(MessageIndex.EXACT, "one more three")));
+    }
+}
@@ -0,0 +1,107 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A least-recently-used cache of decoded objects, bounded by the total
+ *  weight (roughly, the stored size) of the objects in it, which counts
+ *  its hits, misses and evictions.
+ *  @author Kerem Dilmen
+ */
+class ObjectCache {
+
+    /** A cache holding objects of total weight at most CAPACITY. */
+    ObjectCache(long capacity) {
+        _capacity = capacity;
+    }
+
+    /** Returns the object cached under KEY, or null if there is none. */
+    Object get(String key) {
+        Entry entry = _entries.get(key);
+        if (entry == null) {
+            _misses += 1;
+            return null;
+        }
+        _hits += 1;
+        return entry.value;
+    }
+
+    /** Caches VALUE, whose weight is WEIGHT, under KEY, evicting the least
+     *  recently used objects as needed to stay within capacity.  Objects
+     *  heavier than the whole cache are not cached. */
+    void put(String key, Object value, long weight) {
+        if (weight > _capacity) {
+            return;
+        }
+        Entry old = _entries.put(key, new Entry(value, weight));
+        if (old != null) {
+            _weight -= old.weight;
+        }
+        _weight += weight;
+        Iterator<Entry> eldest = _entries.values().iterator();
+        while (_weight > _capacity) {
+            _weight -= eldest.next().weight;
+            eldest.remove();
+            _evictions += 1;
+        }
+    }
+
+    /** Returns the number of objects in the cache. */
+    int size() {
+        return _entries.size();
+    }
+
+    /** Returns the number of successful gets. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Returns the number of unsuccessful gets. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Returns the number of objects evicted to make room. */
+    long evictions() {
+        return _evictions;
+    }
+
+    /** Returns the total weight of the cached objects. */
+    long weight() {
+        return _weight;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses, %d evictions, "
+                             + "%d objects of weight %d",
+                             _hits, _misses, _evictions, size(), _weight);
+    }
+
+    /** A cached object and its weight. */
+    private static class Entry {
+        Entry(Object value0, long weight0) {
+            value = value0;
+            weight = weight0;
+        }
+
+        /** The cached object. */
+        private final Object value;
+        /** Its weight. */
+        private final long weight;
+    }
+
+    /** Largest total weight of cached objects. */
+    private final long _capacity;
+
+    /** The cached objects, least recently used first. */
+    private final Map<String, Entry> _entries =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /** Total weight of the cached objects. */
+    private long _weight;
+
+    /** Counts of hits, misses and evictions. */
+    private long _hits, _misses, _evictions;
+}
@@ -0,0 +1,39 @@
+package gitlet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of ObjectCache.
+ *  @author Kerem Dilmen
+ */
+public class ObjectCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ObjectCache cache = new ObjectCache(10);
+        cache.put("a", "A", 4);
+        cache.put("b", "B", 4);
+        assertEquals("A", cache.get("a"));
+        cache.put("c", "C", 4);
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(8, cache.weight());
+        assertEquals(1, cache.evictions());
+        assertEquals(3, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void skipsObjectsLargerThanCache() {
+        ObjectCache cache = new ObjectCache(10);
+        cache.put("a", "A", 4);
+        cache.put("big", "BIG", 11);
+        assertNull(cache.get("big"));
+        assertEquals("A", cache.get("a"));
+        cache.put("a", "A2", 6);
+        assertEquals("A2", cache.get("a"));
+        assertEquals(6, cache.weight());
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,614 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** The objects (blobs, trees, commits and the pieces of large blobs) of
+ *  a Gitlet repository.  An object is either a loose file in the
+ *  directory of its kind, or an entry of one of the packs in the packs
+ *  directory.  Readers do not need to know which.
+ *  Loose files hold the deflated contents of their object; they are
+ *  written in a single streaming pass to a temporary file that is then
+ *  renamed into place, so a partly written object is never visible under
+ *  its id.  Loose files are spread over subdirectories named by the first
+ *  two hex digits of their SHA-1 key (ab/cdef...), so that no directory
+ *  grows too large to list quickly; path is the only place that knows
+ *  this layout.
+ *  Objects may be written, and looked for, from several threads at once;
+ *  reading objects through decode may not.
+ *  @author Kerem Dilmen
+ */
+public class ObjectStore {
+
+    /** Kind (and directory name) of file contents. */
+    static final String BLOBS = "blobs";
+
+    /** Kind (and directory name) of serialized commits. */
+    static final String COMMITS = "commits";
+
+    /** Kind (and directory name) of pieces of large files. */
+    static final String CHUNKS = "chunks";
+
+    /** Kind (and directory name) of the lists of chunks making up large
+     *  files.  A manifest has the id of the blob it stands for. */
+    static final String MANIFESTS = "manifests";
+
+    /** Kind (and directory name) of the directory listings of commits. */
+    static final String TREES = "trees";
+
+    /** All kinds of objects, indexed by the code used for them in packs. */
+    static final String[] KINDS = { BLOBS, COMMITS, CHUNKS, MANIFESTS,
+                                    TREES };
+
+    /** Blobs at least this long are stored as a manifest of chunks. */
+    static final int CHUNKED_SIZE = 4 << 20;
+
+    /** Size of a manifest entry: a chunk id and the chunk's length. */
+    private static final int MANIFEST_ENTRY = 24;
+
+    /** Number of earlier objects tried as delta bases by repack. */
+    private static final int WINDOW = 10;
+
+    /** Longest chain of deltas repack will create. */
+    static final int MAX_DEPTH = 10;
+
+    /** Largest total size of the contents of the objects in the cache
+     *  of decoded objects. */
+    private static final long CACHE_SIZE = 8 << 20;
+
+    /** Size of the buffers used to stream objects. */
+    private static final int BUFFER = 1 << 16;
+
+    /** The objects of the repository whose .gitlet directory is GITLET. */
+    public ObjectStore(File gitlet) {
+        _gitlet = gitlet;
+        _packDir = new File(gitlet, "packs");
+    }
+
+    /** The objects of the repository whose .gitlet directory is GITLET. */
+    public ObjectStore(String gitlet) {
+        this(new File(gitlet));
+    }
+
+    /** Returns true iff object ID of KIND exists.  Blobs stored as
+     *  chunks count as blobs. */
+    public boolean contains(String kind, String id) {
+        return has(kind, id) || (kind.equals(BLOBS) && has(MANIFESTS, id));
+    }
+
+    /** Returns true iff object ID of KIND exists as such.  Objects are
+     *  never removed (repack only moves them), so objects found once are
+     *  remembered and not looked for again. */
+    private boolean has(String kind, String id) {
+        if (_present.contains(kind + id)) {
+            return true;
+        }
+        if (path(kind, id).isFile()) {
+            _present.add(kind + id);
+            return true;
+        }
+        for (Pack pack : packs()) {
+            if (pack.contains(code(kind), id)) {
+                _present.add(kind + id);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the contents of object ID of KIND.  Throws
+     *  IllegalArgumentException if there is no such object. */
+    public byte[] read(String kind, String id) {
+        if (isChunked(kind, id)) {
+            try (InputStream in = open(kind, id)) {
+                return in.readAllBytes();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        File file = path(kind, id);
+        if (file.isFile()) {
+            byte[] stored = Utils.readContents(file);
+            return Pack.inflate(stored, stored.length);
+        }
+        for (Pack pack : packs()) {
+            byte[] result = pack.read(code(kind), id);
+            if (result != null) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("no such object: " + id);
+    }
+
+    /** Returns object ID of KIND as decoded from its contents by DECODER.
+     *  Decoded objects are kept in a cache holding up to CACHE_SIZE bytes
+     *  of their contents, and DECODER is only called when the object is
+     *  not there, so callers must not modify the result. */
+    @SuppressWarnings("unchecked")
+    public <T> T decode(String kind, String id, Function<byte[], T> decoder) {
+        String key = kind + id;
+        Object result = _cache.get(key);
+        if (result == null) {
+            byte[] data = read(kind, id);
+            result = decoder.apply(data);
+            _cache.put(key, result, data.length);
+        }
+        return (T) result;
+    }
+
+    /** Starts a transaction, with the durability mode set by
+     *  GITLET_FSYNC, covering the objects written until it commits. */
+    public Transaction begin() {
+        return begin(Transaction.durability());
+    }
+
+    /** Starts a transaction with durability mode DURABILITY covering the
+     *  objects written until it commits. */
+    public Transaction begin(int durability) {
+        _tx = new Transaction(new File(_gitlet, "tmp"), durability, this);
+        return _tx;
+    }
+
+    /** Ends the transaction TX, which has committed. */
+    void end(Transaction tx) {
+        if (_tx == tx) {
+            _tx = null;
+        }
+    }
+
+    /** Forgets which packs there are, since another process may have
+     *  repacked the objects. */
+    public synchronized void refresh() {
+        _packs = null;
+    }
+
+    /** Returns the cache of decoded objects. */
+    ObjectCache cache() {
+        return _cache;
+    }
+
+    /** Returns a stream of the contents of object ID of KIND.  Loose
+     *  objects are inflated as they are read rather than loaded whole.
+     *  Throws IllegalArgumentException if there is no such object. */
+    public InputStream open(String kind, String id) {
+        if (isChunked(kind, id)) {
+            ByteBuffer manifest = ByteBuffer.wrap(read(MANIFESTS, id));
+            return new SequenceInputStream(new Enumeration<InputStream>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return manifest.hasRemaining();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    byte[] chunk = new byte[20];
+                    manifest.get(chunk).getInt();
+                    return open(CHUNKS, HexFormat.of().formatHex(chunk));
+                }
+            });
+        }
+        File file = path(kind, id);
+        if (!file.isFile()) {
+            return new ByteArrayInputStream(read(kind, id));
+        }
+        try {
+            return new InflaterInputStream(new BufferedInputStream(
+                    new FileInputStream(file), BUFFER));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Stores CONTENTS as object ID of KIND, unless it already exists. */
+    public void write(String kind, String id, byte[] contents) {
+        if (!contains(kind, id)) {
+            install(kind, id, deflateToTemp(
+                    new ByteArrayInputStream(contents), null));
+        }
+    }
+
+    /** Stores everything read from IN as an object of KIND, unless it
+     *  already exists, and returns its id.  The contents are hashed and
+     *  deflated in one pass, so they are never held in memory at once.
+     *  Closes IN. */
+    public String write(String kind, InputStream in) {
+        MessageDigest md = sha1();
+        File tmp = deflateToTemp(in, md);
+        String id = HexFormat.of().formatHex(md.digest());
+        if (contains(kind, id)) {
+            tmp.delete();
+        } else {
+            install(kind, id, tmp);
+        }
+        return id;
+    }
+
+    /** Stores everything read from IN as a blob and returns its id.
+     *  Contents of at least CHUNKED_SIZE bytes are split into chunks by a
+     *  Chunker and stored as a manifest listing those chunks, so a large
+     *  file that changes a little from one version to the next only adds
+     *  the chunks that changed.  Closes IN. */
+    public String writeBlob(InputStream in) {
+        try (InputStream src = in) {
+            byte[] head = src.readNBytes(CHUNKED_SIZE);
+            if (head.length < CHUNKED_SIZE) {
+                return write(BLOBS, new ByteArrayInputStream(head));
+            }
+            MessageDigest md = sha1();
+            Chunker chunker = new Chunker(new DigestInputStream(
+                    new SequenceInputStream(new ByteArrayInputStream(head),
+                                            src), md));
+            ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+            ByteBuffer entry = ByteBuffer.allocate(MANIFEST_ENTRY);
+            for (byte[] chunk = chunker.next(); chunk != null;
+                 chunk = chunker.next()) {
+                String chunkId = Utils.sha1(chunk);
+                write(CHUNKS, chunkId, chunk);
+                entry.clear();
+                entry.put(HexFormat.of().parseHex(chunkId))
+                    .putInt(chunk.length);
+                manifest.write(entry.array());
+            }
+            String id = HexFormat.of().formatHex(md.digest());
+            write(MANIFESTS, id, manifest.toByteArray());
+            return id;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Copies object ID of KIND from SOURCE, unless it is here already,
+     *  and returns the number of bytes copied.  A loose object is copied
+     *  as it is stored, without being inflated and deflated again; a
+     *  packed one is read and written.  A blob stored as chunks is copied
+     *  as those of its chunks missing here and then its manifest. */
+    public long copy(ObjectStore source, String kind, String id) {
+        if (contains(kind, id)) {
+            return 0;
+        }
+        if (source.isChunked(kind, id)) {
+            long copied = 0;
+            ByteBuffer manifest = ByteBuffer.wrap(source.read(MANIFESTS, id));
+            byte[] chunk = new byte[20];
+            while (manifest.hasRemaining()) {
+                manifest.get(chunk).getInt();
+                copied += copy(source, CHUNKS, HexFormat.of().formatHex(chunk));
+            }
+            return copied + copy(source, MANIFESTS, id);
+        }
+        File file = source.path(kind, id);
+        if (!file.isFile()) {
+            byte[] contents = source.read(kind, id);
+            write(kind, id, contents);
+            return contents.length;
+        }
+        File tmp = tempFile();
+        try {
+            Files.copy(file.toPath(), tmp.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        install(kind, id, tmp);
+        return file.length();
+    }
+
+    /** Returns the ids of all objects of KIND in lexicographic order. */
+    public List<String> list(String kind) {
+        return list(kind, "");
+    }
+
+    /** Returns the ids of all objects of KIND that start with PREFIX in
+     *  lexicographic order.  Only the subdirectories that may hold such
+     *  objects are listed. */
+    public List<String> list(String kind, String prefix) {
+        TreeSet<String> result = new TreeSet<String>();
+        File dir = new File(_gitlet, kind);
+        String[] shards = dir.list();
+        if (shards != null) {
+            for (String shard : shards) {
+                if (shard.length() != 2
+                        || !(shard.startsWith(prefix)
+                             || prefix.startsWith(shard))) {
+                    continue;
+                }
+                List<String> files = Utils.plainFilenamesIn(
+                        new File(dir, shard));
+                for (String rest : files == null ? List.<String>of() : files) {
+                    if ((shard + rest).startsWith(prefix)) {
+                        result.add(shard + rest);
+                    }
+                }
+            }
+        }
+        for (Pack pack : packs()) {
+            pack.listInto(code(kind), prefix, result);
+        }
+        return new ArrayList<String>(result);
+    }
+
+    /** Moves loose objects written by versions of Gitlet that kept each
+     *  kind in one flat directory into their subdirectories, deflating
+     *  them, since those versions stored every object uncompressed.
+     *  (Whether contents look deflated says nothing: a file may well
+     *  start with "x ".)  Returns the number of objects moved. */
+    public int migrate() {
+        int moved = 0;
+        for (String kind : KINDS) {
+            List<String> flat = Utils.plainFilenamesIn(new File(_gitlet, kind));
+            if (flat == null) {
+                continue;
+            }
+            for (String id : flat) {
+                if (id.length() != Utils.UID_LENGTH) {
+                    continue;
+                }
+                File old = Utils.join(_gitlet, kind, id);
+                if (!contains(kind, id)) {
+                    try {
+                        install(kind, id, deflateToTemp(
+                                new FileInputStream(old), null));
+                    } catch (IOException excp) {
+                        throw new IllegalArgumentException(excp.getMessage());
+                    }
+                }
+                old.delete();
+                moved += 1;
+            }
+        }
+        return moved;
+    }
+
+    /** Moves every object into a single new pack, storing objects as
+     *  deltas against similar objects where that saves space, and removes
+     *  the loose files and old packs.  The pack and its index are made
+     *  durable, as the objects of a Transaction are, before anything is
+     *  removed.  PATHS maps blob ids to the name of
+     *  a file they were committed as, which is used to put versions of the
+     *  same file next to each other.  Returns the number of objects
+     *  packed. */
+    public int repack(Map<String, String> paths) {
+        List<Pack> oldPacks = new ArrayList<Pack>(packs());
+        ArrayList<String[]> objects = new ArrayList<String[]>();
+        HashMap<String, Long> sizes = new HashMap<String, Long>();
+        for (String kind : KINDS) {
+            for (String id : list(kind)) {
+                objects.add(new String[] { kind, id });
+                sizes.put(kind + id, size(kind, id));
+            }
+        }
+        objects.sort(Comparator.<String[], Integer>comparing(o -> code(o[0]))
+                .thenComparing(o -> paths.getOrDefault(o[1], ""))
+                .thenComparing(o -> -sizes.get(o[0] + o[1])));
+
+        Transaction tx = begin();
+        Pack.Writer writer = new Pack.Writer(_packDir);
+        ArrayDeque<Base> window = new ArrayDeque<Base>();
+        for (String[] obj : objects) {
+            int kind = code(obj[0]);
+            byte[] data = read(obj[0], obj[1]);
+            Base best = null;
+            byte[] bestDelta = null;
+            for (Base base : window) {
+                if (base.kind != kind || base.depth >= MAX_DEPTH) {
+                    continue;
+                }
+                byte[] delta = Delta.create(base.data, data);
+                if (delta.length < data.length / 2
+                        && (bestDelta == null
+                            || delta.length < bestDelta.length)) {
+                    best = base;
+                    bestDelta = delta;
+                }
+            }
+            long offset = writer.add(kind, obj[1], data,
+                    best == null ? -1 : best.offset, bestDelta);
+            window.addFirst(new Base(kind, data, offset,
+                    best == null ? 0 : best.depth + 1));
+            if (window.size() > WINDOW) {
+                window.removeLast();
+            }
+        }
+        File idx = writer.finish();
+        if (idx != null) {
+            tx.written(new Pack(idx).dataFile());
+            tx.written(idx);
+        }
+        tx.commit();
+
+        _packs = null;
+        for (String[] obj : objects) {
+            path(obj[0], obj[1]).delete();
+        }
+        for (Pack pack : oldPacks) {
+            if (!pack.indexFile().equals(idx)) {
+                pack.indexFile().delete();
+                pack.dataFile().delete();
+            }
+        }
+        return objects.size();
+    }
+
+    /** Writes the deflated contents of IN to a new temporary file, adding
+     *  them to MD if it is not null, and returns the file.  Closes IN. */
+    private File deflateToTemp(InputStream in, MessageDigest md) {
+        File tmp = tempFile();
+        try (InputStream src = in;
+             DeflaterOutputStream out = new DeflaterOutputStream(
+                     new BufferedOutputStream(
+                             new FileOutputStream(tmp), BUFFER))) {
+            byte[] buf = new byte[BUFFER];
+            for (int n = src.read(buf); n >= 0; n = src.read(buf)) {
+                if (md != null) {
+                    md.update(buf, 0, n);
+                }
+                out.write(buf, 0, n);
+            }
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return tmp;
+    }
+
+    /** Returns a new, empty temporary file in the tmp directory. */
+    private File tempFile() {
+        try {
+            File dir = new File(_gitlet, "tmp");
+            dir.mkdirs();
+            return File.createTempFile("obj", null, dir);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Renames the temporary file TMP to the loose file of object ID of
+     *  KIND. */
+    private void install(String kind, String id, File tmp) {
+        File file = path(kind, id);
+        file.getParentFile().mkdirs();
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _present.add(kind + id);
+        written(file);
+    }
+
+    /** Records that FILE, an object or a file describing the objects
+     *  (such as the commit log), has just been written, so that the
+     *  current transaction, if any, makes it durable before it changes
+     *  any ref. */
+    void written(File file) {
+        Transaction tx = _tx;
+        if (tx != null) {
+            tx.written(file);
+        }
+    }
+
+    /** Returns a new SHA-1 message digest. */
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Returns true iff object ID of KIND is a blob stored as chunks. */
+    private boolean isChunked(String kind, String id) {
+        return kind.equals(BLOBS) && !has(BLOBS, id) && has(MANIFESTS, id);
+    }
+
+    /** Returns the length of object ID of KIND. */
+    private long size(String kind, String id) {
+        File file = path(kind, id);
+        if (file.isFile()) {
+            return file.length();
+        }
+        for (Pack pack : packs()) {
+            long size = pack.size(code(kind), id);
+            if (size >= 0) {
+                return size;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the loose file for object ID of KIND. */
+    File path(String kind, String id) {
+        return Utils.join(_gitlet, kind, id.substring(0, 2), id.substring(2));
+    }
+
+    /** Returns the pack code for KIND. */
+    private static int code(String kind) {
+        return Arrays.asList(KINDS).indexOf(kind);
+    }
+
+    /** Returns the packs of this repository, loading their indices on
+     *  first use. */
+    private synchronized List<Pack> packs() {
+        if (_packs == null) {
+            _packs = new ArrayList<Pack>();
+            List<String> files = Utils.plainFilenamesIn(_packDir);
+            if (files != null) {
+                for (String name : files) {
+                    if (name.startsWith("pack-") && name.endsWith(".idx")) {
+                        _packs.add(new Pack(new File(_packDir, name)));
+                    }
+                }
+            }
+        }
+        return _packs;
+    }
+
+    /** A recently packed object that may serve as a delta base. */
+    private static class Base {
+        Base(int kind0, byte[] data0, long offset0, int depth0) {
+            kind = kind0;
+            data = data0;
+            offset = offset0;
+            depth = depth0;
+        }
+
+        /** Pack code of the object's kind. */
+        private final int kind;
+        /** Contents of the object. */
+        private final byte[] data;
+        /** Offset of the object's entry in the pack. */
+        private final long offset;
+        /** Length of the delta chain leading to the object. */
+        private final int depth;
+    }
+
+    /** The .gitlet directory. */
+    private final File _gitlet;
+
+    /** The directory holding packs. */
+    private final File _packDir;
+
+    /** The packs of this repository, or null if not yet loaded. */
+    private List<Pack> _packs;
+
+    /** Recently decoded objects, by kind and id. */
+    private final ObjectCache _cache = new ObjectCache(CACHE_SIZE);
+
+    /** The transaction objects are written in, or null. */
+    private volatile Transaction _tx;
+
+    /** Kinds and ids of objects known to exist. */
+    private final Set<String> _present = ConcurrentHashMap.newKeySet();
+}
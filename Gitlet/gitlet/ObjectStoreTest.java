@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of ObjectStore.
+ *  @author Kerem Dilmen
+ */
+public class ObjectStoreTest {
+
+    /** Writes CONTENTS as a loose object of KIND in the flat layout of
+     *  older versions of Gitlet, under the .gitlet directory DIR, and
+     *  returns its id. */
+    private static String writeFlat(File dir, String kind, byte[] contents) {
+        String id = Utils.sha1(contents);
+        new File(dir, kind).mkdirs();
+        Utils.writeContents(Utils.join(dir, kind, id), contents);
+        return id;
+    }
+
+    /** Returns N bytes of compressible text. */
+    private static byte[] text(int n) {
+        byte[] result = new byte[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = (byte) ('a' + (i * 7 + i / 100) % 26);
+        }
+        return result;
+    }
+
+    /** Returns everything read from IN, which is closed. */
+    private static byte[] readAll(InputStream in) {
+        try (InputStream src = in) {
+            return src.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    @Test
+    public void streamedWriteHashesAndDeflates() {
+        ObjectStore store = TestUtils.store();
+        byte[] contents = text(1 << 20);
+        String id = store.write(ObjectStore.BLOBS,
+                                new ByteArrayInputStream(contents));
+        assertEquals(Utils.sha1(contents), id);
+        File file = store.path(ObjectStore.BLOBS, id);
+        byte[] stored = Utils.readContents(file);
+        assertTrue(stored.length < contents.length / 4);
+        assertArrayEquals(contents, Pack.inflate(stored, stored.length));
+        assertArrayEquals(contents, store.read(ObjectStore.BLOBS, id));
+        assertArrayEquals(contents,
+                          readAll(store.open(ObjectStore.BLOBS, id)));
+    }
+
+    @Test
+    public void streamedWriteOfExistingObject() {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        byte[] contents = text(1000);
+        String id = store.write(ObjectStore.BLOBS,
+                                new ByteArrayInputStream(contents));
+        long modified = store.path(ObjectStore.BLOBS, id).lastModified();
+        assertEquals(id, store.write(ObjectStore.BLOBS,
+                                     new ByteArrayInputStream(contents)));
+        assertEquals(modified,
+                     store.path(ObjectStore.BLOBS, id).lastModified());
+        assertEquals(0, new File(dir, "tmp").list().length);
+        assertEquals(Arrays.asList(id), store.list(ObjectStore.BLOBS));
+    }
+
+    @Test
+    public void emptyObject() {
+        ObjectStore store = TestUtils.store();
+        String id = store.write(ObjectStore.BLOBS,
+                                new ByteArrayInputStream(new byte[0]));
+        assertEquals(Utils.sha1(new byte[0]), id);
+        assertArrayEquals(new byte[0], store.read(ObjectStore.BLOBS, id));
+        assertArrayEquals(new byte[0],
+                          readAll(store.open(ObjectStore.BLOBS, id)));
+    }
+
+    @Test
+    public void looseObjectsAreSharded() {
+        ObjectStore store = TestUtils.store();
+        String id = Utils.sha1("sharded");
+        store.write(ObjectStore.BLOBS, id, "sharded".getBytes());
+        assertTrue(store.path(ObjectStore.BLOBS, id).isFile());
+        assertEquals(id.substring(0, 2),
+                     store.path(ObjectStore.BLOBS, id).getParentFile()
+                     .getName());
+        assertArrayEquals("sharded".getBytes(),
+                          store.read(ObjectStore.BLOBS, id));
+    }
+
+    @Test
+    public void listByPrefix() {
+        ObjectStore store = TestUtils.store();
+        String[] ids = new String[40];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = Utils.sha1("object " + i);
+            store.write(ObjectStore.COMMITS, ids[i], ("object " + i)
+                        .getBytes());
+        }
+        Arrays.sort(ids);
+        assertEquals(Arrays.asList(ids), store.list(ObjectStore.COMMITS));
+        String prefix = ids[7].substring(0, 3);
+        for (String id : store.list(ObjectStore.COMMITS, prefix)) {
+            assertTrue(id.startsWith(prefix));
+        }
+        assertTrue(store.list(ObjectStore.COMMITS, prefix).contains(ids[7]));
+        assertEquals(Arrays.asList(ids[7]),
+                     store.list(ObjectStore.COMMITS, ids[7]));
+        assertTrue(store.list(ObjectStore.BLOBS).isEmpty());
+    }
+
+    @Test
+    public void migrateDeflatesEveryFlatObject() {
+        File dir = TestUtils.tempDir();
+        byte[] plain = "plain text\n".getBytes();
+        byte[] zlibLike = "x = 2\n".getBytes();
+        assertEquals(0x78, zlibLike[0]);
+        assertEquals(0x20, zlibLike[1]);
+        String a = writeFlat(dir, ObjectStore.BLOBS, plain);
+        String b = writeFlat(dir, ObjectStore.BLOBS, zlibLike);
+        String c = writeFlat(dir, ObjectStore.COMMITS, new byte[0]);
+
+        ObjectStore store = new ObjectStore(dir);
+        assertFalse(store.contains(ObjectStore.BLOBS, a));
+        assertEquals(3, store.migrate());
+        assertFalse(Utils.join(dir, ObjectStore.BLOBS, b).exists());
+        assertArrayEquals(plain, store.read(ObjectStore.BLOBS, a));
+        assertArrayEquals(zlibLike, store.read(ObjectStore.BLOBS, b));
+        assertArrayEquals(new byte[0], store.read(ObjectStore.COMMITS, c));
+        assertEquals(Arrays.asList(a, b).stream().sorted().toList(),
+                     store.list(ObjectStore.BLOBS));
+        assertEquals(0, store.migrate());
+    }
+
+    @Test
+    public void migrateKeepsObjectsAlreadyMoved() {
+        File dir = TestUtils.tempDir();
+        byte[] contents = "x^ moved already\n".getBytes();
+        String id = writeFlat(dir, ObjectStore.BLOBS, contents);
+        ObjectStore store = new ObjectStore(dir);
+        store.write(ObjectStore.BLOBS, id, contents);
+        assertEquals(1, store.migrate());
+        assertFalse(Utils.join(dir, ObjectStore.BLOBS, id).exists());
+        assertArrayEquals(contents, store.read(ObjectStore.BLOBS, id));
+    }
+
+    @Test
+    public void largeBlobRoundTrip() {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        byte[] contents = new byte[ObjectStore.CHUNKED_SIZE * 2 + 12345];
+        new Random(4).nextBytes(contents);
+        String id = store.writeBlob(new ByteArrayInputStream(contents));
+        assertEquals(Utils.sha1(contents), id);
+        assertTrue(store.contains(ObjectStore.BLOBS, id));
+        assertFalse(store.path(ObjectStore.BLOBS, id).exists());
+        assertTrue(store.path(ObjectStore.MANIFESTS, id).isFile());
+        assertTrue(store.list(ObjectStore.CHUNKS).size() > 1);
+        assertArrayEquals(contents, store.read(ObjectStore.BLOBS, id));
+        assertArrayEquals(contents,
+                          readAll(store.open(ObjectStore.BLOBS, id)));
+
+        store.repack(new HashMap<String, String>());
+        assertFalse(store.path(ObjectStore.MANIFESTS, id).exists());
+        ObjectStore reopened = new ObjectStore(dir);
+        assertTrue(reopened.contains(ObjectStore.BLOBS, id));
+        assertArrayEquals(contents, reopened.read(ObjectStore.BLOBS, id));
+        assertArrayEquals(contents,
+                          readAll(reopened.open(ObjectStore.BLOBS, id)));
+    }
+}
@@ -0,0 +1,328 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** A pack of objects: a single data file holding the deflated contents of
+ *  many objects, some of them stored as deltas against an earlier object of
+ *  the same pack, plus an index file of object ids in sorted order.
+ *
+ *  The data file starts with the magic "GPAK", a version and the number of
+ *  entries.  Each entry is a type byte (the kind code, with the high bit set
+ *  for deltas), the offset of the base entry for deltas, the length of the
+ *  object, the length of the stored data and the deflated data itself.
+ *  The index file starts with "GIDX", a version and the number of records,
+ *  each being the 20-byte id, the kind code and the offset of the entry.
+ *  @author Kerem Dilmen
+ */
+class Pack {
+
+    /** Pack format version. */
+    static final int VERSION = 1;
+
+    /** Size of a record in the index file. */
+    private static final int RECORD = 29;
+
+    /** Size of the header of both files. */
+    private static final int HEADER = 12;
+
+    /** Flag in the type byte of an entry stored as a delta. */
+    private static final int DELTA = 0x80;
+
+    /** The pack whose index file is IDX. */
+    Pack(File idx) {
+        _idxFile = idx;
+        _idx = Utils.readContents(idx);
+        String name = idx.getName();
+        _data = new File(idx.getParentFile(),
+                name.substring(0, name.length() - 4) + ".pack");
+        ByteBuffer header = ByteBuffer.wrap(_idx);
+        if (header.getInt() != IDX_MAGIC || header.getInt() != VERSION) {
+            throw new IllegalArgumentException("bad pack index " + name);
+        }
+        _count = header.getInt();
+    }
+
+    /** Returns the index file of this pack. */
+    File indexFile() {
+        return _idxFile;
+    }
+
+    /** Returns the data file of this pack. */
+    File dataFile() {
+        return _data;
+    }
+
+    /** Returns true iff this pack contains the object ID of KIND. */
+    boolean contains(int kind, String id) {
+        return find(kind, id) >= 0;
+    }
+
+    /** Returns the contents of object ID of KIND, or null if it is not in
+     *  this pack. */
+    byte[] read(int kind, String id) {
+        int k = find(kind, id);
+        if (k < 0) {
+            return null;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(_data, "r")) {
+            return readAt(in, offset(k));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the length of object ID of KIND, or -1 if it is not in this
+     *  pack. */
+    long size(int kind, String id) {
+        int k = find(kind, id);
+        if (k < 0) {
+            return -1;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(_data, "r")) {
+            in.seek(offset(k));
+            if ((in.readByte() & DELTA) != 0) {
+                in.readLong();
+            }
+            return in.readInt();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Adds the ids of all objects of KIND in this pack that start with
+     *  PREFIX to RESULT. */
+    void listInto(int kind, String prefix, Collection<String> result) {
+        for (int k = 0; k < _count; k += 1) {
+            if (_idx[HEADER + k * RECORD + 20] == kind) {
+                String id = HEX.formatHex(_idx, HEADER + k * RECORD,
+                        HEADER + k * RECORD + 20);
+                if (id.startsWith(prefix)) {
+                    result.add(id);
+                }
+            }
+        }
+    }
+
+    /** Returns the position in the index of object ID of KIND, or -1. */
+    private int find(int kind, String id) {
+        if (id.length() != Utils.UID_LENGTH) {
+            return -1;
+        }
+        byte[] key = HEX.parseHex(id);
+        int lo = 0, hi = _count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, key, kind);
+            if (c == 0) {
+                return mid;
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Compares record K of the index with the id KEY and KIND. */
+    private int compare(int k, byte[] key, int kind) {
+        int start = HEADER + k * RECORD;
+        int c = Arrays.compareUnsigned(_idx, start, start + 20,
+                key, 0, 20);
+        return c != 0 ? c : Integer.compare(_idx[start + 20], kind);
+    }
+
+    /** Returns the offset in the data file of record K. */
+    private long offset(int k) {
+        return ByteBuffer.wrap(_idx, HEADER + k * RECORD + 21, 8).getLong();
+    }
+
+    /** Returns the contents of the entry at OFFSET in IN, resolving any
+     *  chain of deltas. */
+    private static byte[] readAt(RandomAccessFile in, long offset)
+        throws IOException {
+        in.seek(offset);
+        int type = in.readByte() & 0xff;
+        long base = (type & DELTA) != 0 ? in.readLong() : -1;
+        int size = in.readInt();
+        byte[] stored = new byte[in.readInt()];
+        in.readFully(stored);
+        if (base < 0) {
+            return inflate(stored, size);
+        }
+        byte[] delta = inflate(stored, size);
+        return Delta.apply(readAt(in, base), delta);
+    }
+
+    /** Returns DATA compressed with Deflater. */
+    static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /** Returns the decompressed contents of DATA, which has a length of
+     *  at least SIZE. */
+    static byte[] inflate(byte[] data, int size) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        byte[] buf = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && !inflater.finished()
+                        && inflater.needsInput()) {
+                    throw new IllegalArgumentException("truncated pack entry");
+                }
+                out.write(buf, 0, n);
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /** Writes a new pack, one entry at a time. */
+    static class Writer {
+
+        /** A writer for a pack that will be placed in directory DIR. */
+        Writer(File dir) {
+            _dir = dir;
+            _dir.mkdirs();
+            _tmp = new File(dir, "tmp-" + System.nanoTime() + ".pack");
+            try {
+                _out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(_tmp), 1 << 16));
+                _out.writeInt(PACK_MAGIC);
+                _out.writeInt(VERSION);
+                _out.writeInt(0);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            _offset = HEADER;
+        }
+
+        /** Adds object ID of KIND with contents DATA, stored as DELTA
+         *  against the entry at BASE if BASE is not negative.  Returns the
+         *  offset of the new entry. */
+        long add(int kind, String id, byte[] data, long base, byte[] delta) {
+            long result = _offset;
+            byte[] stored = deflate(base < 0 ? data : delta);
+            try {
+                _out.writeByte(base < 0 ? kind : kind | DELTA);
+                _offset += 1;
+                if (base >= 0) {
+                    _out.writeLong(base);
+                    _offset += 8;
+                }
+                _out.writeInt(data.length);
+                _out.writeInt(stored.length);
+                _out.write(stored);
+                _offset += 8 + stored.length;
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            byte[] record = new byte[RECORD];
+            System.arraycopy(HEX.parseHex(id), 0, record, 0, 20);
+            record[20] = (byte) kind;
+            ByteBuffer.wrap(record, 21, 8).putLong(result);
+            _records.add(record);
+            return result;
+        }
+
+        /** Finishes the pack, moves it and then its index into place
+         *  (so that an index is never seen without its pack, nor cut
+         *  short) and returns the index file, or null if no objects were
+         *  added. */
+        File finish() {
+            try {
+                _out.close();
+                if (_records.isEmpty()) {
+                    _tmp.delete();
+                    return null;
+                }
+                try (RandomAccessFile f = new RandomAccessFile(_tmp, "rw")) {
+                    f.seek(8);
+                    f.writeInt(_records.size());
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            _records.sort((a, b) -> Arrays.compareUnsigned(
+                    a, 0, 21, b, 0, 21));
+            ByteArrayOutputStream idx = new ByteArrayOutputStream();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(IDX_MAGIC).putInt(VERSION).putInt(_records.size());
+            idx.writeBytes(header.array());
+            for (byte[] record : _records) {
+                idx.writeBytes(record);
+            }
+            byte[] idxBytes = idx.toByteArray();
+            String name = "pack-" + Utils.sha1(idxBytes);
+            File data = new File(_dir, name + ".pack");
+            File idxFile = new File(_dir, name + ".idx");
+            File idxTmp = new File(_dir, "tmp-" + name + ".idx");
+            Utils.writeContents(idxTmp, idxBytes);
+            if (!_tmp.renameTo(data) || !idxTmp.renameTo(idxFile)) {
+                throw new IllegalArgumentException("could not write pack");
+            }
+            return idxFile;
+        }
+
+        /** Directory receiving the pack. */
+        private final File _dir;
+        /** Temporary data file being written. */
+        private final File _tmp;
+        /** Stream to _tmp. */
+        private final DataOutputStream _out;
+        /** Offset of the next entry. */
+        private long _offset;
+        /** Index records of the entries written so far. */
+        private final ArrayList<byte[]> _records = new ArrayList<>();
+    }
+
+    /** Magic number of pack data files. */
+    private static final int PACK_MAGIC = 0x4750414b;
+
+    /** Magic number of pack index files. */
+    private static final int IDX_MAGIC = 0x47494458;
+
+    /** Converts between ids and their bytes. */
+    private static final HexFormat HEX = HexFormat.of();
+
+    /** The index file. */
+    private final File _idxFile;
+
+    /** Contents of the index file. */
+    private final byte[] _idx;
+
+    /** The data file. */
+    private final File _data;
+
+    /** Number of objects in this pack. */
+    private final int _count;
+}
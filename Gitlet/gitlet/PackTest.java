@@ -0,0 +1,191 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Pack and Delta.
+ *  @author Kerem Dilmen
+ */
+public class PackTest {
+
+    /** Returns N random bytes drawn from RANDOM. */
+    private static byte[] random(Random random, int n) {
+        byte[] result = new byte[n];
+        random.nextBytes(result);
+        return result;
+    }
+
+    /** Returns DATA with a few random bytes replaced, inserted and
+     *  deleted, as drawn from RANDOM. */
+    private static byte[] edit(Random random, byte[] data) {
+        ArrayList<Byte> result = new ArrayList<Byte>();
+        for (byte b : data) {
+            result.add(b);
+        }
+        for (int e = 0; e < 5 && !result.isEmpty(); e += 1) {
+            int at = random.nextInt(result.size());
+            switch (random.nextInt(3)) {
+            case 0:
+                result.set(at, (byte) random.nextInt());
+                break;
+            case 1:
+                for (int k = random.nextInt(40); k > 0; k -= 1) {
+                    result.add(at, (byte) random.nextInt());
+                }
+                break;
+            default:
+                for (int k = random.nextInt(40); k > 0 && at < result.size();
+                     k -= 1) {
+                    result.remove(at);
+                }
+            }
+        }
+        byte[] bytes = new byte[result.size()];
+        for (int k = 0; k < bytes.length; k += 1) {
+            bytes[k] = result.get(k);
+        }
+        return bytes;
+    }
+
+    /** Checks that the delta from BASE to TARGET turns BASE into TARGET,
+     *  and returns its length. */
+    private static int roundTrip(byte[] base, byte[] target) {
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        return delta.length;
+    }
+
+    @Test
+    public void deltaOfUnrelatedInputs() {
+        Random random = new Random(1);
+        roundTrip(new byte[0], new byte[0]);
+        roundTrip(new byte[0], random(random, 300));
+        roundTrip(random(random, 300), new byte[0]);
+        for (int trial = 0; trial < 50; trial += 1) {
+            roundTrip(random(random, random.nextInt(2000)),
+                      random(random, random.nextInt(2000)));
+        }
+    }
+
+    @Test
+    public void deltaOfEditedInputs() {
+        Random random = new Random(2);
+        for (int trial = 0; trial < 50; trial += 1) {
+            byte[] base = random(random, 1 + random.nextInt(20000));
+            byte[] target = edit(random, base);
+            int length = roundTrip(base, target);
+            if (base.length > 4000) {
+                assertTrue(length < target.length / 4);
+            }
+        }
+        byte[] base = random(random, 10000);
+        assertTrue(roundTrip(base, base) < 10);
+    }
+
+    /** Returns the pack written to DIR with the objects of KINDS with ids
+     *  IDS and contents DATA, each stored as a delta against the one
+     *  before it iff CHAIN. */
+    private static Pack write(File dir, int[] kinds, String[] ids,
+                              byte[][] data, boolean chain) {
+        Pack.Writer writer = new Pack.Writer(dir);
+        long offset = -1;
+        for (int k = 0; k < ids.length; k += 1) {
+            boolean delta = chain && k > 0;
+            offset = writer.add(kinds[k], ids[k], data[k],
+                                delta ? offset : -1,
+                                delta ? Delta.create(data[k - 1], data[k])
+                                : null);
+        }
+        return new Pack(writer.finish());
+    }
+
+    @Test
+    public void readByIdThroughIndex() {
+        Random random = new Random(3);
+        int n = 100;
+        int[] kinds = new int[n];
+        String[] ids = new String[n];
+        byte[][] data = new byte[n][];
+        for (int k = 0; k < n; k += 1) {
+            kinds[k] = k % ObjectStore.KINDS.length;
+            data[k] = random(random, random.nextInt(3000));
+            ids[k] = Utils.sha1(data[k]);
+        }
+        Pack pack = write(TestUtils.tempDir(), kinds, ids, data, false);
+        for (int k = 0; k < n; k += 1) {
+            assertTrue(pack.contains(kinds[k], ids[k]));
+            assertFalse(pack.contains((kinds[k] + 1) % kinds.length, ids[k]));
+            assertArrayEquals(data[k], pack.read(kinds[k], ids[k]));
+            assertEquals(data[k].length, pack.size(kinds[k], ids[k]));
+        }
+        assertNull(pack.read(0, Utils.sha1("missing")));
+        assertEquals(-1, pack.size(0, Utils.sha1("missing")));
+
+        TreeSet<String> listed = new TreeSet<String>();
+        pack.listInto(1, ids[1].substring(0, 1), listed);
+        for (int k = 0; k < n; k += 1) {
+            assertEquals(kinds[k] == 1 && ids[k].charAt(0) == ids[1].charAt(0),
+                         listed.contains(ids[k]));
+        }
+    }
+
+    @Test
+    public void deltaChainToMaxDepth() {
+        Random random = new Random(4);
+        int n = ObjectStore.MAX_DEPTH + 1;
+        int[] kinds = new int[n];
+        String[] ids = new String[n];
+        byte[][] data = new byte[n][];
+        data[0] = random(random, 50000);
+        for (int k = 0; k < n; k += 1) {
+            if (k > 0) {
+                data[k] = edit(random, data[k - 1]);
+            }
+            ids[k] = Utils.sha1(data[k]);
+        }
+        File dir = TestUtils.tempDir();
+        Pack pack = write(dir, kinds, ids, data, true);
+        for (int k = n - 1; k >= 0; k -= 1) {
+            assertArrayEquals(data[k], pack.read(0, ids[k]));
+        }
+        assertTrue(pack.dataFile().length() < 2 * data[0].length);
+    }
+
+    @Test
+    public void repackStoresVersionsAsDeltas() {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        Random random = new Random(5);
+        byte[] version = random(random, 40000);
+        List<String> ids = new ArrayList<String>();
+        HashMap<String, byte[]> versions = new HashMap<String, byte[]>();
+        HashMap<String, String> paths = new HashMap<String, String>();
+        long total = 0;
+        for (int k = 0; k < 3 * ObjectStore.MAX_DEPTH; k += 1) {
+            version = edit(random, version);
+            String id = Utils.sha1(version);
+            store.write(ObjectStore.BLOBS, id, version);
+            ids.add(id);
+            versions.put(id, version);
+            paths.put(id, "file.bin");
+            total += version.length;
+        }
+        assertEquals(ids.size(), store.repack(paths));
+        File[] packs = new File(dir, "packs").listFiles(
+            (d, name) -> name.endsWith(".pack"));
+        assertEquals(1, packs.length);
+        assertTrue(packs[0].length() < total / 5);
+        ObjectStore reopened = new ObjectStore(dir);
+        for (String id : ids) {
+            assertFalse(reopened.path(ObjectStore.BLOBS, id).exists());
+            assertArrayEquals(versions.get(id),
+                              reopened.read(ObjectStore.BLOBS, id));
+        }
+    }
+}
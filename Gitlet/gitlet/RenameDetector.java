@@ -0,0 +1,273 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/** Finds the files added between two versions of a tree that are
+ *  renames or copies of files of the older version.  Files with the
+ *  same contents are paired first, by their keys.  The rest are paired
+ *  by their Sketches: each sketch is cut into BANDS bands of ROWS
+ *  hashes, and only files that agree in all of a band (which files
+ *  with similar contents very likely do) are compared, so the work
+ *  grows with the number of files changed rather than with the number
+ *  of pairs of them.  Pairs at least THRESHOLD percent similar are then
+ *  taken from the most similar down, each added file at most once.  A
+ *  deleted file becomes the source of one rename; any later pairing of
+ *  it, or of a file that still exists, is a copy.
+ *  @author Kerem Dilmen
+ */
+class RenameDetector {
+
+    /** Least similarity, as a percentage, of a rename or copy. */
+    static final int THRESHOLD = 50;
+
+    /** Number of bands of a sketch. */
+    private static final int BANDS = 32;
+
+    /** Number of hashes in each band. */
+    private static final int ROWS = Sketches.SIZE / BANDS;
+
+    /** Largest number of files with the same band that are compared with
+     *  each other through it.  Larger groups (of files sharing common
+     *  lines) are left to the other bands. */
+    private static final int MAX_BUCKET = 64;
+
+    /** A detector that finds the sketches of files through SKETCHES,
+     *  reading the contents of the older versions with key ID as
+     *  OLDCONTENTS(ID) and of the newer version of the file PATH with key
+     *  ID as NEWCONTENTS(PATH, ID). */
+    RenameDetector(Sketches sketches, Function<String, byte[]> oldContents,
+                   BiFunction<String, String, byte[]> newContents) {
+        _sketches = sketches;
+        _oldContents = oldContents;
+        _newContents = newContents;
+    }
+
+    /** Returns the renames (and, iff COPIES, the copies) among CHANGES,
+     *  which maps paths to their old and new keys, null where the file is
+     *  missing, as found by Tree.changes.  The result maps the path of
+     *  each added file that is a rename or copy to its source.  Deleted
+     *  files are the sources of renames and copies; files that still
+     *  exist are only sources of copies, and only if they changed. */
+    TreeMap<String, Rename> find(Map<String, String[]> changes,
+                                 boolean copies) {
+        ArrayList<String> sources = new ArrayList<String>();
+        ArrayList<String> sourceIds = new ArrayList<String>();
+        ArrayList<String> targets = new ArrayList<String>();
+        ArrayList<String> targetIds = new ArrayList<String>();
+        ArrayList<String> kept = new ArrayList<String>();
+        ArrayList<String> keptIds = new ArrayList<String>();
+        for (Map.Entry<String, String[]> change : changes.entrySet()) {
+            String[] ids = change.getValue();
+            if (ids[0] == null) {
+                targets.add(change.getKey());
+                targetIds.add(ids[1]);
+            } else if (ids[1] == null) {
+                sources.add(change.getKey());
+                sourceIds.add(ids[0]);
+            } else if (copies) {
+                kept.add(change.getKey());
+                keptIds.add(ids[0]);
+            }
+        }
+        int deleted = sources.size();
+        sources.addAll(kept);
+        sourceIds.addAll(keptIds);
+        TreeMap<String, Rename> result = new TreeMap<String, Rename>();
+        if (sources.isEmpty() || targets.isEmpty()) {
+            return result;
+        }
+        boolean[] renamed = new boolean[sources.size()];
+        boolean[] paired = new boolean[targets.size()];
+
+        HashMap<String, Integer> byId = new HashMap<String, Integer>();
+        for (int s = sources.size() - 1; s >= 0; s -= 1) {
+            byId.put(sourceIds.get(s), s);
+        }
+        for (int t = 0; t < targets.size(); t += 1) {
+            Integer s = byId.get(targetIds.get(t));
+            if (s != null) {
+                boolean rename = s < deleted && !renamed[s];
+                if (rename || copies) {
+                    paired[t] = true;
+                    renamed[s] |= rename;
+                    result.put(targets.get(t),
+                               new Rename(sources.get(s), !rename, 100));
+                }
+            }
+        }
+
+        int[][] sourceSketches = new int[sources.size()][];
+        int[][] targetSketches = new int[targets.size()][];
+        ArrayList<Integer> unpaired = new ArrayList<Integer>();
+        for (int t = 0; t < targets.size(); t += 1) {
+            if (!paired[t]) {
+                unpaired.add(t);
+            }
+        }
+        if (unpaired.isEmpty()) {
+            return result;
+        }
+        unpaired.parallelStream().forEach(t -> targetSketches[t] =
+            _sketches.get(targetIds.get(t), () -> _newContents.apply(
+                targets.get(t), targetIds.get(t))));
+        ArrayList<Integer> usable = new ArrayList<Integer>();
+        for (int s = 0; s < sources.size(); s += 1) {
+            if (copies || !renamed[s]) {
+                usable.add(s);
+            }
+        }
+        usable.parallelStream().forEach(s -> sourceSketches[s] =
+            _sketches.get(sourceIds.get(s),
+                          () -> _oldContents.apply(sourceIds.get(s))));
+
+        List<int[]> candidates = candidates(sourceSketches, targetSketches,
+                                            unpaired);
+        candidates.sort(Comparator.<int[]>comparingInt(c -> -c[0])
+                        .thenComparing(c -> targets.get(c[2]))
+                        .thenComparing(c -> sources.get(c[1])));
+        for (int[] c : candidates) {
+            int s = c[1], t = c[2];
+            if (!paired[t]) {
+                boolean rename = s < deleted && !renamed[s];
+                if (rename || copies) {
+                    paired[t] = true;
+                    renamed[s] |= rename;
+                    result.put(targets.get(t),
+                               new Rename(sources.get(s), !rename, c[0]));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the pairs of sources (those of SOURCESKETCHES that are not
+     *  null) and targets among TARGETS (indices into TARGETSKETCHES) that
+     *  share a band of their sketches and are at least THRESHOLD percent
+     *  similar, each as its similarity, the index of the source and the
+     *  index of the target.  The bands of the sources are kept in a hash
+     *  table of primitive arrays: each slot holds a band's key and the
+     *  first of the entries (source number * BANDS + band) with that
+     *  key, which are chained through NEXT. */
+    private static List<int[]> candidates(int[][] sourceSketches,
+                                          int[][] targetSketches,
+                                          List<Integer> targets) {
+        int size = Integer.highestOneBit(
+            Math.max(1, 2 * BANDS * sourceSketches.length)) * 2;
+        long[] keys = new long[size];
+        int[] first = new int[size], count = new int[size];
+        int[] next = new int[BANDS * sourceSketches.length];
+        for (int s = 0; s < sourceSketches.length; s += 1) {
+            if (sourceSketches[s] == null
+                || Sketches.isEmpty(sourceSketches[s])) {
+                continue;
+            }
+            for (int b = 0; b < BANDS; b += 1) {
+                long key = band(sourceSketches[s], b);
+                int slot = slot(keys, count, key);
+                keys[slot] = key;
+                next[s * BANDS + b] = count[slot] == 0 ? -1 : first[slot];
+                first[slot] = s * BANDS + b;
+                count[slot] += 1;
+            }
+        }
+
+        ArrayList<int[]> result = new ArrayList<int[]>();
+        int[] seenBy = new int[sourceSketches.length];
+        for (int t : targets) {
+            int[] sketch = targetSketches[t];
+            if (Sketches.isEmpty(sketch)) {
+                continue;
+            }
+            for (int b = 0; b < BANDS; b += 1) {
+                int slot = slot(keys, count, band(sketch, b));
+                if (count[slot] > MAX_BUCKET) {
+                    continue;
+                }
+                for (int e = count[slot] == 0 ? -1 : first[slot]; e >= 0;
+                     e = next[e]) {
+                    int s = e / BANDS;
+                    if (seenBy[s] == t + 1) {
+                        continue;
+                    }
+                    seenBy[s] = t + 1;
+                    int similarity = Sketches.similarity(sourceSketches[s],
+                                                         sketch);
+                    if (similarity >= THRESHOLD) {
+                        result.add(new int[] { similarity, s, t });
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the slot of the hash table KEYS (whose slots hold COUNT
+     *  entries each) holding KEY, or the empty slot where it belongs. */
+    private static int slot(long[] keys, int[] count, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key * 0x9e3779b97f4a7c15L >>> 32) & mask;
+        while (count[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Returns the key of band B of SKETCH. */
+    private static long band(int[] sketch, int b) {
+        long key = b;
+        for (int r = b * ROWS; r < (b + 1) * ROWS; r += 1) {
+            key = key * 0x100000001b3L + sketch[r];
+        }
+        return key;
+    }
+
+    /** The source of a renamed or copied file. */
+    static class Rename {
+        /** A rename (or, iff COPY0, a copy) of the file FROM0, which is
+         *  SIMILARITY0 percent similar to it. */
+        Rename(String from0, boolean copy0, int similarity0) {
+            _from = from0;
+            _copy = copy0;
+            _similarity = similarity0;
+        }
+
+        /** Returns the path of the source. */
+        String from() {
+            return _from;
+        }
+
+        /** Returns true iff this is a copy rather than a rename. */
+        boolean isCopy() {
+            return _copy;
+        }
+
+        /** Returns the similarity of the file to its source, as a
+         *  percentage. */
+        int similarity() {
+            return _similarity;
+        }
+
+        /** Path of the source. */
+        private final String _from;
+        /** True iff this is a copy. */
+        private final boolean _copy;
+        /** Similarity to the source. */
+        private final int _similarity;
+    }
+
+    /** Source of the sketches. */
+    private final Sketches _sketches;
+
+    /** Reads the old versions of files. */
+    private final Function<String, byte[]> _oldContents;
+
+    /** Reads the new versions of files. */
+    private final BiFunction<String, String, byte[]> _newContents;
+}
@@ -0,0 +1,125 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of RenameDetector and Sketches.
+ *  @author Kerem Dilmen
+ */
+public class RenameDetectorTest {
+
+    /** Returns N lines, numbered from FIRST, about NAME. */
+    private static String lines(String name, int first, int n) {
+        StringBuilder result = new StringBuilder();
+        for (int k = first; k < first + n; k += 1) {
+            result.append(name).append(" line ").append(k).append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Contents of files by their keys. */
+    private final HashMap<String, byte[]> _blobs =
+        new HashMap<String, byte[]>();
+
+    /** Returns the key of CONTENTS, remembering them. */
+    private String blob(String contents) {
+        byte[] data = contents.getBytes(StandardCharsets.UTF_8);
+        String id = Utils.sha1(data);
+        _blobs.put(id, data);
+        return id;
+    }
+
+    /** Returns a detector that reads contents from _blobs, caching
+     *  sketches in a new temporary file. */
+    private RenameDetector detector() {
+        return new RenameDetector(new Sketches(tempFile()), _blobs::get,
+                                  (path, id) -> _blobs.get(id));
+    }
+
+    /** Returns a new temporary file name. */
+    private static File tempFile() {
+        return new File(TestUtils.tempDir(), "sketches");
+    }
+
+    @Test
+    public void sketchesEstimateSimilarity() {
+        int[] a = Sketches.sketch(lines("a", 0, 100).getBytes());
+        int[] b = Sketches.sketch(lines("a", 50, 100).getBytes());
+        int[] c = Sketches.sketch(lines("c", 0, 100).getBytes());
+        assertEquals(100, Sketches.similarity(a, a));
+        assertTrue(Math.abs(Sketches.similarity(a, b) - 33) <= 20);
+        assertTrue(Sketches.similarity(a, c) < 10);
+        assertEquals(0, Sketches.similarity(Sketches.sketch(new byte[0]),
+                                            Sketches.sketch(new byte[0])));
+    }
+
+    @Test
+    public void renamesAndCopies() {
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        changes.put("old/same.txt",
+                    new String[] { blob(lines("same", 0, 20)), null });
+        changes.put("new/same.txt",
+                    new String[] { null, blob(lines("same", 0, 20)) });
+        changes.put("old/edited.txt",
+                    new String[] { blob(lines("edited", 0, 20)), null });
+        changes.put("new/edited.txt",
+                    new String[] { null, blob(lines("edited", 1, 20)) });
+        changes.put("kept.txt", new String[] { blob(lines("kept", 0, 20)),
+                                               blob(lines("kept", 0, 21)) });
+        changes.put("copy.txt",
+                    new String[] { null, blob(lines("kept", 0, 19)) });
+        changes.put("other.txt",
+                    new String[] { null, blob(lines("other", 0, 20)) });
+        changes.put("gone.txt",
+                    new String[] { blob(lines("gone", 0, 20)), null });
+
+        Map<String, RenameDetector.Rename> renames =
+            detector().find(changes, false);
+        assertEquals(2, renames.size());
+        assertEquals("old/same.txt", renames.get("new/same.txt").from());
+        assertEquals(100, renames.get("new/same.txt").similarity());
+        assertEquals("old/edited.txt",
+                     renames.get("new/edited.txt").from());
+        assertFalse(renames.get("new/edited.txt").isCopy());
+
+        Map<String, RenameDetector.Rename> copies =
+            detector().find(changes, true);
+        assertEquals(3, copies.size());
+        assertEquals("kept.txt", copies.get("copy.txt").from());
+        assertTrue(copies.get("copy.txt").isCopy());
+        assertNull(copies.get("other.txt"));
+    }
+
+    @Test
+    public void eachDeletedFileIsRenamedOnce() {
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        String id = blob(lines("twin", 0, 10));
+        changes.put("a.txt", new String[] { id, null });
+        changes.put("b.txt", new String[] { null, id });
+        changes.put("c.txt", new String[] { null, id });
+        Map<String, RenameDetector.Rename> renames =
+            detector().find(changes, true);
+        assertFalse(renames.get("b.txt").isCopy());
+        assertTrue(renames.get("c.txt").isCopy());
+        assertEquals(1, detector().find(changes, false).size());
+    }
+
+    @Test
+    public void sketchesAreCached() {
+        File file = tempFile();
+        Sketches sketches = new Sketches(file);
+        String id = blob(lines("cached", 0, 10));
+        int[] sketch = sketches.get(id, () -> _blobs.get(id));
+        sketches.save();
+        Sketches again = new Sketches(file);
+        assertEquals(1, again.size());
+        assertArrayEquals(sketch, again.get(id, () -> {
+            throw new AssertionError("contents read again");
+        }));
+    }
+}
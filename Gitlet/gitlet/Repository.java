@@ -1,10 +1,33 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.BiFunction;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 import java.util.List;
 
 /** Class for all the functionality of the git repository for Gitlet.
@@ -12,22 +35,38 @@ import java.util.List;
  */
 public class Repository {
 
-    @SuppressWarnings("unchecked")
     public Repository() {
+        reload();
+    }
+
+    /** Reads the current branch, the staging area, the remotes and the
+     *  index of working files from .gitlet, which may have been changed
+     *  by other processes since they were last read.  Objects never
+     *  change, so the objects cached so far are kept. */
+    @SuppressWarnings("unchecked")
+    public void reload() {
         File head = Utils.join(_BRANCHES, "head");
-        if (head.exists()) {
-            _HEAD = Utils.readContentsAsString(head);
-        }
+        _HEAD = head.exists() ? Utils.readContentsAsString(head) : "master";
 
         File stage = Utils.join(_STAGE, "area");
-        if (stage.exists()) {
-            _StageArea = Utils.readObject(stage, StagingArea.class);
-        }
+        _StageArea = stage.exists() ? StagingArea.load(stage) : null;
 
         File remotes = Utils.join(_REMOTES, "repos");
-        if (remotes.exists()) {
-            _remotes = Utils.readObject(remotes, TreeMap.class);
-        }
+        _remotes = remotes.exists()
+                ? Utils.readObject(remotes, TreeMap.class) : null;
+
+        _objects.refresh();
+        _commitIndex = new CommitIndex(
+                Utils.join(_GITLET, "commit-index"), _objects);
+        _commitGraph = new CommitGraph(
+                Utils.join(_GITLET, "commit-graph"), _objects);
+        _commitLog = new CommitLog(
+                Utils.join(_GITLET, "commit-log"), _objects);
+        _messages = new MessageIndex(
+                Utils.join(_GITLET, "message-index"), _commitLog);
+        _index = new StatIndex(Utils.join(_GITLET, "index"));
+        _sketches = new Sketches(Utils.join(_GITLET, "sketches"));
+        _working = null;
     }
 
     /** Initialize a git repository. */
@@ -44,15 +83,16 @@ public class Repository {
             new File(_BLOBS).mkdirs();
             new File(_REMOTES).mkdirs();
 
-            Commit initial = new Commit(new TreeMap<String, String>(),
+            Transaction tx = _objects.begin();
+            Commit initial = new Commit(new Tree().write(_objects),
                     "initial commit", null, 0, null);
-            Utils.writeObject(Utils.join(_COMMITS, initial.getHash()), initial);
-            Utils.writeContents(Utils.join(_BRANCHES, "head"), "master");
-            Utils.writeContents(Utils.join(_BRANCHES, "master"),
-                    initial.getHash());
+            writeCommit(initial);
+            tx.setRef(Utils.join(_BRANCHES, "master"), initial.getHash());
+            tx.setRef(Utils.join(_BRANCHES, "head"), "master");
+            tx.commit();
 
             _StageArea = new StagingArea();
-            Utils.writeObject(Utils.join(_STAGE, "area"), _StageArea);
+            _StageArea.save(Utils.join(_STAGE, "area"));
 
             _remotes = new TreeMap<String, String>();
             Utils.writeObject(Utils.join(_REMOTES, "repos"), _remotes);
@@ -60,37 +100,93 @@ public class Repository {
         }
     }
 
-    /** Adds the copy of the file to the staging area.
-     * @param file - Name of the file to be added. */
-    public void add(String file) {
-        File added = new File(file);
-        if (!added.exists()) {
-            System.out.println("File does not exist.");
+    /** Adds copies of the files named by ARGS to the staging area.  Each
+     *  of ARGS is a file, a directory (whose files are all added, and
+     *  whose tracked files that were deleted are staged for removal) or
+     *  -A, standing for the whole working directory.  Nothing is staged
+     *  if one of them does not exist.  The files are hashed through the
+     *  index in parallel, each stored as a blob (if not stored yet) as
+     *  soon as it is hashed, and the staging area is saved once. */
+    public void add(String... args) {
+        WorkingTree working = working();
+        TreeSet<String> files = new TreeSet<String>();
+        ArrayList<String> dirs = new ArrayList<String>();
+        for (String arg: args) {
+            String file = normalize(arg);
+            if (arg.equals("-A") || file.equals(".") || file.isEmpty()) {
+                dirs.add("");
+            } else if (working.contains(file)) {
+                files.add(file);
+            } else if (Utils.join(_CWD, file).isDirectory()) {
+                dirs.add(file.endsWith("/") ? file : file + "/");
+            } else {
+                System.out.println("File does not exist.");
+                return;
+            }
+        }
+        Commit curr = recentCommit();
+        TreeMap<String, String> committed = new TreeMap<String, String>();
+        TreeSet<String> deleted = new TreeSet<String>();
+        if (!dirs.isEmpty()) {
+            TreeMap<String, String> tracked = filesOf(curr);
+            for (String dir: dirs) {
+                for (String file: working.files()) {
+                    if (file.startsWith(dir)) {
+                        files.add(file);
+                    }
+                }
+                for (String file: tracked.keySet()) {
+                    if (file.startsWith(dir) && !working.contains(file)) {
+                        deleted.add(file);
+                    }
+                }
+                for (String file: _StageArea.getAdded().keySet()) {
+                    if (file.startsWith(dir) && !working.contains(file)) {
+                        deleted.add(file);
+                    }
+                }
+            }
+            committed = tracked;
         } else {
-            String fileSHA = Utils.sha1(Utils.readContents(added));
-            Commit curr = recentCommit();
+            for (String file: files) {
+                String blob = blobOf(curr, file);
+                if (blob != null) {
+                    committed.put(file, blob);
+                }
+            }
+        }
+        final TreeMap<String, String> known = committed;
+        Transaction tx = _objects.begin();
+        Map<String, String> hashes = working.hashAll(files, (file, sha) -> {
+            if (sha.equals(known.get(file))
+                    || _objects.contains(ObjectStore.BLOBS, sha)) {
+                return sha;
+            }
+            return writeBlob(Utils.join(_CWD, file));
+        });
+        tx.commit();
+        _index.save();
+        for (Map.Entry<String, String> entry: hashes.entrySet()) {
+            String file = entry.getKey(), fileSHA = entry.getValue();
             if (_StageArea.getRemoved().containsKey(file)) {
-                _StageArea.getRemoved().remove(file);
-                Utils.writeObject(Utils.join(_STAGE, "area"), _StageArea);
-                return;
+                _StageArea.unremove(file);
+            } else if (fileSHA.equals(committed.get(file))) {
+                _StageArea.unadd(file);
+            } else {
+                _StageArea.add(file, fileSHA);
             }
-
-            if (curr.getBlobs().containsKey(file)
-                    && curr.getBlobs().get(file).equals(fileSHA)) {
-                _StageArea.getAdded().remove(file);
-                return;
+        }
+        for (String file: deleted) {
+            _StageArea.unadd(file);
+            if (committed.containsKey(file)) {
+                _StageArea.remove(file, committed.get(file));
             }
-
-            Utils.writeContents(Utils.join(_BLOBS, fileSHA),
-                    Utils.readContents(added));
-            _StageArea.add(file, fileSHA);
-            Utils.writeObject(Utils.join(_STAGE, "area"), _StageArea);
         }
+        _StageArea.save(Utils.join(_STAGE, "area"));
     }
 
     /** Commits the files in the staging area with the given message.
      * @param message - Message that accompanies a commit. */
-    @SuppressWarnings("unchecked")
     public void commit(String message) {
         Pattern p = Pattern.compile("\s*");
         Matcher match = p.matcher(message);
@@ -101,22 +197,14 @@ public class Repository {
             System.out.println("Please enter a commit message.");
         } else {
             Commit prev = recentCommit();
-            TreeMap<String, String> newBlobs
-                    = (TreeMap<String, String>) prev.getBlobs().clone();
-            for (String file: _StageArea.getAdded().keySet()) {
-                newBlobs.put(file, _StageArea.getAdded().get(file));
-            }
-
-            for (String file: _StageArea.getRemoved().keySet()) {
-                newBlobs.remove(file);
-            }
-
-            Commit curr = new Commit(newBlobs, message,
+            Transaction tx = _objects.begin();
+            Commit curr = new Commit(stagedTree(prev), message,
                     prev.getHash(), getMaxNum() + 1, null);
-            Utils.writeObject(Utils.join(_COMMITS, curr.getHash()), curr);
-            Utils.writeContents(Utils.join(_BRANCHES, _HEAD), curr.getHash());
+            writeCommit(curr);
+            tx.setRef(Utils.join(_BRANCHES, _HEAD), curr.getHash());
+            tx.commit();
             _StageArea.clear();
-            Utils.writeObject(Utils.join(_STAGE, "area"), _StageArea);
+            _StageArea.save(Utils.join(_STAGE, "area"));
         }
     }
 
@@ -126,27 +214,17 @@ public class Repository {
      *  @param args - Arguments that accompany the checkout command.*/
     public void checkout(String[] args) {
         if (args.length == 3) {
-            checkoutHelper(args[2], recentCommit());
+            checkoutHelper(normalize(args[2]), recentCommit());
+            _index.save();
         } else if (args.length == 4) {
-            String commitID = args[1];
-            String file = args[3]; boolean found = false;
-            for (String currID: Utils.plainFilenamesIn(_COMMITS)) {
-                if (currID.contains(commitID)) {
-                    commitID = currID;
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
-                System.out.println("No commit with that id exists.");
-            } else {
-                Commit curr = Utils.readObject(Utils.join(_COMMITS, commitID),
-                        Commit.class);
-                checkoutHelper(file, curr);
+            String commitID = resolveCommit(args[1]);
+            if (commitID != null) {
+                checkoutHelper(normalize(args[3]), readCommit(commitID));
+                _index.save();
             }
         } else {
-            File givenBranch = Utils.join(_BRANCHES, args[1]);
-            if (!givenBranch.exists()) {
+            File givenBranch = branchFile(args[1]);
+            if (givenBranch == null) {
                 System.out.println("No such branch exists.");
                 return;
             }
@@ -157,31 +235,14 @@ public class Repository {
                 return;
             }
             String givenCommitSHA = Utils.readContentsAsString(givenBranch);
-            Commit givenCommit = Utils.readObject(Utils.join(_COMMITS,
-                    givenCommitSHA), Commit.class);
-            Commit currCommit = recentCommit();
-            TreeMap<String, String> givenBlobs = givenCommit.getBlobs();
-            TreeMap<String, String> currBlobs = currCommit.getBlobs();
-            TreeSet<String> untracked = getUntracked(currCommit);
-            for (String file: untracked) {
-                if (givenBlobs.containsKey(file)) {
-                    System.out.println("There is an untracked file in the way; "
-                            + "delete it, or add and commit it first.");
-                    return;
-                }
-            }
-            for (String file: Utils.plainFilenamesIn(_CWD)) {
-                if (!givenBlobs.containsKey(file)
-                        && currBlobs.containsKey(file)) {
-                    Utils.restrictedDelete(file);
-                }
-            }
-            for (String file: givenBlobs.keySet()) {
-                checkoutHelper(file, givenCommit);
+            Commit givenCommit = readCommit(givenCommitSHA);
+            if (!checkoutCommit(recentCommit(), givenCommit)) {
+                return;
             }
+            _index.save();
             _StageArea.clear();
-            Utils.writeObject(Utils.join(_STAGE, "area"), _StageArea);
-            Utils.writeContents(Utils.join(_BRANCHES, "head"), args[1]);
+            _StageArea.save(Utils.join(_STAGE, "area"));
+            writeRef(Utils.join(_BRANCHES, "head"), args[1]);
         }
     }
 
@@ -190,66 +251,169 @@ public class Repository {
      * @param file - Name of the file to be checked out.
      * @param commit - Commit object that will be used for checkout. */
     private void checkoutHelper(String file, Commit commit) {
-        TreeMap<String, String> blobs = commit.getBlobs();
+        String blob = blobOf(commit, file);
 
-        if (!blobs.containsKey(file)) {
+        if (blob == null) {
             System.out.println("File does not exist in that commit.");
             return;
         }
 
-        if (Utils.join(_CWD, file).exists()) {
-            Utils.restrictedDelete(file);
+        writeWorkingFile(file, blob);
+    }
+
+    /** Replaces the files of commit CURR in the working directory by
+     *  those of commit TARGET.  The files of CURR that TARGET lacks,
+     *  found by comparing their trees, are deleted, and each file of
+     *  TARGET is written unless the working file already holds it (which
+     *  the index tells without reading files that have not changed).
+     *  Returns false, changing nothing, if one of the files to write
+     *  would overwrite an untracked file. */
+    private boolean checkoutCommit(Commit curr, Commit target) {
+        TreeMap<String, String> before = new TreeMap<String, String>();
+        TreeMap<String, String> after = new TreeMap<String, String>();
+        Tree.diff(_objects, treeOf(curr), treeOf(target), "", before, after);
+        for (String file: after.keySet()) {
+            if (!before.containsKey(file)
+                    && working().contains(file)
+                    && !_StageArea.getAdded().containsKey(file)
+                    && !_StageArea.getRemoved().containsKey(file)) {
+                System.out.println("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+                return false;
+            }
+        }
+        for (String file: before.keySet()) {
+            if (!after.containsKey(file)) {
+                deleteWorkingFile(file);
+            }
         }
+        TreeMap<String, String> files = filesOf(target);
+        Map<String, String> present = working().hashAll(files.keySet());
+        for (Map.Entry<String, String> file: files.entrySet()) {
+            if (!file.getValue().equals(present.get(file.getKey()))) {
+                writeWorkingFile(file.getKey(), file.getValue());
+            }
+        }
+        return true;
+    }
+
+    /** Writes the contents of the blob whose SHA-1 key is BLOB to the
+     *  working file FILE, creating its directory if needed, and records
+     *  it in the index. */
+    private void writeWorkingFile(String file, String blob) {
+        File dest = Utils.join(_CWD, file);
+        dest.getAbsoluteFile().getParentFile().mkdirs();
+        try (InputStream contents = _objects.open(ObjectStore.BLOBS, blob)) {
+            Files.copy(contents, dest.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _index.record(file, dest, blob);
+        changed(file);
+    }
 
-        byte[] contents
-                = Utils.readContents(Utils.join(_BLOBS, blobs.get(file)));
-        Utils.writeContents(Utils.join(_CWD, file), contents);
+    /** Updates the snapshot of the working directory, if one was taken,
+     *  after the working file FILE was written or deleted. */
+    private void changed(String file) {
+        if (_working != null) {
+            _working.update(file);
+        }
     }
 
-    /** Prints information about all of the commits in the commit tree. */
-    public void log() {
-        Commit curr = recentCommit();
-        while (true) {
-            System.out.println("===");
-            System.out.println("commit " + curr.getHash());
-            System.out.println("Date: " + curr.getTime() + " -0800");
-            System.out.println(curr.getMessage());
-            System.out.println();
-
-            if (curr.getParent() == null) {
+    /** Deletes the working file FILE, if it exists, and then any of its
+     *  directories that are left empty. */
+    private void deleteWorkingFile(String file) {
+        File victim = Utils.join(_CWD, file);
+        _index.remove(file);
+        if (!victim.isFile()) {
+            return;
+        }
+        victim.delete();
+        changed(file);
+        for (int slash = file.lastIndexOf('/'); slash > 0;
+             slash = file.lastIndexOf('/', slash - 1)) {
+            File dir = Utils.join(_CWD, file.substring(0, slash));
+            String[] left = dir.list();
+            if (left == null || left.length > 0) {
                 break;
-            } else {
-                curr = Utils.readObject(Utils.join(_COMMITS, curr.getParent()),
-                        Commit.class);
             }
+            dir.delete();
         }
     }
 
+    /** Prints the commits from the head commit back along first parents,
+     *  within the limits of FILTER.  The walk stops once COUNT commits
+     *  are printed or it reaches a commit older than SINCE, so that only
+     *  the commits printed (and the commit graph) are read. */
+    public void log(LogFilter filter) {
+        String head = Utils.readContentsAsString(Utils.join(_BRANCHES, _HEAD));
+        PrintWriter out = output();
+        int printed = 0;
+        for (int i = _commitGraph.lookup(head);
+             i != CommitGraph.NONE && printed < filter.count()
+                 && _commitGraph.time(i) >= filter.since();
+             i = _commitGraph.parent(i)) {
+            if (_commitGraph.time(i) <= filter.until()) {
+                printCommit(out, readCommit(_commitGraph.id(i)));
+                printed += 1;
+            }
+        }
+        out.flush();
+    }
 
-    public void globalLog() {
-        TreeMap<Integer, String> sorter = new TreeMap<Integer, String>();
 
-        for (String commit: Utils.plainFilenamesIn(_COMMITS)) {
-            Commit curr = Utils.readObject(Utils.join(_COMMITS, commit),
-                    Commit.class);
-            sorter.put(curr.getNum(), curr.getHash());
-        }
+    /** Prints every commit ever made within the limits of FILTER, in
+     *  order of commit number, reading them from the commit log.  With a
+     *  COUNT, only the COUNT commits with the lowest numbers are kept as
+     *  the log is read. */
+    public void globalLog(LogFilter filter) {
+        int count = filter.count();
+        PriorityQueue<Commit> kept = new PriorityQueue<Commit>(
+            Comparator.comparingInt(Commit::getNum).reversed());
+        _commitLog.forEach(filter.since(), filter.until(), curr -> {
+            if (kept.size() < count) {
+                kept.add(curr);
+            } else if (count > 0 && curr.getNum() < kept.peek().getNum()) {
+                kept.poll();
+                kept.add(curr);
+            }
+        });
+        List<Commit> commits = new ArrayList<Commit>(kept);
+        commits.sort(Comparator.comparingInt(Commit::getNum));
 
-        for (String sha: sorter.values()) {
-            Commit curr = Utils.readObject(
-                    Utils.join(_COMMITS, sha), Commit.class);
-            System.out.println("===");
-            System.out.println("commit " + curr.getHash());
-            System.out.println("Date: " + curr.getTime() + " -0800");
-            System.out.println(curr.getMessage());
-            System.out.println();
+        PrintWriter out = output();
+        for (Commit curr: commits) {
+            printCommit(out, curr);
         }
+        out.flush();
+    }
+
+    /** Prints COMMIT as log and global-log do, to OUT. */
+    private static void printCommit(PrintWriter out, Commit commit) {
+        out.print("===\ncommit ");
+        out.print(commit.getHash());
+        out.print("\nDate: ");
+        out.print(commit.getTime());
+        out.print(" -0800\n");
+        out.print(commit.getMessage());
+        out.print("\n\n");
+    }
+
+    /** Returns a writer to the standard output with a large buffer, for
+     *  commands that print many lines.  It must be flushed, not
+     *  closed. */
+    private static PrintWriter output() {
+        return new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out), 1 << 16));
     }
 
 
     public void remove(String file) {
+        file = normalize(file);
         Commit curr = recentCommit();
-        boolean tracked = curr.getBlobs().containsKey(file);
+        String blob = blobOf(curr, file);
+        boolean tracked = blob != null;
         boolean staged = _StageArea.getAdded().containsKey(file);
 
         if (!staged && !tracked) {
@@ -258,39 +422,208 @@ public class Repository {
         }
 
         if (tracked) {
-            _StageArea.remove(file, curr.getBlobs().get(file));
-            Utils.restrictedDelete(file);
+            _StageArea.remove(file, blob);
+            deleteWorkingFile(file);
         }
 
         if (staged) {
-            _StageArea.getAdded().remove(file);
+            _StageArea.unadd(file);
         }
 
-        Utils.writeObject(Utils.join(_STAGE, "area"), _StageArea);
+        _index.save();
+        _StageArea.save(Utils.join(_STAGE, "area"));
     }
 
-    public void find(String message) {
-        boolean found = false;
-        TreeMap<Integer, String> sorter = new TreeMap<Integer, String>();
-        for (String commit: Utils.plainFilenamesIn(_COMMITS)) {
-            Commit curr = Utils.readObject(Utils.join(_COMMITS,
-                    commit), Commit.class);
-            if (curr.getMessage().equals(message)) {
-                sorter.put(curr.getNum(), curr.getHash());
-                found = true;
-            }
+    /** Prints the ids of the commits found by ARGS, in order of commit
+     *  number: those with message ARGS[1], or, if ARGS[1] is --words,
+     *  --substring or --regex, those whose messages contain the words
+     *  (in any order and case), the string or a match of the regular
+     *  expression ARGS[2].  Searches through the message index. */
+    public void find(String[] args) {
+        int mode;
+        switch (args[1]) {
+        case "--words":
+            mode = MessageIndex.WORDS;
+            break;
+        case "--substring":
+            mode = MessageIndex.SUBSTRING;
+            break;
+        case "--regex":
+            mode = MessageIndex.REGEX;
+            break;
+        default:
+            mode = MessageIndex.EXACT;
+        }
+        List<Commit> found;
+        try {
+            found = _messages.find(mode, args[args.length - 1]);
+        } catch (PatternSyntaxException excp) {
+            System.out.println("Invalid regular expression.");
+            return;
         }
 
-        if (!found) {
+        if (found.isEmpty()) {
             System.out.println("Found no commit with that message.");
             return;
         }
 
-        for (String sha: sorter.values()) {
-            System.out.println(sha);
+        for (Commit curr: found) {
+            System.out.println(curr.getHash());
         }
     }
 
+    /** Prints the differences named by ARGS, in unified format, or only
+     *  the names of the changed files (with --name-only) or the numbers
+     *  of lines changed in each (with --stat).  With no commits, the
+     *  staged files are compared with the working directory; with one,
+     *  that commit with the working directory; with two, the first
+     *  commit with the second.  Commits are given as branch names or
+     *  commit ids.  The files compared are found by walking both sorted
+     *  manifests at once, skipping those whose blobs are the same
+     *  (whole directories at once when comparing two commits), and the
+     *  changed files are compared in parallel. */
+    public void diff(String[] args) {
+        boolean stat = false, nameOnly = false;
+        ArrayList<Commit> commits = new ArrayList<Commit>();
+        for (int k = 1; k < args.length; k += 1) {
+            if (args[k].equals("--stat")) {
+                stat = true;
+            } else if (args[k].equals("--name-only")) {
+                nameOnly = true;
+            } else {
+                File branch = branchFile(args[k]);
+                String id = branch != null
+                    ? Utils.readContentsAsString(branch)
+                    : resolveCommit(args[k]);
+                if (id == null) {
+                    return;
+                }
+                commits.add(readCommit(id));
+            }
+        }
+
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        boolean toWorking = commits.size() < 2;
+        if (commits.size() == 2) {
+            Tree.changes(_objects, treeOf(commits.get(0)),
+                         treeOf(commits.get(1)), "", changes);
+        } else {
+            TreeMap<String, String> staged = stagedFiles(recentCommit());
+            TreeMap<String, String> old = staged;
+            if (commits.size() == 1) {
+                old = filesOf(commits.get(0));
+                staged.putAll(old);
+            }
+            TreeMap<String, String> working
+                = new TreeMap<String, String>(working().hashAll(
+                    staged.keySet()));
+            _index.save();
+            Tree.changes(old, working, "", changes);
+        }
+
+        BiFunction<String, String, byte[]> newContents = toWorking
+            ? (file, id) -> readWorkingFile(file) : (file, id) -> readBlob(id);
+        TreeMap<String, RenameDetector.Rename> renames =
+            renames(changes, true, newContents);
+        TreeMap<String, String[]> shown =
+            new TreeMap<String, String[]>(changes);
+        for (RenameDetector.Rename rename: renames.values()) {
+            if (!rename.isCopy()) {
+                shown.remove(rename.from());
+            }
+        }
+
+        PrintWriter out = output();
+        if (nameOnly) {
+            for (String file: shown.keySet()) {
+                out.println(file);
+            }
+            out.flush();
+            return;
+        }
+        List<UnifiedDiff> diffs = shown.entrySet().parallelStream()
+            .map(change -> {
+                String file = change.getKey();
+                RenameDetector.Rename source = renames.get(file);
+                String newId = change.getValue()[1];
+                return new UnifiedDiff(file, source,
+                    readBlob(source == null ? change.getValue()[0]
+                             : changes.get(source.from())[0]),
+                    newId == null ? null : newContents.apply(file, newId));
+            })
+            .collect(Collectors.toList());
+        if (stat) {
+            if (!diffs.isEmpty()) {
+                out.print(UnifiedDiff.stat(diffs));
+            }
+        } else {
+            for (UnifiedDiff diff: diffs) {
+                out.print(diff.text());
+            }
+        }
+        out.flush();
+    }
+
+    /** Returns the files of COMMIT with the changes in the staging area
+     *  applied, mapped to the SHA-1 keys of their blobs. */
+    private TreeMap<String, String> stagedFiles(Commit commit) {
+        TreeMap<String, String> result =
+            new TreeMap<String, String>(filesOf(commit));
+        result.putAll(_StageArea.getAdded());
+        result.keySet().removeAll(_StageArea.getRemoved().keySet());
+        return result;
+    }
+
+    /** Returns the renames among the changes from the files BEFORE to the
+     *  files AFTER (each mapped to the SHA-1 key of its blob), mapping
+     *  the path of each renamed file to its source. */
+    private TreeMap<String, RenameDetector.Rename> renames(
+            TreeMap<String, String> before, TreeMap<String, String> after) {
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        Tree.changes(before, after, "", changes);
+        return renames(changes, false, (file, id) -> readBlob(id));
+    }
+
+    /** Returns the renames (and, iff COPIES, the copies) among CHANGES,
+     *  as found by Tree.changes, mapping the path of each such file to
+     *  its source.  The new version of the file PATH whose key is ID is
+     *  read as NEWCONTENTS(PATH, ID); old versions are read as blobs. */
+    private TreeMap<String, RenameDetector.Rename> renames(
+            Map<String, String[]> changes, boolean copies,
+            BiFunction<String, String, byte[]> newContents) {
+        TreeMap<String, RenameDetector.Rename> result =
+            new RenameDetector(_sketches, this::readBlob, newContents)
+            .find(changes, copies);
+        _sketches.save();
+        return result;
+    }
+
+    /** Returns the contents of the blob whose SHA-1 key is BLOB, or null
+     *  if BLOB is null. */
+    private byte[] readBlob(String blob) {
+        if (blob == null) {
+            return null;
+        }
+        try (InputStream contents = _objects.open(ObjectStore.BLOBS, blob)) {
+            return contents.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the contents of the working file FILE. */
+    private byte[] readWorkingFile(String file) {
+        try {
+            return Files.readAllBytes(Utils.join(_CWD, file).toPath());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Prints the branches, the staged and removed files, the changes not
+     *  staged and the untracked files.  Tracked and staged files are
+     *  hashed through the index, so only those changed since they were
+     *  last hashed are read. */
     public void status() {
         System.out.println("=== Branches ===");
         for (String branch: Utils.plainFilenamesIn(_BRANCHES)) {
@@ -302,9 +635,20 @@ public class Repository {
         }
         System.out.println();
         Commit curr = recentCommit();
+        TreeMap<String, String> tracked = filesOf(curr);
+        TreeMap<String, RenameDetector.Rename> renames =
+            new TreeMap<String, RenameDetector.Rename>();
+        if (!_StageArea.getRemoved().isEmpty()) {
+            renames = renames(tracked, stagedFiles(curr));
+        }
         System.out.println("=== Staged Files ===");
         for (String added: _StageArea.getAdded().keySet()) {
-            System.out.println(added);
+            if (renames.containsKey(added)) {
+                System.out.println(added + " (renamed from "
+                                   + renames.get(added).from() + ")");
+            } else {
+                System.out.println(added);
+            }
         }
         System.out.println();
         System.out.println("=== Removed Files ===");
@@ -314,10 +658,14 @@ public class Repository {
         System.out.println();
 
         TreeMap<String, String> mod = new TreeMap<String, String>();
-        for (String file: Utils.plainFilenamesIn(_CWD)) {
-            String sha = Utils.sha1(Utils.readContents(Utils.join(_CWD, file)));
-            if ((curr.getBlobs().containsKey(file)
-                    && !curr.getBlobs().get(file).equals(sha)
+        WorkingTree working = working();
+        TreeSet<String> known = new TreeSet<String>(tracked.keySet());
+        known.addAll(_StageArea.getAdded().keySet());
+        Map<String, String> hashes = working.hashAll(known);
+        for (Map.Entry<String, String> entry: hashes.entrySet()) {
+            String file = entry.getKey(), sha = entry.getValue();
+            if ((tracked.containsKey(file)
+                    && !tracked.get(file).equals(sha)
                     && !_StageArea.getAdded().containsKey(file))
                     || (_StageArea.getAdded().containsKey(file)
                     && !_StageArea.getAdded().get(file).equals(sha))) {
@@ -325,16 +673,17 @@ public class Repository {
             }
         }
         for (String file: _StageArea.getAdded().keySet()) {
-            if (!Utils.join(_CWD, file).exists()) {
+            if (!working.contains(file)) {
                 mod.put(file, " (deleted)");
             }
         }
-        for (String file: curr.getBlobs().keySet()) {
+        for (String file: tracked.keySet()) {
             if (!_StageArea.getRemoved().containsKey(file)
-                    && !Utils.join(_CWD, file).exists()) {
+                    && !working.contains(file)) {
                 mod.put(file, " (deleted)");
             }
         }
+        _index.save();
         System.out.println("=== Modifications Not Staged For Commit ===");
         for (String file: mod.keySet()) {
             System.out.println(file + mod.get(file));
@@ -342,23 +691,23 @@ public class Repository {
         System.out.println();
 
         System.out.println("=== Untracked Files ===");
-        TreeSet<String> untracked = getUntracked(curr);
-        for (String file: untracked) {
-            System.out.println(file);
+        for (String file: working.files()) {
+            if (!tracked.containsKey(file)
+                    && !_StageArea.getAdded().containsKey(file)
+                    && !_StageArea.getRemoved().containsKey(file)) {
+                System.out.println(file);
+            }
         }
         System.out.println();
     }
 
-    private TreeSet<String> getUntracked(Commit curr) {
-        TreeSet<String> untracked = new TreeSet<String>();
-        for (String file: Utils.plainFilenamesIn(_CWD)) {
-            if (!curr.getBlobs().containsKey(file)
-                    && !_StageArea.getAdded().containsKey(file)
-                    && !_StageArea.getRemoved().containsKey(file)) {
-                untracked.add(file);
-            }
+    /** Returns the snapshot of the working directory taken for this
+     *  command, taking it if needed. */
+    private WorkingTree working() {
+        if (_working == null) {
+            _working = new WorkingTree(new File(_CWD), _index);
         }
-        return untracked;
+        return _working;
     }
 
     public void branch(String name) {
@@ -367,14 +716,14 @@ public class Repository {
         if (newBranch.exists()) {
             System.out.println("A branch with that name already exists.");
         } else {
-            Utils.writeContents(newBranch, recentCommit().getHash());
+            writeRef(newBranch, recentCommit().getHash());
         }
     }
 
     public void removeBranch(String name) {
-        File removed = Utils.join(_BRANCHES, name);
+        File removed = branchFile(name);
 
-        if (!removed.exists()) {
+        if (removed == null) {
             System.out.println("A branch with that name does not exist.");
         } else if (_HEAD.equals(name)) {
             System.out.println("Cannot remove the current branch.");
@@ -383,43 +732,23 @@ public class Repository {
         }
     }
 
-    public void reset(String commitID) {
-        if (!Utils.plainFilenamesIn(_COMMITS).contains(commitID)) {
-            System.out.println("No commit with that id exists.");
+    public void reset(String id) {
+        String commitID = resolveCommit(id);
+        if (commitID == null) {
             return;
         }
 
-        Commit resetCommit = Utils.readObject(Utils.join(_COMMITS,
-                commitID), Commit.class);
-
-        Commit curr = recentCommit();
-
-        List<String> files = Utils.plainFilenamesIn(_CWD);
-
-        for (String file: files) {
-            if (resetCommit.getBlobs().containsKey(file)
-                    && !curr.getBlobs().containsKey(file)) {
-                System.out.println("There is an untracked file in the way;"
-                        + " delete it, or add and commit it first.");
-                return;
-            }
-        }
-
-        for (String file: files) {
-            if (!resetCommit.getBlobs().containsKey(file)
-                    && curr.getBlobs().containsKey(file)) {
-                Utils.restrictedDelete(file);
-            }
-        }
+        Commit resetCommit = readCommit(commitID);
 
-        for (String file: resetCommit.getBlobs().keySet()) {
-            checkoutHelper(file, resetCommit);
+        if (!checkoutCommit(recentCommit(), resetCommit)) {
+            return;
         }
+        _index.save();
 
         _StageArea.clear();
 
-        Utils.writeObject(Utils.join(_STAGE, "area"), _StageArea);
-        Utils.writeContents(Utils.join(_BRANCHES, _HEAD), commitID);
+        _StageArea.save(Utils.join(_STAGE, "area"));
+        writeRef(Utils.join(_BRANCHES, _HEAD), commitID);
 
     }
 
@@ -429,30 +758,31 @@ public class Repository {
         }
         String brCommitSHA = Utils.readContentsAsString(
                 Utils.join(_BRANCHES, branch));
-        Commit brCommit = Utils.readObject(Utils.join(_COMMITS,
-                brCommitSHA), Commit.class);
+        Commit brCommit = readCommit(brCommitSHA);
         Commit currCommit = recentCommit();
+        TreeMap<String, String> brBlobs = filesOf(brCommit);
+        TreeMap<String, String> currBlobs = filesOf(currCommit);
 
-        for (String file: Utils.plainFilenamesIn(_CWD)) {
-            if (!currCommit.getBlobs().containsKey(file)
-                && brCommit.getBlobs().containsKey(file)) {
+        for (String file: working().files()) {
+            if (!currBlobs.containsKey(file)
+                && brBlobs.containsKey(file)) {
                 System.out.println("There is an untracked file in the way; "
                         + "delete it, or add and commit it first.");
                 return;
             }
         }
 
-        Commit split = findSplit(currCommit, brCommit);
+        String split = findSplit(currCommit.getHash(), brCommitSHA);
         if (!checkSplit(split, brCommit, currCommit, branch)) {
             return;
         }
+        TreeMap<String, String> splitBlobs =
+            new TreeMap<String, String>(filesOf(readCommit(split)));
+        brBlobs = new TreeMap<String, String>(brBlobs);
+        currBlobs = new TreeMap<String, String>(currBlobs);
+        boolean conflict = mergeRenames(splitBlobs, currBlobs, brBlobs);
 
-        TreeMap<String, String> brBlobs = brCommit.getBlobs();
-        TreeMap<String, String> currBlobs = currCommit.getBlobs();
-        TreeMap<String, String> splitBlobs = split.getBlobs();
-        boolean conflict = false;
-
-        for (String file: currCommit.getBlobs().keySet()) {
+        for (String file: currBlobs.keySet()) {
             String brSHA = brBlobs.get(file);
             String currSHA = currBlobs.get(file);
             String splitSHA = splitBlobs.get(file);
@@ -464,15 +794,13 @@ public class Repository {
                     add(file);
                 } else if (!splitSHA.equals(currSHA) && !splitSHA.equals(brSHA)
                         && !brSHA.equals(currSHA)) {
-                    conflict = true;
-                    conflictHelper(file, currSHA, brSHA);
+                    conflict |= conflictHelper(file, splitSHA, currSHA, brSHA);
                 }
             } else if ((brSHA == null && splitSHA != null
                     && !splitSHA.equals(currSHA))
                     || (splitSHA == null && brSHA != null
                     && !brSHA.equals(currSHA))) {
-                conflict = true;
-                conflictHelper(file, currSHA, brSHA);
+                conflict |= conflictHelper(file, splitSHA, currSHA, brSHA);
             }
         }
 
@@ -484,13 +812,61 @@ public class Repository {
         }
     }
 
-    private boolean checkSplit(Commit split, Commit brCommit,
+    /** Merges the files renamed since the split point, whose files are
+     *  SPLITBLOBS, in one of the current files CURRBLOBS and the given
+     *  branch's files BRBLOBS (each mapped to the SHA-1 keys of their
+     *  blobs), but not in the other.  A file renamed on the branch is
+     *  merged into its new path, with the changes made to it under its
+     *  old path in the current branch, and the old path is removed; the
+     *  changes made on the branch to a file renamed in the current
+     *  branch are merged into its new path.  The files handled are
+     *  removed from the maps, so that the rest of the merge leaves them
+     *  alone.  Returns true iff there were conflicts. */
+    private boolean mergeRenames(TreeMap<String, String> splitBlobs,
+                                 TreeMap<String, String> currBlobs,
+                                 TreeMap<String, String> brBlobs) {
+        boolean conflict = false;
+        TreeMap<String, RenameDetector.Rename> onBranch =
+            renames(splitBlobs, brBlobs);
+        TreeMap<String, RenameDetector.Rename> onCurrent =
+            renames(splitBlobs, currBlobs);
+        for (Map.Entry<String, RenameDetector.Rename> rename:
+                 onBranch.entrySet()) {
+            String to = rename.getKey(), from = rename.getValue().from();
+            if (currBlobs.containsKey(from) && !currBlobs.containsKey(to)
+                    && !onCurrent.containsKey(to)) {
+                conflict |= conflictHelper(to, splitBlobs.get(from),
+                                           currBlobs.get(from),
+                                           brBlobs.get(to));
+                remove(from);
+                splitBlobs.remove(from);
+                currBlobs.remove(from);
+                brBlobs.remove(to);
+            }
+        }
+        for (Map.Entry<String, RenameDetector.Rename> rename:
+                 onCurrent.entrySet()) {
+            String to = rename.getKey(), from = rename.getValue().from();
+            if (brBlobs.containsKey(from) && !brBlobs.containsKey(to)) {
+                if (!brBlobs.get(from).equals(splitBlobs.get(from))) {
+                    conflict |= conflictHelper(to, splitBlobs.get(from),
+                                               currBlobs.get(to),
+                                               brBlobs.get(from));
+                }
+                splitBlobs.remove(from);
+                brBlobs.remove(from);
+            }
+        }
+        return conflict;
+    }
+
+    private boolean checkSplit(String split, Commit brCommit,
                                Commit currCommit, String branch) {
-        if (split.getHash().equals(brCommit.getHash())) {
+        if (split.equals(brCommit.getHash())) {
             System.out.println("Given branch is an "
                     + "ancestor of the current branch.");
             return false;
-        } else if (split.getHash().equals(currCommit.getHash())) {
+        } else if (split.equals(currCommit.getHash())) {
             checkout(new String[] {"checkout", branch});
             System.out.println("Current branch fast-forwarded.");
             return false;
@@ -521,136 +897,83 @@ public class Repository {
         }
     }
 
-    private void conflictHelper(String file, String currSHA, String brSHA) {
-        if (brSHA == null) {
-            Utils.writeContents(Utils.join(_CWD, file), "<<<<<<< HEAD\n"
-                    + Utils.readContentsAsString(Utils.join(_BLOBS, currSHA))
-                    + "=======\n" + ">>>>>>>\n");
-            add(file);
-            return;
+    /** Merges the changes to FILE from its version SPLITSHA (null if it
+     *  did not exist) to BRSHA on the given branch into its version
+     *  CURRSHA, line by line, writing the result to the working file and
+     *  staging it.  If BRSHA is null (the file was deleted on the
+     *  branch), the whole file is a conflict.  Returns true iff there were
+     *  conflicts. */
+    private boolean conflictHelper(String file, String splitSHA,
+                                   String currSHA, String brSHA) {
+        int conflicts;
+        File dest = Utils.join(_CWD, file);
+        dest.getAbsoluteFile().getParentFile().mkdirs();
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(dest))) {
+            if (brSHA == null) {
+                out.write("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+                try (InputStream curr = _objects.open(ObjectStore.BLOBS,
+                                                      currSHA)) {
+                    curr.transferTo(out);
+                }
+                out.write("=======\n>>>>>>>\n"
+                          .getBytes(StandardCharsets.UTF_8));
+                conflicts = 1;
+            } else {
+                InputStream split = splitSHA == null
+                    ? InputStream.nullInputStream()
+                    : _objects.open(ObjectStore.BLOBS, splitSHA);
+                conflicts = ThreeWayMerge.merge(split,
+                    _objects.open(ObjectStore.BLOBS, currSHA),
+                    _objects.open(ObjectStore.BLOBS, brSHA), out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         }
-
-        Utils.writeContents(Utils.join(_CWD, file), "<<<<<<< HEAD\n"
-                + Utils.readContentsAsString(Utils.join(_BLOBS, currSHA))
-                + "=======\n"
-                + Utils.readContentsAsString(Utils.join(_BLOBS, brSHA))
-                + ">>>>>>>\n");
+        changed(file);
         add(file);
+        return conflicts > 0;
     }
 
-    @SuppressWarnings("unchecked")
     private void mergeCommit(String message, String currSHA, String brSHA) {
         Commit prev = recentCommit();
-        TreeMap<String, String> newBlobs
-                = (TreeMap<String, String>) prev.getBlobs().clone();
-        for (String file: _StageArea.getAdded().keySet()) {
-            newBlobs.put(file, _StageArea.getAdded().get(file));
-        }
-
-        for (String file: _StageArea.getRemoved().keySet()) {
-            newBlobs.remove(file);
-        }
-
-
-
-        Commit curr = new Commit(newBlobs, message,
+        Transaction tx = _objects.begin();
+        Commit curr = new Commit(stagedTree(prev), message,
                 currSHA, getMaxNum() + 1, brSHA);
-        Utils.writeObject(Utils.join(_COMMITS, curr.getHash()), curr);
-        Utils.writeContents(Utils.join(_BRANCHES, _HEAD), curr.getHash());
+        writeCommit(curr);
+        tx.setRef(Utils.join(_BRANCHES, _HEAD), curr.getHash());
+        tx.commit();
         _StageArea.clear();
-        Utils.writeObject(Utils.join(_STAGE, "area"), _StageArea);
+        _StageArea.save(Utils.join(_STAGE, "area"));
     }
 
-    private Commit findSplit(Commit currCommit, Commit brCommit) {
-        Commit split = null;
-        TreeMap<String, Commit> commitTree = new TreeMap<String, Commit>();
-
-        Commit tempC1 = currCommit;
-        int distance1 = 0;
-        while (true) {
-            commitTree.put(tempC1.getHash(), tempC1);
-            if (tempC1.getParent() == null) {
-                break;
-            } else {
-                tempC1 = Utils.readObject(Utils.join(_COMMITS,
-                        tempC1.getParent()), Commit.class);
-            }
+    /** Returns the SHA-1 key of the split point of the commits CURR and
+     *  BRANCH: the best common ancestor of the two, or, if there are
+     *  several (as in criss-cross merges), the one closest to CURR. */
+    private String findSplit(String curr, String branch) {
+        CommitGraph graph = _commitGraph;
+        int start = graph.lookup(curr);
+        List<Integer> bases = new MergeBase(graph).find(start,
+                graph.lookup(branch));
+        if (bases.size() == 1) {
+            return graph.id(bases.get(0));
         }
 
-
-        Commit tempBr = brCommit;
-        while (true) {
-            String branchSHA = tempBr.getHash();
-            if (commitTree.containsKey(branchSHA)) {
-                split = commitTree.get(branchSHA);
-                break;
-            } else if (tempBr.getParent() == null) {
-                break;
-            } else if (tempBr.getParent2() != null) {
-                tempBr = Utils.readObject(Utils.join(_COMMITS,
-                        tempBr.getParent2()), Commit.class);
-            } else {
-                tempBr = Utils.readObject(Utils.join(_COMMITS,
-                        tempBr.getParent()), Commit.class);
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        HashSet<Integer> seen = new HashSet<Integer>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int c = queue.remove();
+            if (bases.contains(c)) {
+                return graph.id(c);
             }
-        }
-
-        Commit tempC2 = currCommit;
-        while (true) {
-            commitTree.put(tempC1.getHash(), tempC2);
-            if (tempC2.getHash().equals(split.getHash())) {
-                break;
-            } else {
-                distance1++;
-                tempC2 = Utils.readObject(Utils.join(_COMMITS,
-                        tempC2.getParent()), Commit.class);
-            }
-        }
-
-        Commit possibleSplit = splitContinued(distance1, brCommit, currCommit);
-        if (possibleSplit != null) {
-            split = possibleSplit;
-        }
-        return split;
-    }
-
-    private Commit splitContinued(int distance1,
-                                  Commit brCommit, Commit currCommit) {
-        TreeMap<String, Commit> commitTree = new TreeMap<String, Commit>();
-        int distance2 = 0;
-        Commit split = null;
-
-        Commit tempBr2 = brCommit;
-        while (true) {
-            commitTree.put(tempBr2.getHash(), tempBr2);
-            if (tempBr2.getParent() == null) {
-                break;
-            } else {
-                tempBr2 = Utils.readObject(Utils.join(_COMMITS,
-                        tempBr2.getParent()), Commit.class);
-            }
-        }
-
-        Commit tempC3 = currCommit;
-        while (true) {
-            String cSHA = tempC3.getHash();
-            if (commitTree.containsKey(cSHA) && distance2 < distance1) {
-                split = commitTree.get(cSHA);
-                break;
-            } else if (tempC3.getParent() == null) {
-                break;
-            } else if (tempC3.getParent2() != null) {
-                tempC3 = Utils.readObject(Utils.join(_COMMITS,
-                        tempC3.getParent2()), Commit.class);
-                distance2++;
-            } else {
-                tempC3 = Utils.readObject(Utils.join(_COMMITS,
-                        tempC3.getParent()), Commit.class);
-                distance2++;
+            for (int p: new int[] {graph.parent(c), graph.parent2(c)}) {
+                if (p != CommitGraph.NONE && seen.add(p)) {
+                    queue.add(p);
+                }
             }
         }
-
-        return split;
+        return graph.id(bases.get(0));
     }
 
     private boolean checkInput(String branch) {
@@ -658,7 +981,7 @@ public class Repository {
                 || !_StageArea.getRemoved().isEmpty()) {
             System.out.println("You have uncommitted changes.");
             return false;
-        } else if (!Utils.join(_BRANCHES, branch).exists()) {
+        } else if (branchFile(branch) == null) {
             System.out.println("A branch with that name does not exist.");
             return false;
         } else if (_HEAD.equals(branch)) {
@@ -673,26 +996,171 @@ public class Repository {
     public Commit recentCommit() {
         String commitHash
                 = Utils.readContentsAsString(Utils.join(_BRANCHES, _HEAD));
-        return Utils.readObject(Utils.join(_COMMITS, commitHash), Commit.class);
+        return readCommit(commitHash);
     }
 
-    public int getMaxNum() {
-        int max = 0;
-
-        for (String file: Utils.plainFilenamesIn(_BRANCHES)) {
-            if (!file.equals("head")) {
-                String sha = Utils.readContentsAsString(
-                        Utils.join(_BRANCHES, file));
-                Commit curr = Utils.readObject(Utils.join(_COMMITS, sha),
-                        Commit.class);
-                int currNum = curr.getNum();
-                if (currNum > max) {
-                    max = currNum;
+    /** Returns the commit whose SHA-1 key is SHA.  Commits are shared
+     *  through the cache of the object store and must not be modified. */
+    private Commit readCommit(String sha) {
+        return _objects.decode(ObjectStore.COMMITS, sha, Commit::decode);
+    }
+
+    /** Returns a description of the use of the cache of decoded
+     *  objects. */
+    public String cacheStats() {
+        return _objects.cache().toString();
+    }
+
+    /** Returns the SHA-1 key of the tree of the root directory of COMMIT.
+     *  For commits made by older versions of Gitlet, which list their
+     *  files themselves, the trees are first built and saved. */
+    private String treeOf(Commit commit) {
+        if (commit.getTree() != null) {
+            return commit.getTree();
+        }
+        return Tree.update(_objects, null, commit.getBlobs());
+    }
+
+    /** Returns all files tracked by COMMIT, mapped to the SHA-1 keys of
+     *  their blobs. */
+    private TreeMap<String, String> filesOf(Commit commit) {
+        if (commit.getTree() == null) {
+            return commit.getBlobs();
+        }
+        TreeMap<String, String> result = new TreeMap<String, String>();
+        Tree.flatten(_objects, commit.getTree(), "", result);
+        return result;
+    }
+
+    /** Returns the SHA-1 key of the blob of FILE in COMMIT, or null if
+     *  COMMIT does not track FILE. */
+    private String blobOf(Commit commit, String file) {
+        if (commit.getTree() == null) {
+            return commit.getBlobs().get(file);
+        }
+        return Tree.find(_objects, commit.getTree(), file);
+    }
+
+    /** Returns the SHA-1 key of the tree of PREV with the changes in the
+     *  staging area applied. */
+    private String stagedTree(Commit prev) {
+        TreeMap<String, String> changes
+                = new TreeMap<String, String>(_StageArea.getAdded());
+        for (String file: _StageArea.getRemoved().keySet()) {
+            changes.put(file, null);
+        }
+        return Tree.update(_objects, treeOf(prev), changes);
+    }
+
+    /** Returns FILE, a path relative to the working directory, in the form
+     *  used for tracked files: with '/' between directories and without
+     *  any leading "./". */
+    private static String normalize(String file) {
+        file = file.replace(File.separatorChar, '/');
+        while (file.startsWith("./")) {
+            file = file.substring(2);
+        }
+        return file;
+    }
+
+    /** Sets the ref (branch or head file) REF to CONTENTS, replacing it
+     *  atomically. */
+    private void writeRef(File ref, String contents) {
+        Transaction tx = _objects.begin();
+        tx.setRef(ref, contents);
+        tx.commit();
+    }
+
+    /** Saves COMMIT in the object store. */
+    private void writeCommit(Commit commit) {
+        _objects.write(ObjectStore.COMMITS, commit.getHash(),
+                commit.encode());
+        _commitIndex.add(commit.getHash());
+        _commitGraph.addNew(commit);
+        _commitLog.add(commit);
+    }
+
+    /** Returns the file holding the branch NAME, or null if there is no
+     *  such branch.  (The file head names the current branch and is not
+     *  a branch itself, and the branches of a remote are in a directory
+     *  named after it.) */
+    private File branchFile(String name) {
+        File result = Utils.join(_BRANCHES, name);
+        return name.equals("head") || !result.isFile() ? null : result;
+    }
+
+    /** Returns the full SHA-1 key of the only commit whose id starts with
+     *  ID.  Prints an error and returns null if there is no such commit
+     *  or more than one. */
+    private String resolveCommit(String id) {
+        List<String> found = _commitIndex.find(id, 2);
+        if (found.isEmpty() && id.length() == Utils.UID_LENGTH
+                && _objects.contains(ObjectStore.COMMITS, id)) {
+            return id;
+        } else if (found.isEmpty()) {
+            System.out.println("No commit with that id exists.");
+            return null;
+        } else if (found.size() > 1) {
+            System.out.println("Ambiguous commit id.");
+            return null;
+        }
+        return found.get(0);
+    }
+
+    /** Saves the contents of FILE as a blob, streaming them through the
+     *  object store, and returns their SHA-1 key. */
+    private String writeBlob(File file) {
+        try {
+            return _objects.writeBlob(new FileInputStream(file));
+        } catch (FileNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Moves the objects of a repository created by an older version of
+     *  Gitlet into the subdirectories used now. */
+    public void migrate() {
+        _objects.migrate();
+    }
+
+    /** Packs all objects of this repository, storing similar objects
+     *  as deltas against each other. */
+    public void repack() {
+        HashMap<String, String> paths = new HashMap<String, String>();
+        for (String sha: _objects.list(ObjectStore.COMMITS)) {
+            Commit commit = readCommit(sha);
+            if (commit.getTree() == null) {
+                for (Map.Entry<String, String> entry
+                        : commit.getBlobs().entrySet()) {
+                    paths.putIfAbsent(entry.getValue(), entry.getKey());
                 }
+            } else {
+                addPaths(commit.getTree(), "", paths);
             }
         }
+        _objects.repack(paths);
+    }
+
+    /** Maps the SHA-1 key of TREE, whose directory is PREFIX, and of each
+     *  tree and blob under it to its path in PATHS, unless TREE is already
+     *  there. */
+    private void addPaths(String tree, String prefix,
+                          Map<String, String> paths) {
+        if (paths.putIfAbsent(tree, prefix) != null) {
+            return;
+        }
+        Tree dir = Tree.read(_objects, tree);
+        for (Map.Entry<String, String> file: dir.getFiles().entrySet()) {
+            paths.putIfAbsent(file.getValue(), prefix + file.getKey());
+        }
+        for (Map.Entry<String, String> sub: dir.getDirs().entrySet()) {
+            addPaths(sub.getValue(), prefix + sub.getKey() + "/", paths);
+        }
+    }
 
-        return max;
+    /** Returns the largest number of any commit of this repository. */
+    public int getMaxNum() {
+        return _commitLog.maxNum();
     }
 
 
@@ -721,6 +1189,33 @@ public class Repository {
     /** Staging area of this repository. */
     private StagingArea _StageArea;
 
+    /** Blobs and commits of this repository. */
+    private ObjectStore _objects = new ObjectStore(_GITLET);
+
+    /** Sorted index of the commit ids of this repository. */
+    private CommitIndex _commitIndex;
+
+    /** Parents, generations and times of the commits of this
+     *  repository. */
+    private CommitGraph _commitGraph;
+
+    /** Metadata of all commits of this repository, in the order they
+     *  were made or fetched. */
+    private CommitLog _commitLog;
+
+    /** Index of the words of the messages in the commit log. */
+    private MessageIndex _messages;
+
+    /** Stat data and SHA-1 keys of the files in the working directory. */
+    private StatIndex _index;
+
+    /** Sketches of the contents of files, for finding renames. */
+    private Sketches _sketches;
+
+    /** Snapshot of the working directory taken for the current command,
+     *  or null if none was needed yet. */
+    private WorkingTree _working;
+
 
     public void addRemote(String name, String path) {
         if (_remotes.containsKey(name)) {
@@ -744,7 +1239,14 @@ public class Repository {
         Utils.join(_BRANCHES, name).delete();
     }
 
-    public void fetch(String rName, String bName) {
+    /** Copies the branch BNAME of the remote RNAME to the branch
+     *  RNAME/BNAME, with the objects it needs that are missing here.  The
+     *  history is walked from the remote branch, stopping at commits (and
+     *  trees) already here, which have everything they refer to, so only
+     *  the commits, trees and blobs that are new are read, and they are
+     *  copied as they are stored.  Iff VERBOSE, prints how many objects
+     *  and bytes were copied. */
+    public void fetch(String rName, String bName, boolean verbose) {
         File newBranch = Utils.join(_BRANCHES, rName + "/" + bName);
         String rPath = _remotes.get(rName);
         File rBranch = Utils.join(rPath, "branches/" + bName);
@@ -759,32 +1261,37 @@ public class Repository {
         }
 
         String rCommitHash = Utils.readContentsAsString(Utils.join(rBranch));
-        Utils.writeContents(newBranch, rCommitHash);
-
-        TreeSet<String> currBlobs = new TreeSet<String>();
-        currBlobs.addAll(Utils.plainFilenamesIn(_BLOBS));
-
-        for (String rFile: Utils.plainFilenamesIn(Utils.join(rPath, "blobs"))) {
-            if (!currBlobs.contains(rFile)) {
-                Utils.writeContents(Utils.join(_BLOBS, rFile),
-                        Utils.readContents(
-                                Utils.join(rPath, "blobs/" + rFile)));
-            }
+        Transfer transfer = new Transfer(new ObjectStore(rPath), _objects);
+        transfer.add(rCommitHash);
+        List<Commit> fetched = transfer.commits();
+
+        Transaction tx = _objects.begin();
+        long bytes = transfer.copy();
+        _commitIndex.addAll(fetched);
+        _commitGraph.lookup(rCommitHash);
+        _commitLog.addAll(fetched);
+        tx.setRef(newBranch, rCommitHash);
+        tx.commit();
+        if (verbose) {
+            System.out.println("Fetched " + count(fetched.size(), "commit")
+                    + ", " + count(transfer.trees(), "tree") + " and "
+                    + count(transfer.blobs(), "blob") + " ("
+                    + count(bytes, "byte") + ").");
         }
+    }
 
-        TreeSet<String> currCommits = new TreeSet<String>();
-        currCommits.addAll(Utils.plainFilenamesIn(_COMMITS));
-
-        for (String rCommit: Utils.plainFilenamesIn(
-                Utils.join(rPath, "commits"))) {
-            if (!currCommits.contains(rCommit)) {
-                Utils.writeObject(Utils.join(_COMMITS, rCommit),
-                        Utils.readObject(Utils.join(rPath, "commits/"
-                                + rCommit), Commit.class));
-            }
-        }
+    /** Returns N followed by NOUN, in the plural unless N is 1. */
+    private static String count(long n, String noun) {
+        return n + " " + noun + (n == 1 ? "" : "s");
     }
 
+    /** Copies the head of the current branch to the branch BNAME of the
+     *  remote RNAME, creating it if needed, along with the objects it
+     *  needs that the remote is missing.  The remote branch must be in
+     *  the history of the head.  The missing commits, trees and blobs are
+     *  found by one walk from the head, stopping at what the remote has,
+     *  and copied unchanged, so the pushed commits keep their keys; the
+     *  remote branch is updated only once they are all there. */
     public void push(String rName, String bName) {
         String rPath = _remotes.get(rName);
         if (!(new File(rPath).exists())) {
@@ -792,77 +1299,36 @@ public class Repository {
             return;
         }
         File rBranch = Utils.join(rPath, "branches/" + bName);
-        String rCommitHash = Utils.readContentsAsString(Utils.join(rBranch));
-        Commit rCommit = Utils.readObject(
-                Utils.join(rPath, "commits/" + rCommitHash),
-                Commit.class);
-        Commit curr = recentCommit();
-        boolean found = false;
-        TreeMap<Integer, Commit> history = new TreeMap<Integer, Commit>();
-
-        int i = 0;
-        Commit temp = curr;
-        while (true) {
-            history.put(i, temp);
-            if (temp.getParent() == null) {
-                break;
-            } else if (temp.getParent().equals(rCommitHash)) {
-                found = true;
-                break;
-            } else {
-                temp = Utils.readObject(Utils.join(
-                        _COMMITS, temp.getParent()), Commit.class);
-                i++;
-            }
-        }
-
-        if (!found) {
-            System.out.println("Please pull down "
-                    + "remote changes before pushing.");
-            return;
-        }
-
-        String bHash = Utils.readContentsAsString(
-                Utils.join(rPath, "branches/" + bName));
-        Commit parent = Utils.readObject(Utils.join(rPath,
-                "commits/" + bHash), Commit.class);
-        for (int k = i; k >= 0; k--) {
-            temp = history.get(k);
-            temp.setParent(parent.getHash());
-            Utils.writeObject(Utils.join(
-                    rPath, "commits/" + temp.getHash()), temp);
-            parent = temp;
-            if (k == 0) {
-                Utils.writeContents(Utils.join(
-                        rPath, "branches/" + bName), temp.getHash());
-            }
-
-        }
-    }
-
-    private int getRemoteMax(String rPath) {
-        int max = 0;
-
-        for (String file: Utils.plainFilenamesIn(
-                Utils.join(rPath, "branches"))) {
-            if (!file.equals("head")) {
-                String sha = Utils.readContentsAsString(
-                        Utils.join(rPath, "branches/" + file));
-                Commit curr = Utils.readObject(
-                        Utils.join(rPath, "commits/" + sha),
-                        Commit.class);
-                int currNum = curr.getNum();
-                if (currNum > max) {
-                    max = currNum;
-                }
+        String head = Utils.readContentsAsString(Utils.join(_BRANCHES, _HEAD));
+        if (rBranch.isFile()) {
+            int rTip = _commitGraph.lookup(
+                    Utils.readContentsAsString(rBranch));
+            if (rTip == CommitGraph.NONE || !new MergeBase(_commitGraph)
+                    .isAncestor(rTip, _commitGraph.lookup(head))) {
+                System.out.println("Please pull down "
+                        + "remote changes before pushing.");
+                return;
             }
         }
 
-        return max;
+        ObjectStore remote = new ObjectStore(rPath);
+        Transfer transfer = new Transfer(_objects, remote);
+        transfer.add(head);
+        List<Commit> pushed = transfer.commits();
+        Transaction tx = remote.begin();
+        transfer.copy();
+        new CommitIndex(Utils.join(rPath, "commit-index"), remote)
+                .addAll(pushed);
+        new CommitGraph(Utils.join(rPath, "commit-graph"), remote)
+                .addAll(pushed);
+        new CommitLog(Utils.join(rPath, "commit-log"), remote)
+                .addAll(pushed);
+        tx.setRef(rBranch, head);
+        tx.commit();
     }
 
     public void pull(String rName, String bName) {
-        fetch(rName, bName);
+        fetch(rName, bName, false);
         merge(rName + "/" + bName);
     }
 
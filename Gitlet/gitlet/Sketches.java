@@ -0,0 +1,218 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/** MinHash sketches of the contents of files, used to estimate how
+ *  similar two files are without comparing them.  The lines of a file
+ *  (without their line terminators) form a set, and its sketch holds,
+ *  for each of SIZE hash functions, the least hash of any of them.  The
+ *  fraction of positions at which two sketches agree estimates the
+ *  Jaccard similarity of the two sets of lines (to within about 6%).
+ *  Sketches are cached by the SHA-1 key of the contents in a file that
+ *  holds a header ("GSKC" and a version) followed by records of a key
+ *  and a sketch; new sketches are appended to it by save.
+ *  @author Kerem Dilmen
+ */
+class Sketches {
+
+    /** Number of hashes in a sketch. */
+    static final int SIZE = 64;
+
+    /** Magic number at the start of the file ("GSKC"). */
+    private static final int MAGIC = 0x47534b43;
+
+    /** File format version. */
+    private static final int VERSION = 1;
+
+    /** Size of the header of the file. */
+    private static final int HEADER = 8;
+
+    /** Size of a record of the file: a key, as written by Codec.writeId,
+     *  and a sketch. */
+    private static final int RECORD = 1 + Utils.UID_LENGTH / 2 + 4 * SIZE;
+
+    /** Sketch of contents without lines. */
+    private static final int[] EMPTY = new int[SIZE];
+
+    /** Seeds of the hash functions. */
+    private static final long[] SEEDS = new long[SIZE];
+
+    static {
+        Arrays.fill(EMPTY, Integer.MAX_VALUE);
+        long seed = 0x9e3779b97f4a7c15L;
+        for (int k = 0; k < SIZE; k += 1) {
+            seed = mix(seed + k);
+            SEEDS[k] = seed;
+        }
+    }
+
+    /** The sketches cached in FILE, read when first needed. */
+    Sketches(File file) {
+        _file = file;
+    }
+
+    /** Returns the sketch of the contents whose SHA-1 key is ID, reading
+     *  them from CONTENTS only if it is not cached.  May be called from
+     *  several threads at once. */
+    int[] get(String id, Supplier<byte[]> contents) {
+        load();
+        int[] result = _sketches.get(id);
+        if (result == null) {
+            result = sketch(contents.get());
+            if (_sketches.putIfAbsent(id, result) == null) {
+                _added.put(id, result);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the sketch of CONTENTS. */
+    static int[] sketch(byte[] contents) {
+        int[] result = EMPTY.clone();
+        int start = 0;
+        while (start < contents.length) {
+            int end = start;
+            long h = 0xcbf29ce484222325L;
+            while (end < contents.length && contents[end] != '\n') {
+                end += 1;
+            }
+            int last = end > start && contents[end - 1] == '\r'
+                ? end - 1 : end;
+            for (int p = start; p < last; p += 1) {
+                h = (h ^ (contents[p] & 0xff)) * 0x100000001b3L;
+            }
+            for (int k = 0; k < SIZE; k += 1) {
+                int v = (int) (mix(h ^ SEEDS[k]) >>> 33);
+                if (v < result[k]) {
+                    result[k] = v;
+                }
+            }
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /** Returns the estimated similarity of the contents whose sketches
+     *  are A and B, as a percentage.  Empty contents are not similar to
+     *  anything. */
+    static int similarity(int[] a, int[] b) {
+        if (isEmpty(a) || isEmpty(b)) {
+            return 0;
+        }
+        int same = 0;
+        for (int k = 0; k < SIZE; k += 1) {
+            if (a[k] == b[k]) {
+                same += 1;
+            }
+        }
+        return same * 100 / SIZE;
+    }
+
+    /** Returns true iff SKETCH is that of contents without lines. */
+    static boolean isEmpty(int[] sketch) {
+        return Arrays.equals(sketch, EMPTY);
+    }
+
+    /** Appends the sketches made since the file was read to it, after
+     *  dropping any record cut short. */
+    synchronized void save() {
+        if (_added == null || _added.isEmpty()) {
+            return;
+        }
+        boolean fresh = !_file.isFile();
+        try {
+            long extra = fresh ? 0 : (_file.length() - HEADER) % RECORD;
+            if (extra != 0) {
+                try (RandomAccessFile file = new RandomAccessFile(_file,
+                                                                  "rw")) {
+                    file.setLength(file.length() - extra);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(
+                    new FileOutputStream(_file, true)))) {
+            if (fresh) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            for (Map.Entry<String, int[]> entry : _added.entrySet()) {
+                Codec.writeId(out, entry.getKey());
+                for (int v : entry.getValue()) {
+                    out.writeInt(v);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _added.clear();
+    }
+
+    /** Returns the number of sketches cached. */
+    int size() {
+        load();
+        return _sketches.size();
+    }
+
+    /** Reads the file, if not done yet.  A missing file holds no
+     *  sketches, and a record cut short (by a crash while appending) is
+     *  ignored. */
+    private synchronized void load() {
+        if (_sketches != null) {
+            return;
+        }
+        ConcurrentHashMap<String, int[]> sketches =
+            new ConcurrentHashMap<String, int[]>();
+        if (_file.isFile()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(_file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IllegalArgumentException("bad sketch file");
+                }
+                for (long n = (_file.length() - HEADER) / RECORD; n > 0;
+                     n -= 1) {
+                    String id = Codec.readId(in);
+                    int[] sketch = new int[SIZE];
+                    for (int k = 0; k < SIZE; k += 1) {
+                        sketch[k] = in.readInt();
+                    }
+                    sketches.put(id, sketch);
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        _added = new ConcurrentHashMap<String, int[]>();
+        _sketches = sketches;
+    }
+
+    /** Returns X with its bits mixed (the finalizer of SplitMix64). */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    /** File holding the cache. */
+    private final File _file;
+
+    /** All sketches known, by SHA-1 key of contents. */
+    private volatile ConcurrentHashMap<String, int[]> _sketches;
+
+    /** Sketches not yet saved. */
+    private ConcurrentHashMap<String, int[]> _added;
+}
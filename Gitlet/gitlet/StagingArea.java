@@ -1,9 +1,40 @@
 package gitlet;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
 import java.util.TreeMap;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
-/** Class to track added and removed files for Gitlet.
+/** Class to track added and removed files for Gitlet.  The staging area
+ *  is saved in a compact binary format: a magic number, version and
+ *  generation number, then the added and the removed files, each as a
+ *  count followed by the file names and SHA-1 keys in sorted order.
+ *  Changes made since then are appended to a journal next to that file,
+ *  which starts with its own magic number and the generation of the area
+ *  it belongs to, followed by one record (a type, a file name and perhaps
+ *  a key) per change, so that saving costs as much as the changes, not
+ *  the whole area.  Loading replays the journal over the saved area,
+ *  stopping at a record that was only partly written; the next save cuts
+ *  such a record off before appending.  Once the journal grows longer
+ *  than the area (or the area is cleared), the area is saved whole with
+ *  a higher generation and the journal deleted, so a journal left behind
+ *  by an interrupted save belongs to an older generation and is ignored.
  *  @author Kerem Dilmen
  */
 public class StagingArea implements Serializable {
@@ -16,6 +47,7 @@ public class StagingArea implements Serializable {
      * @param sha - SHA-1 key of the file to be added. */
     public void add(String file, String sha) {
         _added.put(file, sha);
+        log(ADD, file, sha);
     }
 
     /** Adds the removed file to the staging area along with its SHA-1 key.
@@ -23,27 +55,337 @@ public class StagingArea implements Serializable {
      * @param sha - SHA-1 key of the file to be removed.*/
     public void remove(String file, String sha) {
         _removed.put(file, sha);
+        log(REMOVE, file, sha);
     }
 
-    /** Returns the map of added files. */
-    public TreeMap<String, String> getAdded() {
-        return _added;
+    /** Takes FILE out of the added files, if it is there. */
+    public void unadd(String file) {
+        if (_added.remove(file) != null) {
+            log(UNADD, file, null);
+        }
     }
 
-    /** Returns the map of removed files. */
-    public TreeMap<String, String> getRemoved() {
-        return _removed;
+    /** Takes FILE out of the removed files, if it is there. */
+    public void unremove(String file) {
+        if (_removed.remove(file) != null) {
+            log(UNREMOVE, file, null);
+        }
+    }
+
+    /** Returns the map of added files, which may not be modified. */
+    public SortedMap<String, String> getAdded() {
+        return Collections.unmodifiableSortedMap(_added);
+    }
+
+    /** Returns the map of removed files, which may not be modified. */
+    public SortedMap<String, String> getRemoved() {
+        return Collections.unmodifiableSortedMap(_removed);
     }
 
     /** Removes all added and removed files from the staging area. */
     public void clear() {
         _added = new TreeMap<String, String>();
         _removed = new TreeMap<String, String>();
+        log(CLEAR, null, null);
+    }
+
+    /** Notes the change of type TYPE to FILE, whose key is now SHA, to
+     *  be journaled by the next save. */
+    private void log(int type, String file, String sha) {
+        if (_pending == null) {
+            _pending = new ArrayList<Object[]>();
+        }
+        _pending.add(new Object[] { type, file, sha });
+    }
+
+    /** Applies the change of type TYPE to FILE, whose key is now SHA. */
+    private void apply(int type, String file, String sha) {
+        switch (type) {
+        case ADD:
+            _added.put(file, sha);
+            break;
+        case REMOVE:
+            _removed.put(file, sha);
+            break;
+        case UNADD:
+            _added.remove(file);
+            break;
+        case UNREMOVE:
+            _removed.remove(file);
+            break;
+        case CLEAR:
+            _added.clear();
+            _removed.clear();
+            break;
+        default:
+            throw new IllegalArgumentException("bad stage journal");
+        }
+    }
+
+    /** Returns the staging area saved in FILE, and in its journal, which
+     *  may also have been written by Java serialization in older
+     *  repositories. */
+    public static StagingArea load(File file) {
+        byte[] data = Utils.readContents(file);
+        StagingArea result;
+        if (Codec.isSerialized(data)) {
+            result = Utils.deserialize(data, StagingArea.class);
+        } else {
+            result = decode(data);
+        }
+        result._journaled = result.replay(journal(file));
+        result._pending = null;
+        return result;
+    }
+
+    /** Returns the staging area whose binary encoding is DATA. */
+    private static StagingArea decode(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(data));
+            int format = in.readInt() == MAGIC ? in.readByte() : -1;
+            if (format != FORMAT && format != UNNUMBERED_FORMAT) {
+                throw new IllegalArgumentException("unknown stage format");
+            }
+            StagingArea result = new StagingArea();
+            if (format == FORMAT) {
+                result._generation = in.readInt();
+            } else {
+                result._journalEnd = -1;
+            }
+            readFiles(in, result._added);
+            readFiles(in, result._removed);
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Applies the records of the journal JOURNAL, if it exists and
+     *  belongs to this generation of the area, up to the first one that
+     *  is not complete, and returns their number.  Sets _journalEnd to
+     *  the length of the part replayed.  (Areas of the unnumbered format
+     *  have journals without a header, which are replayed whole.) */
+    private int replay(File journal) {
+        boolean headed = _journalEnd == 0;
+        _journalEnd = headed ? 0 : -1;
+        if (!journal.isFile()) {
+            return 0;
+        }
+        byte[] data = Utils.readContents(journal);
+        int n = 0;
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(data))) {
+            if (headed && (in.readInt() != JOURNAL_MAGIC
+                           || in.readInt() != _generation)) {
+                return 0;
+            }
+            if (headed) {
+                _journalEnd = data.length - in.available();
+            }
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                String file = type == CLEAR ? null : Codec.readString(in);
+                String sha = type == ADD || type == REMOVE
+                    ? Codec.readId(in) : null;
+                apply(type, file, sha);
+                n += 1;
+                if (headed) {
+                    _journalEnd = data.length - in.available();
+                }
+            }
+        } catch (EOFException excp) {
+            return n;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return n;
+    }
+
+    /** Saves this staging area in FILE.  Only the changes made since it
+     *  was loaded or last saved are written, at the end of the journal,
+     *  unless it is time to save the area whole. */
+    public void save(File file) {
+        if (_pending == null || _pending.isEmpty()) {
+            return;
+        }
+        boolean cleared = false;
+        for (Object[] change : _pending) {
+            cleared |= (int) change[0] == CLEAR;
+        }
+        int journaled = _journaled + _pending.size();
+        File journal = journal(file);
+        if (cleared || !file.isFile() || _journalEnd < 0
+                || journal.length() < _journalEnd
+                || journaled > MIN_JOURNAL + _added.size() + _removed.size()) {
+            compact(file);
+        } else {
+            append(journal);
+            _journaled = journaled;
+        }
+        _pending.clear();
+    }
+
+    /** Appends the pending changes to JOURNAL, first cutting off anything
+     *  past the records replayed or written, or starting it afresh if it
+     *  had none. */
+    private void append(File journal) {
+        boolean fresh = _journalEnd == 0;
+        try {
+            if (!fresh && journal.length() > _journalEnd) {
+                try (RandomAccessFile f = new RandomAccessFile(journal,
+                                                               "rw")) {
+                    f.setLength(_journalEnd);
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(
+                            journal, !fresh)))) {
+                if (fresh) {
+                    out.writeInt(JOURNAL_MAGIC);
+                    out.writeInt(_generation);
+                }
+                for (Object[] change : _pending) {
+                    out.writeByte((int) change[0]);
+                    Codec.writeString(out, (String) change[1]);
+                    if (change[2] != null) {
+                        Codec.writeId(out, (String) change[2]);
+                    }
+                }
+                out.flush();
+                _journalEnd += out.size();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Saves this whole staging area in FILE, replacing it at once, with
+     *  a generation above those of the area and journal there, and
+     *  deletes the journal. */
+    private void compact(File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        int generation = 1 + Math.max(_generation, Math.max(
+                generation(file, 5, FORMAT),
+                generation(journal(file), 4, -1)));
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(FORMAT);
+                out.writeInt(generation);
+                writeFiles(out, _added);
+                writeFiles(out, _removed);
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _generation = generation;
+        journal(file).delete();
+        _journaled = 0;
+        _journalEnd = 0;
     }
 
+    /** Returns the generation stored AT bytes into FILE, after the magic
+     *  number of an area (followed by the format byte FORMAT) if FORMAT
+     *  is not negative, or of a journal otherwise; or 0 if FILE does not
+     *  start that way. */
+    private static int generation(File file, int at, int format) {
+        if (!file.isFile()) {
+            return 0;
+        }
+        byte[] head;
+        try (InputStream in = new FileInputStream(file)) {
+            head = in.readNBytes(at + 4);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (head.length < at + 4) {
+            return 0;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(head);
+        if (format >= 0 ? buf.getInt() != MAGIC || buf.get() != format
+            : buf.getInt() != JOURNAL_MAGIC) {
+            return 0;
+        }
+        return buf.getInt(at);
+    }
+
+    /** Returns the journal of the staging area saved in FILE. */
+    static File journal(File file) {
+        return new File(file.getPath() + ".journal");
+    }
+
+    /** Writes the number of entries of FILES and then each entry to OUT. */
+    private static void writeFiles(DataOutputStream out,
+                                   TreeMap<String, String> files)
+        throws IOException {
+        out.writeInt(files.size());
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            Codec.writeString(out, entry.getKey());
+            Codec.writeId(out, entry.getValue());
+        }
+    }
+
+    /** Reads entries written by writeFiles from IN into FILES. */
+    private static void readFiles(DataInputStream in,
+                                  TreeMap<String, String> files)
+        throws IOException {
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            String file = Codec.readString(in);
+            files.put(file, Codec.readId(in));
+        }
+    }
+
+    /** Version of the Java serialization of this class, fixed at its
+     *  value in older versions of Gitlet so that they can still be read. */
+    private static final long serialVersionUID = -2336849623478024296L;
+
+    /** Magic number at the start of a saved staging area. */
+    private static final int MAGIC = 0x47535441;
+
+    /** Version of the format written by save. */
+    private static final int FORMAT = 2;
+
+    /** Version of the format without a generation number, whose journals
+     *  have no header. */
+    private static final int UNNUMBERED_FORMAT = 1;
+
+    /** Magic number at the start of a journal. */
+    private static final int JOURNAL_MAGIC = 0x47534a4e;
+
+    /** Journal record types: a file added or removed, taken out of the
+     *  added or removed files, and everything cleared. */
+    private static final int ADD = 1, REMOVE = 2, UNADD = 3, UNREMOVE = 4,
+        CLEAR = 5;
+
+    /** Number of records the journal may always hold before the area is
+     *  saved whole; beyond it, one more per staged file. */
+    private static final int MIN_JOURNAL = 1024;
+
     /** A map for the added files and their SHA-1 keys. */
     private TreeMap<String, String> _added;
 
     /** A map to store the removed files. */
     private TreeMap<String, String> _removed;
+
+    /** Changes (type, file and key) not yet saved. */
+    private transient ArrayList<Object[]> _pending;
+
+    /** Number of records in the journal. */
+    private transient int _journaled;
+
+    /** Generation of the saved area. */
+    private transient int _generation;
+
+    /** Length of the part of the journal known to be whole, 0 if the
+     *  journal is to be started afresh, or -1 if the area must be saved
+     *  whole. */
+    private transient int _journalEnd;
 }
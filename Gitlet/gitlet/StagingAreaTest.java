@@ -0,0 +1,126 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Base64;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of StagingArea.
+ *  @author Kerem Dilmen
+ */
+public class StagingAreaTest {
+
+    /** Returns a file named area in a new temporary directory. */
+    private static File areaFile() {
+        return new File(TestUtils.tempDir(), "area");
+    }
+
+    @Test
+    public void changesAreJournaled() {
+        File file = areaFile();
+        StagingArea area = new StagingArea();
+        area.add("a.txt", Utils.sha1("a"));
+        area.save(file);
+        long saved = file.length();
+        area.add("b.txt", Utils.sha1("b"));
+        area.save(file);
+        area.unadd("a.txt");
+        area.remove("c.txt", Utils.sha1("c"));
+        area.save(file);
+        assertEquals(saved, file.length());
+        assertTrue(StagingArea.journal(file).isFile());
+
+        StagingArea loaded = StagingArea.load(file);
+        assertEquals(area.getAdded(), loaded.getAdded());
+        assertEquals(area.getRemoved(), loaded.getRemoved());
+        assertFalse(loaded.getAdded().containsKey("a.txt"));
+    }
+
+    @Test
+    public void tornRecordsAreIgnored() throws IOException {
+        File file = areaFile();
+        StagingArea area = new StagingArea();
+        area.save(file);
+        area.add("a.txt", Utils.sha1("a"));
+        area.save(file);
+        area.add("b.txt", Utils.sha1("b"));
+        area.save(file);
+        File journal = StagingArea.journal(file);
+        try (RandomAccessFile out = new RandomAccessFile(journal, "rw")) {
+            out.setLength(journal.length() - 3);
+        }
+        StagingArea loaded = StagingArea.load(file);
+        assertEquals(Utils.sha1("a"), loaded.getAdded().get("a.txt"));
+        assertFalse(loaded.getAdded().containsKey("b.txt"));
+        loaded.add("c.txt", Utils.sha1("c"));
+        loaded.save(file);
+        StagingArea reloaded = StagingArea.load(file);
+        assertEquals(Utils.sha1("a"), reloaded.getAdded().get("a.txt"));
+        assertEquals(Utils.sha1("c"), reloaded.getAdded().get("c.txt"));
+        assertFalse(reloaded.getAdded().containsKey("b.txt"));
+    }
+
+    @Test
+    public void staleJournalIsIgnored() throws IOException {
+        File file = areaFile();
+        StagingArea area = new StagingArea();
+        area.save(file);
+        area.add("a.txt", Utils.sha1("a"));
+        area.save(file);
+        File journal = StagingArea.journal(file);
+        byte[] stale = Files.readAllBytes(journal.toPath());
+        area.clear();
+        area.save(file);
+        Files.write(journal.toPath(), stale);
+        assertTrue(StagingArea.load(file).getAdded().isEmpty());
+        new StagingArea().save(file);
+        Files.write(journal.toPath(), stale);
+        assertTrue(StagingArea.load(file).getAdded().isEmpty());
+    }
+
+    @Test
+    public void clearingCompacts() {
+        File file = areaFile();
+        StagingArea area = new StagingArea();
+        area.save(file);
+        for (int i = 0; i < 3000; i += 1) {
+            area.add("file" + (i % 10), Utils.sha1("v" + i));
+            area.save(file);
+        }
+        assertTrue(StagingArea.journal(file).length() < 2000 * 30);
+        assertEquals(10, StagingArea.load(file).getAdded().size());
+        area.clear();
+        area.save(file);
+        assertFalse(StagingArea.journal(file).exists());
+        assertTrue(StagingArea.load(file).getAdded().isEmpty());
+    }
+
+    /** A staging area with a.txt added and c.txt removed, in Base64, as
+     *  serialized by the StagingArea class of repositories older than the
+     *  binary format. */
+    private static final String LEGACY_AREA =
+        "rO0ABXNyABJnaXRsZXQuU3RhZ2luZ0FyZWHfkdemCxZHmAIAAkwABl9hZGRlZHQA" +
+        "E0xqYXZhL3V0aWwvVHJlZU1hcDtMAAhfcmVtb3ZlZHEAfgABeHBzcgARamF2YS51" +
+        "dGlsLlRyZWVNYXAMwfY+LSVq5gMAAUwACmNvbXBhcmF0b3J0ABZMamF2YS91dGls" +
+        "L0NvbXBhcmF0b3I7eHBwdwQAAAABdAAFYS50eHR0ACg4NmY3ZTQzN2ZhYTVhN2Zj" +
+        "ZTE1ZDFkZGNiOWVhZWFlYTM3NzY2N2I4eHNxAH4AA3B3BAAAAAF0AAVjLnR4dHQA" +
+        "KDg0YTUxNjg0MWJhNzdhNWI0NjQ4ZGUyY2QwZGZjYjMwZWE0NmRiYjR4";
+
+    @Test
+    public void legacyAreaTakesJournal() {
+        File file = areaFile();
+        Utils.writeContents(file,
+                            (Object) Base64.getDecoder().decode(LEGACY_AREA));
+        StagingArea area = StagingArea.load(file);
+        assertEquals(Utils.sha1("a"), area.getAdded().get("a.txt"));
+        assertEquals(Utils.sha1("c"), area.getRemoved().get("c.txt"));
+        area.remove("b.txt", Utils.sha1("b"));
+        area.save(file);
+        StagingArea loaded = StagingArea.load(file);
+        assertEquals(Utils.sha1("a"), loaded.getAdded().get("a.txt"));
+        assertEquals(Utils.sha1("b"), loaded.getRemoved().get("b.txt"));
+    }
+}
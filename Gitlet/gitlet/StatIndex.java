@@ -0,0 +1,296 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A persistent cache of the SHA-1 keys of working files, so that
+ *  commands comparing the working directory with commits do not read
+ *  every file each time.  For each path it records the size, the
+ *  modification and change times and the inode number of the file when
+ *  it was hashed, along with the key; the file is only read again once
+ *  one of these has changed.
+ *  A file changed within the same clock tick as the index was written
+ *  would keep its recorded times, so entries whose modification time is
+ *  not older than the index file itself are racy: they are always hashed
+ *  again, and the index rewritten, after which they are not.
+ *  The file holds a header ("GIDX" and a version) and the number of
+ *  entries, and then each path, its stat data and its key.
+ *  @author Kerem Dilmen
+ */
+class StatIndex {
+
+    /** Index format version. */
+    private static final int VERSION = 1;
+
+    /** Size of the buffer used to hash files. */
+    private static final int BUFFER = 1 << 16;
+
+    /** The index kept in the file FILE, read when first needed. */
+    StatIndex(File file) {
+        _file = file;
+    }
+
+    /** Returns the SHA-1 key of the contents of FILE, the working file
+     *  with path PATH, reading it only if it changed since it was last
+     *  hashed.  Returns null if FILE is not a file. */
+    String hash(String path, File file) {
+        return hash(path, file, stat(file));
+    }
+
+    /** Returns the SHA-1 key of the contents of FILE, as by hash(PATH,
+     *  FILE), given that its stat data is STAT (null if it is not a
+     *  file).  May be called from several threads at once. */
+    String hash(String path, File file, Stat stat) {
+        load();
+        if (stat == null) {
+            remove(path);
+            return null;
+        }
+        Entry entry = _entries.get(path);
+        if (entry != null && entry.stat.equals(stat)
+                && stat.mtime < _stamp) {
+            return entry.id;
+        }
+        String id = hashFile(file);
+        _rehashed.incrementAndGet();
+        _entries.put(path, new Entry(stat, id));
+        _dirty = true;
+        return id;
+    }
+
+    /** Records that FILE, the working file with path PATH, has just been
+     *  written with the contents whose SHA-1 key is ID. */
+    void record(String path, File file, String id) {
+        load();
+        Stat stat = stat(file);
+        if (stat == null) {
+            remove(path);
+        } else {
+            _entries.put(path, new Entry(stat, id));
+            _dirty = true;
+        }
+    }
+
+    /** Forgets the working file with path PATH. */
+    void remove(String path) {
+        load();
+        if (_entries.remove(path) != null) {
+            _dirty = true;
+        }
+    }
+
+    /** Returns the number of files hashed by this index. */
+    int rehashed() {
+        return _rehashed.get();
+    }
+
+    /** Writes the index back to its file, if it changed, replacing the
+     *  old file at once. */
+    synchronized void save() {
+        if (!_dirty) {
+            return;
+        }
+        File temp = new File(_file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(_entries.size());
+                for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+                    Codec.writeString(out, e.getKey());
+                    Stat stat = e.getValue().stat;
+                    out.writeLong(stat.size);
+                    out.writeLong(stat.mtime);
+                    out.writeLong(stat.ctime);
+                    out.writeLong(stat.inode);
+                    Codec.writeId(out, e.getValue().id);
+                }
+            }
+            Files.move(temp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            _stamp = nanos(Files.getLastModifiedTime(_file.toPath()));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _dirty = false;
+    }
+
+    /** Reads the index file, if not done yet.  A missing index is
+     *  empty. */
+    private void load() {
+        if (_entries == null) {
+            read();
+        }
+    }
+
+    /** Reads the index file into _entries, unless another thread has
+     *  just done so. */
+    private synchronized void read() {
+        if (_entries != null) {
+            return;
+        }
+        ConcurrentHashMap<String, Entry> entries =
+            new ConcurrentHashMap<String, Entry>();
+        if (_file.isFile()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(_file)))) {
+                _stamp = nanos(Files.getLastModifiedTime(_file.toPath()));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IllegalArgumentException("bad index");
+                }
+                for (int n = in.readInt(); n > 0; n -= 1) {
+                    String path = Codec.readString(in);
+                    Stat stat = new Stat(in.readLong(), in.readLong(),
+                                         in.readLong(), in.readLong());
+                    entries.put(path, new Entry(stat, Codec.readId(in)));
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        _entries = entries;
+    }
+
+    /** Returns the stat data of FILE, or null if it is not a file.  Uses
+     *  the creation time and no inode where the file system does not
+     *  provide Unix attributes. */
+    static Stat stat(File file) {
+        try {
+            Map<String, Object> unix = Files.readAttributes(file.toPath(),
+                "unix:isRegularFile,size,lastModifiedTime,ctime,ino");
+            if (!(Boolean) unix.get("isRegularFile")) {
+                return null;
+            }
+            return new Stat((Long) unix.get("size"),
+                            nanos((FileTime) unix.get("lastModifiedTime")),
+                            nanos((FileTime) unix.get("ctime")),
+                            (Long) unix.get("ino"));
+        } catch (UnsupportedOperationException excp) {
+            return basicStat(file);
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the stat data of FILE from its basic attributes, or null
+     *  if it is not a file. */
+    private static Stat basicStat(File file) {
+        try {
+            BasicFileAttributes basic = Files.readAttributes(
+                file.toPath(), BasicFileAttributes.class);
+            if (!basic.isRegularFile()) {
+                return null;
+            }
+            return new Stat(basic.size(), nanos(basic.lastModifiedTime()),
+                            nanos(basic.creationTime()), 0);
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the SHA-1 key of the contents of FILE, reading it in
+     *  pieces so that large files need not fit in memory. */
+    static String hashFile(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[BUFFER];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                md.update(buffer, 0, n);
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (IOException | NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns TIME in nanoseconds since the epoch. */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /** The stat data of a file. */
+    static class Stat {
+        Stat(long size0, long mtime0, long ctime0, long inode0) {
+            size = size0;
+            mtime = mtime0;
+            ctime = ctime0;
+            inode = inode0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Stat)) {
+                return false;
+            }
+            Stat other = (Stat) obj;
+            return size == other.size && mtime == other.mtime
+                && ctime == other.ctime && inode == other.inode;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size ^ mtime ^ ctime ^ inode);
+        }
+
+        /** Length in bytes. */
+        private final long size;
+        /** Modification time in nanoseconds since the epoch. */
+        private final long mtime;
+        /** Change (or creation) time in nanoseconds since the epoch. */
+        private final long ctime;
+        /** Inode number, or 0. */
+        private final long inode;
+    }
+
+    /** The recorded stat data and key of a file. */
+    private static class Entry {
+        Entry(Stat stat0, String id0) {
+            stat = stat0;
+            id = id0;
+        }
+
+        /** Stat data of the file when it was hashed. */
+        private final Stat stat;
+        /** SHA-1 key of its contents. */
+        private final String id;
+    }
+
+    /** Magic number of index files. */
+    private static final int MAGIC = 0x47494458;
+
+    /** The index file. */
+    private final File _file;
+
+    /** The entries by path, or null if not yet read. */
+    private volatile ConcurrentHashMap<String, Entry> _entries;
+
+    /** Modification time of the index file when last read or written,
+     *  in nanoseconds since the epoch. */
+    private volatile long _stamp = Long.MIN_VALUE;
+
+    /** True iff the entries differ from those in the index file. */
+    private volatile boolean _dirty;
+
+    /** Number of files hashed. */
+    private final AtomicInteger _rehashed = new AtomicInteger();
+}
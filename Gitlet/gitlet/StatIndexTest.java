@@ -0,0 +1,83 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of StatIndex.
+ *  @author Kerem Dilmen
+ */
+public class StatIndexTest {
+
+    /** Writes CONTENTS to FILE and sets its modification time to SECONDS
+     *  seconds from now. */
+    private static void write(File file, String contents, long seconds) {
+        Utils.writeContents(file, contents);
+        try {
+            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(
+                System.currentTimeMillis() + seconds * 1000));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    @Test
+    public void unchangedFilesAreNotRehashed() {
+        File dir = TestUtils.tempDir(), file = new File(dir, "a.txt");
+        write(file, "hello", -60);
+        StatIndex index = new StatIndex(new File(dir, "index"));
+        assertEquals(Utils.sha1("hello"), index.hash("a.txt", file));
+        index.save();
+        StatIndex again = new StatIndex(new File(dir, "index"));
+        assertEquals(Utils.sha1("hello"), again.hash("a.txt", file));
+        assertEquals(0, again.rehashed());
+    }
+
+    @Test
+    public void changedFilesAreRehashed() {
+        File dir = TestUtils.tempDir(), file = new File(dir, "a.txt");
+        write(file, "hello", -60);
+        StatIndex index = new StatIndex(new File(dir, "index"));
+        index.hash("a.txt", file);
+        index.save();
+        write(file, "jello", -30);
+        StatIndex again = new StatIndex(new File(dir, "index"));
+        assertEquals(Utils.sha1("jello"), again.hash("a.txt", file));
+        assertEquals(1, again.rehashed());
+        file.delete();
+        assertNull(again.hash("a.txt", file));
+    }
+
+    @Test
+    public void racyEntriesAreRehashed() {
+        File dir = TestUtils.tempDir(), file = new File(dir, "a.txt");
+        write(file, "hello", 60);
+        StatIndex index = new StatIndex(new File(dir, "index"));
+        index.hash("a.txt", file);
+        index.save();
+        try {
+            FileTime time = Files.getLastModifiedTime(file.toPath());
+            Utils.writeContents(file, "jello");
+            Files.setLastModifiedTime(file.toPath(), time);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        StatIndex again = new StatIndex(new File(dir, "index"));
+        assertEquals(Utils.sha1("jello"), again.hash("a.txt", file));
+    }
+
+    @Test
+    public void recordedFilesAreTrusted() {
+        File dir = TestUtils.tempDir(), file = new File(dir, "a.txt");
+        write(file, "hello", -60);
+        StatIndex index = new StatIndex(new File(dir, "index"));
+        index.record("a.txt", file, Utils.sha1("hello"));
+        index.save();
+        StatIndex again = new StatIndex(new File(dir, "index"));
+        assertEquals(Utils.sha1("hello"), again.hash("a.txt", file));
+        assertEquals(0, again.rehashed());
+    }
+}
@@ -0,0 +1,66 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+/** Fixtures shared by the unit tests.  Temporary directories are
+ *  deleted, with everything in them, when the tests exit.
+ *  @author Kerem Dilmen
+ */
+class TestUtils {
+
+    /** Directories made by tempDir. */
+    private static final ArrayList<File> DIRS = new ArrayList<File>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            synchronized (DIRS) {
+                for (File dir : DIRS) {
+                    delete(dir);
+                }
+            }
+        }));
+    }
+
+    /** Returns a new temporary directory. */
+    static File tempDir() {
+        try {
+            File dir = Files.createTempDirectory("gitlet-test").toFile();
+            synchronized (DIRS) {
+                DIRS.add(dir);
+            }
+            return dir;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns an object store in a new temporary directory. */
+    static ObjectStore store() {
+        return new ObjectStore(tempDir());
+    }
+
+    /** Saves in STORE and returns a commit with message MSG, parents
+     *  PARENT and PARENT2 (either of which may be null) and number NUM,
+     *  whose tree key is made up from MSG. */
+    static Commit commit(ObjectStore store, String msg, String parent,
+                         String parent2, int num) {
+        Commit result = new Commit(Utils.sha1(msg), msg, parent, num,
+                                   parent2);
+        store.write(ObjectStore.COMMITS, result.getHash(), result.encode());
+        return result;
+    }
+
+        /** Deletes FILE and, if it is a directory, everything in it. */
+    static void delete(File file) {
+        File[] entries = file.listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                delete(entry);
+            }
+        }
+        file.delete();
+    }
+}
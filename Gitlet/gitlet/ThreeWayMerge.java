@@ -0,0 +1,225 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** A line-by-line merge of two versions of a file that were both changed
+ *  from a common base, in the manner of diff3.  Each version is compared
+ *  with the base (by Diff).  Lines of the base kept in both versions
+ *  divide the files into stable regions, copied as they are, and
+ *  unstable ones in between.  An unstable region changed in only one
+ *  version (or changed the same way in both) takes that version's
+ *  lines; one changed differently in both is a conflict, written as
+ *      <<<<<<< HEAD
+ *      (the lines of the current version)
+ *      =======
+ *      (the lines of the other version)
+ *      >>>>>>>
+ *  so a file whose every line conflicts looks as it did when conflicts
+ *  were always whole files.
+ *  The versions are read from streams in pieces into byte arrays, lines
+ *  are compared as bytes (so any encoding is merged as it is, and lines
+ *  keep their line terminators), and the result is written to a stream,
+ *  so no String holding a whole file is ever made.
+ *  @author Kerem Dilmen
+ */
+class ThreeWayMerge {
+
+    /** Size of the pieces in which versions are read. */
+    private static final int BUFFER = 1 << 16;
+
+    /** Start of a conflict. */
+    private static final byte[] OURS = bytes("<<<<<<< HEAD\n");
+
+    /** Separator of the two sides of a conflict. */
+    private static final byte[] SEPARATOR = bytes("=======\n");
+
+    /** End of a conflict. */
+    private static final byte[] END = bytes(">>>>>>>\n");
+
+    /** Merges the changes from the contents of BASE to those of THEIRS into
+     *  the contents of OURS, writing the result to OUT.  Returns the number
+     *  of conflicts.  Closes the input streams, but not OUT. */
+    static int merge(InputStream base, InputStream ours, InputStream theirs,
+                     OutputStream out) throws IOException {
+        HashMap<Line, Integer> ids = new HashMap<Line, Integer>();
+        Lines b = new Lines(base, ids), o = new Lines(ours, ids),
+            t = new Lines(theirs, ids);
+        int[] toOurs = matches(b, o), toTheirs = matches(b, t);
+
+        int conflicts = 0;
+        int i = 0, j = 0, k = 0;
+        while (i < b.size() || j < o.size() || k < t.size()) {
+            if (i < b.size() && toOurs[i] == j && toTheirs[i] == k) {
+                b.write(out, i, i + 1);
+                i += 1;
+                j += 1;
+                k += 1;
+                continue;
+            }
+            int next = i;
+            while (next < b.size()
+                   && (toOurs[next] < 0 || toTheirs[next] < 0)) {
+                next += 1;
+            }
+            int oEnd = next < b.size() ? toOurs[next] : o.size();
+            int tEnd = next < b.size() ? toTheirs[next] : t.size();
+            if (b.same(i, next, o, j, oEnd)) {
+                t.write(out, k, tEnd);
+            } else if (b.same(i, next, t, k, tEnd)
+                       || o.same(j, oEnd, t, k, tEnd)) {
+                o.write(out, j, oEnd);
+            } else {
+                conflicts += 1;
+                out.write(OURS);
+                o.write(out, j, oEnd);
+                out.write(SEPARATOR);
+                t.write(out, k, tEnd);
+                out.write(END);
+            }
+            i = next;
+            j = oEnd;
+            k = tEnd;
+        }
+        return conflicts;
+    }
+
+    /** Returns, for each line of BASE, the line of OTHER it is matched
+     *  with, or -1. */
+    private static int[] matches(Lines base, Lines other) {
+        Diff diff = new Diff();
+        diff.setSequences(base.ids(), other.ids());
+        int[] result = new int[base.size()];
+        Arrays.fill(result, -1);
+        int[] common = diff.commonSubsequence();
+        for (int c = 0; c < common.length; c += 3) {
+            for (int n = 0; n < common[c + 2]; n += 1) {
+                result[common[c] + n] = common[c + 1] + n;
+            }
+        }
+        return result;
+    }
+
+    /** Returns TEXT in UTF-8. */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** The lines of one version of a file. */
+    private static class Lines {
+        /** Reads the lines of IN, and closes it, numbering them through
+         *  IDS, which maps each distinct line seen so far to its
+         *  number. */
+        Lines(InputStream in, HashMap<Line, Integer> ids)
+            throws IOException {
+            try (InputStream src = in) {
+                byte[] piece = new byte[BUFFER];
+                for (int n = src.read(piece); n >= 0; n = src.read(piece)) {
+                    if (length + n > data.length) {
+                        data = Arrays.copyOf(data, Math.max(length + n,
+                                                            2 * data.length));
+                    }
+                    System.arraycopy(piece, 0, data, length, n);
+                    length += n;
+                }
+            }
+            starts = new int[16];
+            int count = 0;
+            for (int p = 0; p < length; ) {
+                if (count + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * starts.length);
+                }
+                starts[count] = p;
+                count += 1;
+                while (p < length && data[p] != '\n') {
+                    p += 1;
+                }
+                p = Math.min(p + 1, length);
+            }
+            starts[count] = length;
+            lineIds = new int[count];
+            for (int k = 0; k < count; k += 1) {
+                Line line = new Line(data, starts[k], starts[k + 1]);
+                Integer id = ids.putIfAbsent(line, ids.size());
+                lineIds[k] = id == null ? ids.size() - 1 : id;
+            }
+        }
+
+        /** Returns the number of lines. */
+        int size() {
+            return lineIds.length;
+        }
+
+        /** Returns the numbers of the lines. */
+        int[] ids() {
+            return lineIds;
+        }
+
+        /** Returns true iff lines [FROM .. TO - 1] are the same as lines
+         *  [OTHERFROM .. OTHERTO - 1] of OTHER. */
+        boolean same(int from, int to, Lines other, int otherFrom,
+                     int otherTo) {
+            return Arrays.equals(lineIds, from, to,
+                                 other.lineIds, otherFrom, otherTo);
+        }
+
+        /** Writes lines [FROM .. TO - 1] to OUT. */
+        void write(OutputStream out, int from, int to) throws IOException {
+            out.write(data, starts[from], starts[to] - starts[from]);
+        }
+
+        /** The contents of the file. */
+        private byte[] data = new byte[BUFFER];
+        /** Length of the contents. */
+        private int length;
+        /** Start of each line, followed by the length of the
+         *  contents. */
+        private int[] starts;
+        /** Number of each line. */
+        private int[] lineIds;
+    }
+
+    /** A line, as a range of an array of bytes, compared by contents. */
+    private static class Line {
+        /** The bytes [START0 .. END0 - 1] of DATA0. */
+        Line(byte[] data0, int start0, int end0) {
+            data = data0;
+            start = start0;
+            end = end0;
+            int h = 0;
+            for (int p = start; p < end; p += 1) {
+                h = 31 * h + data[p];
+            }
+            hash = h;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Line)) {
+                return false;
+            }
+            Line other = (Line) obj;
+            return hash == other.hash
+                && Arrays.equals(data, start, end,
+                                 other.data, other.start, other.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /** Bytes holding the line. */
+        private final byte[] data;
+        /** Start of the line. */
+        private final int start;
+        /** End of the line. */
+        private final int end;
+        /** Hash code of the contents. */
+        private final int hash;
+    }
+}
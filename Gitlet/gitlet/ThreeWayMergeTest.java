@@ -0,0 +1,62 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of ThreeWayMerge.
+ *  @author Kerem Dilmen
+ */
+public class ThreeWayMergeTest {
+
+    /** Returns a stream of TEXT. */
+    private static InputStream in(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns the merge of the changes from BASE to THEIRS into OURS,
+     *  followed by the number of conflicts in brackets. */
+    private static String merge(String base, String ours, String theirs)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int conflicts = ThreeWayMerge.merge(in(base), in(ours), in(theirs),
+                                            out);
+        return out.toString(StandardCharsets.UTF_8) + "[" + conflicts + "]";
+    }
+
+    @Test
+    public void disjointChangesMerge() throws IOException {
+        String base = "a\nb\nc\nd\ne\n";
+        assertEquals("A\nb\nc\nd\nE\n[0]",
+                     merge(base, "A\nb\nc\nd\ne\n", "a\nb\nc\nd\nE\n"));
+        assertEquals("a\nc\nd\nnew\ne\n[0]",
+                     merge(base, "a\nc\nd\ne\n", "a\nb\nc\nd\nnew\ne\n"));
+    }
+
+    @Test
+    public void sameChangesMerge() throws IOException {
+        assertEquals("a\nX\nc\n[0]",
+                     merge("a\nb\nc\n", "a\nX\nc\n", "a\nX\nc\n"));
+    }
+
+    @Test
+    public void onlyConflictingLinesAreMarked() throws IOException {
+        assertEquals("a\n<<<<<<< HEAD\nours\n=======\ntheirs\n>>>>>>>\n"
+                     + "c\nD\n[1]",
+                     merge("a\nb\nc\nd\n", "a\nours\nc\nd\n",
+                           "a\ntheirs\nc\nD\n"));
+    }
+
+    @Test
+    public void wholeFileConflictsKeepTheirOldForm() throws IOException {
+        assertEquals("<<<<<<< HEAD\nThis is a wug.\n=======\n"
+                     + "This is not a wug.\n>>>>>>>\n[1]",
+                     merge("", "This is a wug.\n", "This is not a wug.\n"));
+        assertEquals("<<<<<<< HEAD\nno newline=======\nother\n>>>>>>>\n[1]",
+                     merge("base\n", "no newline", "other\n"));
+    }
+}
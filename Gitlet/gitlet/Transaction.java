@@ -0,0 +1,186 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/** The writes of one command to a repository: the objects it stores, the
+ *  files describing them that it updates (the commit index, graph and
+ *  log) and the refs (branch and head files) it changes.  Objects are
+ *  written to temporary files and renamed into place by the ObjectStore
+ *  as usual; the transaction remembers them and the other files written,
+ *  and on commit makes them all durable at once, and only then replaces
+ *  each ref, again by writing a temporary file and renaming it over the
+ *  ref.  So however a command is interrupted, each ref holds either its
+ *  old or its new contents, and never names an object that is not safely
+ *  stored and described.
+ *  How hard it tries to make writes durable is set by GITLET_FSYNC:
+ *  "none" never syncs (a crash of the machine may lose recent writes,
+ *  but the renames still keep refs whole), "each" syncs every object as
+ *  it is written, and the default, "batch", syncs all objects of the
+ *  command together, just before its refs.
+ *  @author Kerem Dilmen
+ */
+class Transaction {
+
+    /** Durability mode that never syncs. */
+    static final int NONE = 0;
+
+    /** Durability mode that syncs all objects at commit. */
+    static final int BATCH = 1;
+
+    /** Durability mode that syncs each object as it is written. */
+    static final int EACH = 2;
+
+    /** A transaction whose refs are written through temporary files in
+     *  TMP, with durability mode DURABILITY, for STORE. */
+    Transaction(File tmp, int durability, ObjectStore store) {
+        _tmp = tmp;
+        _durability = durability;
+        _store = store;
+    }
+
+    /** Returns the durability mode named by GITLET_FSYNC. */
+    static int durability() {
+        String mode = System.getenv("GITLET_FSYNC");
+        if ("none".equals(mode)) {
+            return NONE;
+        } else if ("each".equals(mode)) {
+            return EACH;
+        }
+        return BATCH;
+    }
+
+    /** Records that FILE has just been installed as an object, or
+     *  written as a file describing the objects.  May be called from
+     *  several threads at once. */
+    void written(File file) {
+        step();
+        if (_durability == EACH) {
+            sync(file);
+            sync(file.getParentFile());
+        } else if (_durability == BATCH) {
+            synchronized (_written) {
+                _written.add(file);
+            }
+        }
+    }
+
+    /** Sets the contents of REF to CONTENTS when this transaction
+     *  commits. */
+    void setRef(File ref, String contents) {
+        _refs.put(ref, contents);
+    }
+
+    /** Makes the objects written so far durable and then updates the
+     *  refs, each by an atomic rename. */
+    void commit() {
+        try {
+            if (_durability == BATCH) {
+                LinkedHashSet<File> dirs = new LinkedHashSet<File>();
+                for (File file : _written) {
+                    dirs.add(file.getParentFile());
+                }
+                ArrayList<File> all = new ArrayList<File>(_written);
+                all.addAll(dirs);
+                all.parallelStream().forEach(Transaction::sync);
+                step();
+            }
+            for (Map.Entry<File, String> ref : _refs.entrySet()) {
+                replace(ref.getKey(), ref.getValue());
+            }
+        } finally {
+            _store.end(this);
+        }
+    }
+
+    /** Replaces the contents of REF by CONTENTS, by writing them to a
+     *  temporary file and renaming it over REF. */
+    private void replace(File ref, String contents) {
+        try {
+            _tmp.mkdirs();
+            File temp = File.createTempFile("ref", null, _tmp);
+            Utils.writeContents(temp, contents);
+            if (_durability != NONE) {
+                sync(temp);
+            }
+            step();
+            ref.getAbsoluteFile().getParentFile().mkdirs();
+            Files.move(temp.toPath(), ref.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+            if (_durability != NONE) {
+                sync(ref.getAbsoluteFile().getParentFile());
+            }
+            step();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Forces the contents of FILE, which may be a directory, to disk.
+     *  Directories that cannot be opened (as on some systems) are
+     *  skipped. */
+    private static void sync(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Makes the STEPS-th step of transactions from now on fail as if the
+     *  process had died there, for crash-injection tests.  0 turns this
+     *  off. */
+    static void crashAfter(int steps) {
+        _countdown = steps;
+    }
+
+    /** Counts one step towards an injected crash. */
+    private static void step() {
+        synchronized (Transaction.class) {
+            if (_countdown > 0) {
+                _countdown -= 1;
+                if (_countdown == 0) {
+                    throw new Crash();
+                }
+            }
+        }
+    }
+
+    /** Thrown at the step chosen by crashAfter. */
+    static class Crash extends RuntimeException {
+        /** An injected crash. */
+        Crash() {
+            super("injected crash");
+        }
+    }
+
+    /** Steps left before an injected crash, or 0. */
+    private static int _countdown;
+
+    /** Directory for the temporary files of refs. */
+    private final File _tmp;
+
+    /** Durability mode. */
+    private final int _durability;
+
+    /** The store whose writes are part of this transaction. */
+    private final ObjectStore _store;
+
+    /** Files written and not yet synced, each once. */
+    private final LinkedHashSet<File> _written = new LinkedHashSet<File>();
+
+    /** New contents of refs, in the order they were set. */
+    private final LinkedHashMap<File, String> _refs =
+        new LinkedHashMap<File, String>();
+}
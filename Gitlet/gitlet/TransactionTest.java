@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.io.File;
+import java.util.HashMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Crash-injection tests of Transaction: a commit-like update is
+ *  interrupted at each of its steps in turn, and the repository must
+ *  then be in its state from before or after the update.
+ *  @author Kerem Dilmen
+ */
+public class TransactionTest {
+
+    /** Writes the objects named NAMES to STORE in a transaction with
+     *  durability DURABILITY, pointing the ref REF at the last one, and
+     *  returns the id of that object. */
+    private static String update(ObjectStore store, int durability,
+                                 File ref, String... names) {
+        Transaction tx = store.begin(durability);
+        String id = null;
+        for (String name : names) {
+            id = Utils.sha1(name);
+            store.write(ObjectStore.BLOBS, id, name.getBytes());
+        }
+        tx.setRef(ref, id);
+        tx.commit();
+        return id;
+    }
+
+    /** Checks, after an update interrupted at step STEP, that REF is
+     *  either OLD, or NEW with all of NAMES stored. */
+    private static void check(File dir, File ref, String old, String now,
+                              int step, String... names) {
+        String id = Utils.readContentsAsString(ref);
+        ObjectStore store = new ObjectStore(dir);
+        assertTrue("step " + step, id.equals(old) || id.equals(now));
+        assertTrue("step " + step,
+                   store.contains(ObjectStore.BLOBS, id));
+        if (id.equals(now)) {
+            for (String name : names) {
+                assertTrue("step " + step, store.contains(
+                    ObjectStore.BLOBS, Utils.sha1(name)));
+            }
+        }
+        assertEquals(1, ref.getParentFile().list().length);
+    }
+
+    @Test
+    public void crashesLeaveOldOrNewRef() {
+        for (int durability = Transaction.NONE;
+             durability <= Transaction.EACH; durability += 1) {
+            boolean finished = false;
+            for (int step = 1; !finished; step += 1) {
+                File dir = TestUtils.tempDir();
+                File ref = Utils.join(dir, "branches", "master");
+                String old = update(new ObjectStore(dir), durability, ref,
+                                    "first");
+                ObjectStore store = new ObjectStore(dir);
+                String[] names = { "blob", "tree", "commit" };
+                String now = Utils.sha1("commit");
+                Transaction.crashAfter(step);
+                try {
+                    update(store, durability, ref, names);
+                    finished = true;
+                } catch (Transaction.Crash excp) {
+                    assertTrue(step < 20);
+                } finally {
+                    Transaction.crashAfter(0);
+                }
+                check(dir, ref, old, now, step, names);
+                if (finished) {
+                    assertEquals(now, Utils.readContentsAsString(ref));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void crashedRepackKeepsEveryObject() {
+        String[] names = { "one", "two", "three" };
+        boolean finished = false;
+        int step;
+        for (step = 1; !finished; step += 1) {
+            File dir = TestUtils.tempDir();
+            ObjectStore store = new ObjectStore(dir);
+            for (String name : names) {
+                store.write(ObjectStore.BLOBS, Utils.sha1(name),
+                            name.getBytes());
+            }
+            Transaction.crashAfter(step);
+            try {
+                store.repack(new HashMap<String, String>());
+                finished = true;
+            } catch (Transaction.Crash excp) {
+                assertTrue(step < 20);
+                assertTrue(store.path(ObjectStore.BLOBS, Utils.sha1("one"))
+                           .isFile());
+            } finally {
+                Transaction.crashAfter(0);
+            }
+            ObjectStore reopened = new ObjectStore(dir);
+            for (String name : names) {
+                assertArrayEquals("step " + step, name.getBytes(),
+                                  reopened.read(ObjectStore.BLOBS,
+                                                Utils.sha1(name)));
+            }
+        }
+        assertTrue(step > 3);
+    }
+
+    @Test
+    public void objectsOutsideTransactionsAreNotTracked() {
+        File dir = TestUtils.tempDir();
+        ObjectStore store = new ObjectStore(dir);
+        File ref = Utils.join(dir, "branches", "master");
+        update(store, Transaction.BATCH, ref, "a");
+        Transaction.crashAfter(1);
+        store.write(ObjectStore.BLOBS, Utils.sha1("b"), "b".getBytes());
+        Transaction.crashAfter(0);
+        assertEquals(Utils.sha1("a"), Utils.readContentsAsString(ref));
+    }
+}
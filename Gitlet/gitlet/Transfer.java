@@ -0,0 +1,169 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+/** The objects of one repository that another is missing, found by
+ *  walking the history from some commits, and the copying of them, as
+ *  done by fetch and push.  The walk stops at commits the destination
+ *  has, and skips trees it has, since a repository that has a commit or
+ *  tree has everything it refers to; so only the new part of the
+ *  history is read.  Objects are copied as they are stored, blobs
+ *  THREADS at a time, and then trees and commits, each after the objects
+ *  it refers to, so that the destination never has an object without
+ *  the ones it refers to, even if the copy is cut short.
+ *  @author Kerem Dilmen
+ */
+class Transfer {
+
+    /** Number of blobs copied at once. */
+    static final int THREADS = 8;
+
+    /** A transfer of objects from SOURCE to DEST. */
+    Transfer(ObjectStore source, ObjectStore dest) {
+        _source = source;
+        _dest = dest;
+    }
+
+    /** Adds the commit TIP, and everything it refers to, directly or
+     *  through its ancestors, that the destination does not have. */
+    void add(String tip) {
+        ArrayDeque<String> work = new ArrayDeque<String>();
+        work.add(tip);
+        while (!work.isEmpty()) {
+            String id = work.remove();
+            if (_commits.containsKey(id)
+                    || _dest.contains(ObjectStore.COMMITS, id)) {
+                continue;
+            }
+            byte[] contents = _source.read(ObjectStore.COMMITS, id);
+            Commit commit = Commit.decodeHeader(contents);
+            _commits.put(id, commit);
+            if (commit.getTree() != null) {
+                addTree(commit.getTree());
+            } else {
+                TreeMap<String, String> files = commit.getBlobs() != null
+                    ? commit.getBlobs() : Commit.decode(contents).getBlobs();
+                for (String blob : files.values()) {
+                    addBlob(blob);
+                }
+            }
+            for (String parent : new String[] { commit.getParent(),
+                                                commit.getParent2() }) {
+                if (parent != null) {
+                    work.add(parent);
+                }
+            }
+        }
+    }
+
+    /** Returns the commits to copy, each after those of its parents that
+     *  are to be copied too. */
+    List<Commit> commits() {
+        ArrayList<Commit> result = new ArrayList<Commit>();
+        HashSet<String> done = new HashSet<String>();
+        ArrayDeque<String> stack = new ArrayDeque<String>();
+        for (String start : _commits.keySet()) {
+            stack.push(start);
+            while (!stack.isEmpty()) {
+                String id = stack.peek();
+                if (done.contains(id)) {
+                    stack.pop();
+                    continue;
+                }
+                Commit commit = _commits.get(id);
+                boolean ready = true;
+                for (String parent : new String[] { commit.getParent(),
+                                                    commit.getParent2() }) {
+                    if (parent != null && _commits.containsKey(parent)
+                            && !done.contains(parent)) {
+                        stack.push(parent);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    stack.pop();
+                    done.add(id);
+                    result.add(commit);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of trees to copy. */
+    int trees() {
+        return _trees.size();
+    }
+
+    /** Returns the number of blobs to copy. */
+    int blobs() {
+        return _blobs.size();
+    }
+
+    /** Copies the objects found to the destination, and returns the
+     *  number of bytes copied. */
+    long copy() {
+        ArrayList<String> blobs = new ArrayList<String>(_blobs);
+        long bytes = POOL.submit(() -> blobs.parallelStream().mapToLong(
+            blob -> _dest.copy(_source, ObjectStore.BLOBS, blob)).sum())
+            .join();
+        for (String tree : _trees) {
+            bytes += _dest.copy(_source, ObjectStore.TREES, tree);
+        }
+        for (Commit commit : commits()) {
+            bytes += _dest.copy(_source, ObjectStore.COMMITS,
+                                commit.getHash());
+        }
+        return bytes;
+    }
+
+    /** Adds the tree ID, after the trees below it, if the destination
+     *  does not have it, along with the trees below it and the blobs they
+     *  list that it does not have. */
+    private void addTree(String id) {
+        if (_trees.contains(id) || _dest.contains(ObjectStore.TREES, id)) {
+            return;
+        }
+        Tree tree = Tree.read(_source, id);
+        for (String blob : tree.getFiles().values()) {
+            addBlob(blob);
+        }
+        for (String dir : tree.getDirs().values()) {
+            addTree(dir);
+        }
+        _trees.add(id);
+    }
+
+    /** Adds the blob ID, if the destination does not have it. */
+    private void addBlob(String id) {
+        if (!_dest.contains(ObjectStore.BLOBS, id)) {
+            _blobs.add(id);
+        }
+    }
+
+    /** The pool blobs are copied on. */
+    private static final ForkJoinPool POOL = new ForkJoinPool(THREADS);
+
+    /** Repository the objects are copied from. */
+    private final ObjectStore _source;
+
+    /** Repository the objects are copied to. */
+    private final ObjectStore _dest;
+
+    /** The commits to copy, by id. */
+    private final HashMap<String, Commit> _commits =
+        new HashMap<String, Commit>();
+
+    /** The trees to copy, each after those below it. */
+    private final LinkedHashSet<String> _trees = new LinkedHashSet<String>();
+
+    /** The blobs to copy. */
+    private final HashSet<String> _blobs = new HashSet<String>();
+}
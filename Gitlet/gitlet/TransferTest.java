@@ -0,0 +1,86 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Transfer.
+ *  @author Kerem Dilmen
+ */
+public class TransferTest {
+
+    /** Writes to STORE a commit with parents PARENT (or none, if null)
+     *  and PARENT2 that sets the file PATH of the tree of PARENT to
+     *  CONTENTS, and returns it. */
+    private static Commit commit(ObjectStore store, Commit parent,
+                                 Commit parent2, String path,
+                                 String contents) {
+        String blob = Utils.sha1(contents);
+        store.write(ObjectStore.BLOBS, blob, contents.getBytes());
+        String tree = Tree.update(store,
+                                  parent == null ? null : parent.getTree(),
+                                  Collections.singletonMap(path, blob));
+        Commit commit = new Commit(tree, contents,
+            parent == null ? null : parent.getHash(),
+            parent == null ? 0 : parent.getNum() + 1,
+            parent2 == null ? null : parent2.getHash());
+        store.write(ObjectStore.COMMITS, commit.getHash(), commit.encode());
+        return commit;
+    }
+
+    /** Returns the ids of COMMITS. */
+    private static List<String> ids(List<Commit> commits) {
+        ArrayList<String> result = new ArrayList<String>();
+        for (Commit commit : commits) {
+            result.add(commit.getHash());
+        }
+        return result;
+    }
+
+    @Test
+    public void copiesOnlyWhatIsMissing() {
+        ObjectStore source = TestUtils.store(), dest = TestUtils.store();
+        Commit a = commit(source, null, null, "a/one.txt", "one");
+        Commit b = commit(source, a, null, "b/two.txt", "two");
+        Transfer first = new Transfer(source, dest);
+        first.add(b.getHash());
+        assertEquals(Arrays.asList(a.getHash(), b.getHash()),
+                     ids(first.commits()));
+        assertEquals(2, first.blobs());
+        assertTrue(first.copy() > 0);
+        assertTrue(dest.contains(ObjectStore.COMMITS, b.getHash()));
+        assertEquals(Utils.sha1("two"),
+                     Tree.find(dest, b.getTree(), "b/two.txt"));
+
+        Commit c = commit(source, b, null, "b/two.txt", "three");
+        Transfer second = new Transfer(source, dest);
+        second.add(c.getHash());
+        assertEquals(Arrays.asList(c.getHash()), ids(second.commits()));
+        assertEquals(1, second.blobs());
+        assertEquals(2, second.trees());
+        second.copy();
+
+        Transfer none = new Transfer(source, dest);
+        none.add(c.getHash());
+        assertTrue(none.commits().isEmpty());
+        assertEquals(0, none.copy());
+    }
+
+    @Test
+    public void parentsComeFirst() {
+        ObjectStore source = TestUtils.store();
+        Commit a = commit(source, null, null, "f.txt", "a");
+        Commit b = commit(source, a, null, "f.txt", "b");
+        Commit c = commit(source, a, null, "g.txt", "c");
+        Commit d = commit(source, c, b, "h.txt", "d");
+        Transfer transfer = new Transfer(source, TestUtils.store());
+        transfer.add(d.getHash());
+        List<String> order = ids(transfer.commits());
+        assertEquals(4, order.size());
+        assertEquals(a.getHash(), order.get(0));
+        assertEquals(d.getHash(), order.get(3));
+    }
+}
@@ -0,0 +1,291 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** The contents of one directory of a commit: the SHA-1 keys of the
+ *  blobs of its files and of the trees of its subdirectories.  A tree is
+ *  stored under the SHA-1 key of its encoding, so a directory that did
+ *  not change between two commits is the same object in both, and
+ *  committing or checking out a change only reads and writes the trees
+ *  on the paths to the files that changed.  Paths of files are relative
+ *  to the root of the repository, with '/' separating directories.
+ *  @author Kerem Dilmen
+ */
+class Tree {
+
+    /** An empty directory. */
+    Tree() {
+        _files = new TreeMap<String, String>();
+        _dirs = new TreeMap<String, String>();
+    }
+
+    /** Returns the encoding of this tree: a magic number and version,
+     *  then the number of files and each file name with the SHA-1 key of
+     *  its blob, then the same for subdirectories and their trees, all in
+     *  sorted order. */
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT);
+            writeEntries(out, _files);
+            writeEntries(out, _dirs);
+            out.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the tree encoded as DATA. */
+    static Tree decode(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(data));
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT) {
+                throw new IllegalArgumentException("unknown tree format");
+            }
+            Tree result = new Tree();
+            readEntries(in, result._files);
+            readEntries(in, result._dirs);
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the tree whose SHA-1 key is ID in STORE, or an empty tree
+     *  if ID is null.  Trees read are shared through the cache of STORE
+     *  and must not be modified. */
+    static Tree read(ObjectStore store, String id) {
+        if (id == null) {
+            return new Tree();
+        }
+        return store.decode(ObjectStore.TREES, id, Tree::decode);
+    }
+
+    /** Returns a copy of this tree that may be modified. */
+    Tree copy() {
+        Tree result = new Tree();
+        result._files.putAll(_files);
+        result._dirs.putAll(_dirs);
+        return result;
+    }
+
+    /** Saves this tree in STORE, unless it is already there, and returns
+     *  its SHA-1 key. */
+    String write(ObjectStore store) {
+        byte[] data = encode();
+        String id = Utils.sha1((Object) data);
+        if (!store.contains(ObjectStore.TREES, id)) {
+            store.write(ObjectStore.TREES, id, data);
+        }
+        return id;
+    }
+
+    /** Returns true iff this tree has no files or subdirectories. */
+    boolean isEmpty() {
+        return _files.isEmpty() && _dirs.isEmpty();
+    }
+
+    /** Returns the files of this directory and the SHA-1 keys of their
+     *  blobs. */
+    TreeMap<String, String> getFiles() {
+        return _files;
+    }
+
+    /** Returns the subdirectories of this directory and the SHA-1 keys of
+     *  their trees. */
+    TreeMap<String, String> getDirs() {
+        return _dirs;
+    }
+
+    /** Returns the SHA-1 key of the blob of the file PATH in the tree ROOT
+     *  of STORE, or null if there is no such file.  Only the trees of the
+     *  directories leading to PATH are read. */
+    static String find(ObjectStore store, String root, String path) {
+        String[] names = path.split("/");
+        String id = root;
+        for (int i = 0; id != null && i < names.length - 1; i += 1) {
+            id = read(store, id).getDirs().get(names[i]);
+        }
+        return id == null ? null
+            : read(store, id).getFiles().get(names[names.length - 1]);
+    }
+
+    /** Adds every file under the tree ROOT of STORE to FILES, mapped to
+     *  the SHA-1 key of its blob, with PREFIX in front of its path. */
+    static void flatten(ObjectStore store, String root, String prefix,
+                        Map<String, String> files) {
+        Tree tree = read(store, root);
+        for (Map.Entry<String, String> file : tree.getFiles().entrySet()) {
+            files.put(prefix + file.getKey(), file.getValue());
+        }
+        for (Map.Entry<String, String> dir : tree.getDirs().entrySet()) {
+            flatten(store, dir.getValue(), prefix + dir.getKey() + "/",
+                    files);
+        }
+    }
+
+    /** Adds to CHANGES each file whose blob differs between the trees
+     *  OLD and NEW (either of which may be null) of STORE, with PREFIX in
+     *  front of its path, mapped to its old and new blob keys (null where
+     *  it is missing).  Subdirectories with the same tree in both are
+     *  skipped without being read, and the entries of each directory are
+     *  compared by one walk through both in sorted order. */
+    static void changes(ObjectStore store, String old, String nu,
+                        String prefix, Map<String, String[]> changes) {
+        if (old != null && old.equals(nu)) {
+            return;
+        }
+        Tree before = read(store, old), after = read(store, nu);
+        changes(before.getFiles(), after.getFiles(), prefix, changes);
+        TreeMap<String, String[]> dirs = new TreeMap<String, String[]>();
+        changes(before.getDirs(), after.getDirs(), "", dirs);
+        for (Map.Entry<String, String[]> dir : dirs.entrySet()) {
+            changes(store, dir.getValue()[0], dir.getValue()[1],
+                    prefix + dir.getKey() + "/", changes);
+        }
+    }
+
+    /** Adds to CHANGES each key whose value differs between OLD and NEW,
+     *  with PREFIX in front of it, mapped to its old and new values (null
+     *  where it is missing), walking both maps once in sorted order. */
+    static void changes(SortedMap<String, String> old,
+                        SortedMap<String, String> nu, String prefix,
+                        Map<String, String[]> changes) {
+        Iterator<Map.Entry<String, String>> before = old.entrySet().iterator(),
+            after = nu.entrySet().iterator();
+        Map.Entry<String, String> b = before.hasNext() ? before.next() : null,
+            a = after.hasNext() ? after.next() : null;
+        while (b != null || a != null) {
+            int cmp = b == null ? 1 : a == null ? -1
+                : b.getKey().compareTo(a.getKey());
+            if (cmp < 0) {
+                changes.put(prefix + b.getKey(),
+                            new String[] { b.getValue(), null });
+            } else if (cmp > 0) {
+                changes.put(prefix + a.getKey(),
+                            new String[] { null, a.getValue() });
+            } else if (!b.getValue().equals(a.getValue())) {
+                changes.put(prefix + b.getKey(),
+                            new String[] { b.getValue(), a.getValue() });
+            }
+            if (cmp <= 0) {
+                b = before.hasNext() ? before.next() : null;
+            }
+            if (cmp >= 0) {
+                a = after.hasNext() ? after.next() : null;
+            }
+        }
+    }
+
+    /** Returns the SHA-1 key of the tree that results from applying
+     *  CHANGES to the tree ROOT (empty if null) of STORE, saving any new
+     *  trees in STORE.  CHANGES maps paths to the SHA-1 keys of their new
+     *  blobs, or to null for files to remove.  Directories left empty are
+     *  removed.  Only the trees of directories that contain a change are
+     *  read or written. */
+    static String update(ObjectStore store, String root,
+                         Map<String, String> changes) {
+        String result = updateDir(store, root, changes);
+        return result == null ? new Tree().write(store) : result;
+    }
+
+    /** Does the work of update, but returns null if the result is an
+     *  empty directory. */
+    private static String updateDir(ObjectStore store, String root,
+                                    Map<String, String> changes) {
+        Tree tree = read(store, root).copy();
+        TreeMap<String, TreeMap<String, String>> below =
+            new TreeMap<String, TreeMap<String, String>>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash >= 0) {
+                below.computeIfAbsent(path.substring(0, slash),
+                        k -> new TreeMap<String, String>())
+                    .put(path.substring(slash + 1), change.getValue());
+            } else if (change.getValue() == null) {
+                tree._files.remove(path);
+            } else {
+                tree._files.put(path, change.getValue());
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, String>> dir
+                 : below.entrySet()) {
+            String name = dir.getKey();
+            String sub = updateDir(store, tree._dirs.get(name),
+                                   dir.getValue());
+            if (sub == null) {
+                tree._dirs.remove(name);
+            } else {
+                tree._dirs.put(name, sub);
+            }
+        }
+        return tree.isEmpty() ? null : tree.write(store);
+    }
+
+    /** Compares the trees A and B (empty if null) of STORE, whose paths
+     *  start with PREFIX.  For each file that differs between them, puts
+     *  the SHA-1 key of its blob in A into BEFORE, if it is in A, and the
+     *  key of its blob in B into AFTER, if it is in B.  Subtrees with
+     *  equal keys are skipped without being read. */
+    static void diff(ObjectStore store, String a, String b, String prefix,
+                     Map<String, String> before, Map<String, String> after) {
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        changes(store, a, b, prefix, changes);
+        for (Map.Entry<String, String[]> change : changes.entrySet()) {
+            if (change.getValue()[0] != null) {
+                before.put(change.getKey(), change.getValue()[0]);
+            }
+            if (change.getValue()[1] != null) {
+                after.put(change.getKey(), change.getValue()[1]);
+            }
+        }
+    }
+
+    /** Writes the number of entries of ENTRIES and then each entry to
+     *  OUT. */
+    private static void writeEntries(DataOutputStream out,
+                                     TreeMap<String, String> entries)
+        throws IOException {
+        out.writeInt(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            Codec.writeString(out, entry.getKey());
+            Codec.writeId(out, entry.getValue());
+        }
+    }
+
+    /** Reads entries written by writeEntries from IN into ENTRIES. */
+    private static void readEntries(DataInputStream in,
+                                    TreeMap<String, String> entries)
+        throws IOException {
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            String name = Codec.readString(in);
+            entries.put(name, Codec.readId(in));
+        }
+    }
+
+    /** Magic number at the start of an encoded tree. */
+    private static final int MAGIC = 0x47545245;
+
+    /** Version of the format written by encode. */
+    private static final int FORMAT = 1;
+
+    /** Names of the files of this directory and their blobs' keys. */
+    private final TreeMap<String, String> _files;
+
+    /** Names of the subdirectories of this directory and their trees'
+     *  keys. */
+    private final TreeMap<String, String> _dirs;
+}
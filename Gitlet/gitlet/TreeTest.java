@@ -0,0 +1,116 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Tree.
+ *  @author Kerem Dilmen
+ */
+public class TreeTest {
+
+    /** Returns some files in nested directories. */
+    private static TreeMap<String, String> files() {
+        TreeMap<String, String> files = new TreeMap<String, String>();
+        files.put("top.txt", Utils.sha1("top"));
+        files.put("a/one.txt", Utils.sha1("one"));
+        files.put("a/b/two.txt", Utils.sha1("two"));
+        files.put("c/three.txt", Utils.sha1("three"));
+        return files;
+    }
+
+    @Test
+    public void buildAndFlatten() {
+        ObjectStore store = TestUtils.store();
+        String root = Tree.update(store, null, files());
+        TreeMap<String, String> flat = new TreeMap<String, String>();
+        Tree.flatten(store, root, "", flat);
+        assertEquals(files(), flat);
+        assertEquals(Utils.sha1("two"), Tree.find(store, root, "a/b/two.txt"));
+        assertNull(Tree.find(store, root, "a/b/none.txt"));
+        assertNull(Tree.find(store, root, "x/y.txt"));
+    }
+
+    @Test
+    public void unchangedDirectoriesAreShared() {
+        ObjectStore store = TestUtils.store();
+        String root = Tree.update(store, null, files());
+        String changed = Tree.update(store, root, Collections.singletonMap(
+                "a/b/two.txt", Utils.sha1("new")));
+        Tree before = Tree.read(store, root), after = Tree.read(store, changed);
+        assertEquals(before.getDirs().get("c"), after.getDirs().get("c"));
+        assertFalse(before.getDirs().get("a").equals(after.getDirs().get("a")));
+        assertEquals(root, Tree.update(store, null, files()));
+    }
+
+    @Test
+    public void emptyDirectoriesAreRemoved() {
+        ObjectStore store = TestUtils.store();
+        String root = Tree.update(store, null, files());
+        String changed = Tree.update(store, root, Collections.singletonMap(
+                "c/three.txt", null));
+        assertFalse(Tree.read(store, changed).getDirs().containsKey("c"));
+        TreeMap<String, String> all = new TreeMap<String, String>();
+        for (String file : files().keySet()) {
+            all.put(file, null);
+        }
+        assertTrue(Tree.read(store, Tree.update(store, root, all)).isEmpty());
+    }
+
+    @Test
+    public void diff() {
+        ObjectStore store = TestUtils.store();
+        String root = Tree.update(store, null, files());
+        TreeMap<String, String> changes = new TreeMap<String, String>();
+        changes.put("a/one.txt", Utils.sha1("changed"));
+        changes.put("c/three.txt", null);
+        changes.put("d/four.txt", Utils.sha1("four"));
+        String other = Tree.update(store, root, changes);
+        TreeMap<String, String> before = new TreeMap<String, String>();
+        TreeMap<String, String> after = new TreeMap<String, String>();
+        Tree.diff(store, root, other, "", before, after);
+        assertEquals(2, before.size());
+        assertEquals(Utils.sha1("one"), before.get("a/one.txt"));
+        assertEquals(Utils.sha1("three"), before.get("c/three.txt"));
+        assertEquals(2, after.size());
+        assertEquals(Utils.sha1("changed"), after.get("a/one.txt"));
+        assertEquals(Utils.sha1("four"), after.get("d/four.txt"));
+    }
+
+    @Test
+    public void changesOfManifests() {
+        TreeMap<String, String> old = files(), nu = files();
+        nu.remove("a/one.txt");
+        nu.put("a/b/two.txt", Utils.sha1("new"));
+        nu.put("z.txt", Utils.sha1("z"));
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        Tree.changes(old, nu, "p/", changes);
+        assertEquals(3, changes.size());
+        assertEquals(Arrays.asList(Utils.sha1("two"), Utils.sha1("new")),
+                     Arrays.asList(changes.get("p/a/b/two.txt")));
+        assertEquals(Arrays.asList(Utils.sha1("one"), null),
+                     Arrays.asList(changes.get("p/a/one.txt")));
+        assertEquals(Arrays.asList(null, Utils.sha1("z")),
+                     Arrays.asList(changes.get("p/z.txt")));
+    }
+
+    @Test
+    public void changesOfTrees() {
+        ObjectStore store = TestUtils.store();
+        TreeMap<String, String> old = files(), nu = files();
+        nu.put("a/b/two.txt", Utils.sha1("new"));
+        nu.put("d/four.txt", Utils.sha1("four"));
+        TreeMap<String, String[]> changes = new TreeMap<String, String[]>();
+        Tree.changes(store, Tree.update(store, null, old),
+                     Tree.update(store, null, nu), "", changes);
+        TreeMap<String, String[]> expected = new TreeMap<String, String[]>();
+        Tree.changes(old, nu, "", expected);
+        assertEquals(expected.keySet(), changes.keySet());
+        changes.clear();
+        String root = Tree.update(store, null, old);
+        Tree.changes(store, root, root, "", changes);
+        assertTrue(changes.isEmpty());
+    }
+}
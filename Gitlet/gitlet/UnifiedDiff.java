@@ -0,0 +1,282 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** The differences between two versions of one file, in unified diff
+ *  format, as printed by the diff command:
+ *      diff --git a/PATH b/PATH
+ *      --- a/PATH
+ *      +++ b/PATH
+ *      @@ -START,LENGTH +START,LENGTH @@
+ *  followed by the lines of each hunk, prefixed by ' ' (context), '-'
+ *  (removed) or '+' (added), with CONTEXT lines of context around each
+ *  change.  A renamed or copied file is compared with its source, and
+ *  the header is followed by its similarity and the two paths.  A
+ *  missing version is shown as /dev/null, and a last line without a
+ *  newline is followed by "\ No newline at end of file".
+ *  Files with a NUL byte near their start are binary and only reported
+ *  as differing.
+ *  @author Kerem Dilmen
+ */
+class UnifiedDiff {
+
+    /** Number of lines of context around changes. */
+    static final int CONTEXT = 3;
+
+    /** Widest bar printed by stat. */
+    private static final int STAT_WIDTH = 40;
+
+    /** Number of bytes looked at to decide whether a file is binary. */
+    private static final int BINARY_PROBE = 8000;
+
+    /** The differences between OLD and NEW, the contents of the two
+     *  versions of the file PATH, either of which may be null if that
+     *  version does not exist. */
+    UnifiedDiff(String path, byte[] old, byte[] nu) {
+        this(path, null, old, nu);
+    }
+
+    /** The differences between OLD, the contents of SOURCE (the file of
+     *  which the file PATH is a rename or copy, or null if it is the same
+     *  file), and NEW, the contents of the file PATH. */
+    UnifiedDiff(String path, RenameDetector.Rename source, byte[] old,
+                byte[] nu) {
+        _path = path;
+        _source = source;
+        _from = source == null ? path : source.from();
+        _old = old;
+        _new = nu;
+        _binary = isBinary(old) || isBinary(nu);
+        if (_binary) {
+            return;
+        }
+        _oldLines = lines(old);
+        _newLines = lines(nu);
+        Diff diff = new Diff();
+        diff.setSequences(_oldLines, _newLines);
+        _edits = diff.diffs();
+        for (int k = 0; k < _edits.length; k += 4) {
+            _deletions += _edits[k + 1];
+            _insertions += _edits[k + 3];
+        }
+    }
+
+    /** Returns the path of the file. */
+    String path() {
+        return _path;
+    }
+
+    /** Returns the path of the file, preceded by that of its source if
+     *  it was renamed or copied. */
+    String name() {
+        return _source == null ? _path : _from + " => " + _path;
+    }
+
+    /** Returns true iff either version is binary. */
+    boolean isBinary() {
+        return _binary;
+    }
+
+    /** Returns the number of lines added. */
+    int insertions() {
+        return _insertions;
+    }
+
+    /** Returns the number of lines removed. */
+    int deletions() {
+        return _deletions;
+    }
+
+    /** Returns the differences in unified format. */
+    String text() {
+        StringBuilder out = new StringBuilder();
+        String a = _old == null ? "/dev/null" : "a/" + _from;
+        String b = _new == null ? "/dev/null" : "b/" + _path;
+        out.append("diff --git a/").append(_from).append(" b/")
+            .append(_path).append('\n');
+        if (_source != null) {
+            String how = _source.isCopy() ? "copy" : "rename";
+            out.append("similarity index ").append(_source.similarity())
+                .append("%\n").append(how).append(" from ").append(_from)
+                .append('\n').append(how).append(" to ").append(_path)
+                .append('\n');
+        }
+        if (_binary) {
+            out.append("Binary files ").append(a).append(" and ").append(b)
+                .append(" differ\n");
+            return out.toString();
+        }
+        if (_edits.length == 0) {
+            return out.toString();
+        }
+        out.append("--- ").append(a).append('\n');
+        out.append("+++ ").append(b).append('\n');
+        for (int first = 0; first < _edits.length; ) {
+            int last = first;
+            while (last + 4 < _edits.length
+                   && _edits[last + 4] - (_edits[last] + _edits[last + 1])
+                       <= 2 * CONTEXT) {
+                last += 4;
+            }
+            hunk(out, first, last);
+            first = last + 4;
+        }
+        return out.toString();
+    }
+
+    /** Returns a summary of DIFFS, as printed by diff --stat: a line for
+     *  each file with the number of lines changed and a bar of '+' and
+     *  '-' (scaled to at most STAT_WIDTH characters), and then the
+     *  totals. */
+    static String stat(List<UnifiedDiff> diffs) {
+        int nameWidth = 0, most = 0, insertions = 0, deletions = 0;
+        for (UnifiedDiff diff : diffs) {
+            nameWidth = Math.max(nameWidth, diff.name().length());
+            most = Math.max(most, diff.insertions() + diff.deletions());
+            insertions += diff.insertions();
+            deletions += diff.deletions();
+        }
+        int countWidth = Integer.toString(most).length();
+        StringBuilder out = new StringBuilder();
+        for (UnifiedDiff diff : diffs) {
+            out.append(' ').append(diff.name());
+            out.append(" ".repeat(nameWidth - diff.name().length()));
+            out.append(" | ");
+            if (diff.isBinary()) {
+                out.append(String.format("%" + countWidth + "s", "Bin"));
+                out.append('\n');
+                continue;
+            }
+            int plus = diff.insertions(), minus = diff.deletions();
+            out.append(String.format("%" + countWidth + "d", plus + minus));
+            if (most > STAT_WIDTH) {
+                plus = (plus * STAT_WIDTH + most - 1) / most;
+                minus = (minus * STAT_WIDTH + most - 1) / most;
+            }
+            if (plus + minus > 0) {
+                out.append(' ').append("+".repeat(plus))
+                    .append("-".repeat(minus));
+            }
+            out.append('\n');
+        }
+        out.append(' ').append(diffs.size())
+            .append(diffs.size() == 1 ? " file changed" : " files changed");
+        if (insertions > 0) {
+            out.append(", ").append(insertions)
+                .append(insertions == 1 ? " insertion(+)" : " insertions(+)");
+        }
+        if (deletions > 0) {
+            out.append(", ").append(deletions)
+                .append(deletions == 1 ? " deletion(-)" : " deletions(-)");
+        }
+        return out.append('\n').toString();
+    }
+
+    /** Appends to OUT the hunk showing the edits from the one at FIRST to
+     *  the one at LAST in _edits, with their context. */
+    private void hunk(StringBuilder out, int first, int last) {
+        int oldStart = Math.max(0, _edits[first] - CONTEXT);
+        int oldEnd = Math.min(_oldLines.size(),
+                              _edits[last] + _edits[last + 1] + CONTEXT);
+        int newStart = _edits[first + 2] - (_edits[first] - oldStart);
+        int newEnd = _edits[last + 2] + _edits[last + 3]
+            + (oldEnd - _edits[last] - _edits[last + 1]);
+        out.append("@@ -").append(range(oldStart, oldEnd - oldStart))
+            .append(" +").append(range(newStart, newEnd - newStart))
+            .append(" @@\n");
+        int at = oldStart;
+        for (int k = first; k <= last; k += 4) {
+            append(out, ' ', _oldLines, at, _edits[k]);
+            append(out, '-', _oldLines, _edits[k], _edits[k] + _edits[k + 1]);
+            append(out, '+', _newLines, _edits[k + 2],
+                   _edits[k + 2] + _edits[k + 3]);
+            at = _edits[k] + _edits[k + 1];
+        }
+        append(out, ' ', _oldLines, at, oldEnd);
+    }
+
+    /** Returns the range of LENGTH lines starting at line START (from 0)
+     *  as written in hunk headers. */
+    private static String range(int start, int length) {
+        if (length == 1) {
+            return Integer.toString(start + 1);
+        } else if (length == 0) {
+            return start + ",0";
+        }
+        return (start + 1) + "," + length;
+    }
+
+    /** Appends lines [FROM .. TO - 1] of LINES to OUT, each after
+     *  PREFIX. */
+    private static void append(StringBuilder out, char prefix,
+                               List<String> lines, int from, int to) {
+        for (int k = from; k < to; k += 1) {
+            String line = lines.get(k);
+            out.append(prefix);
+            if (line.endsWith("\n")) {
+                out.append(line);
+            } else {
+                out.append(line).append("\n\\ No newline at end of file\n");
+            }
+        }
+    }
+
+    /** Returns the lines of CONTENTS (none if null), each with its
+     *  newline, if it has one. */
+    private static List<String> lines(byte[] contents) {
+        ArrayList<String> result = new ArrayList<String>();
+        if (contents == null) {
+            return result;
+        }
+        String text = new String(contents, StandardCharsets.UTF_8);
+        int start = 0;
+        for (int end = text.indexOf('\n'); end >= 0;
+             end = text.indexOf('\n', start)) {
+            result.add(text.substring(start, end + 1));
+            start = end + 1;
+        }
+        if (start < text.length()) {
+            result.add(text.substring(start));
+        }
+        return result;
+    }
+
+    /** Returns true iff CONTENTS has a NUL byte near its start. */
+    private static boolean isBinary(byte[] contents) {
+        if (contents == null) {
+            return false;
+        }
+        for (int k = 0; k < contents.length && k < BINARY_PROBE; k += 1) {
+            if (contents[k] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Path of the file. */
+    private final String _path;
+
+    /** Source of the file, if renamed or copied, or null. */
+    private final RenameDetector.Rename _source;
+
+    /** Path of the old version of the file. */
+    private final String _from;
+
+    /** Contents of the two versions, or null. */
+    private final byte[] _old, _new;
+
+    /** True iff either version is binary. */
+    private final boolean _binary;
+
+    /** Lines of the two versions. */
+    private List<String> _oldLines, _newLines;
+
+    /** The edits from the old version to the new, as by Diff.diffs. */
+    private int[] _edits;
+
+    /** Numbers of lines added and removed. */
+    private int _insertions, _deletions;
+}
@@ -0,0 +1,73 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of UnifiedDiff.
+ *  @author Kerem Dilmen
+ */
+public class UnifiedDiffTest {
+
+    /** Returns TEXT in UTF-8. */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void hunksAreMergedOrSplitByContext() {
+        StringBuilder old = new StringBuilder();
+        for (int k = 1; k <= 20; k += 1) {
+            old.append(k).append('\n');
+        }
+        String nu = old.toString().replace("\n2\n", "\ntwo\n")
+            .replace("\n6\n", "\nsix\n").replace("\n18\n", "\n");
+        UnifiedDiff diff = new UnifiedDiff("n", bytes(old.toString()),
+                                           bytes(nu));
+        assertEquals(2, diff.insertions());
+        assertEquals(3, diff.deletions());
+        assertEquals("diff --git a/n b/n\n--- a/n\n+++ b/n\n"
+                     + "@@ -1,9 +1,9 @@\n 1\n-2\n+two\n 3\n 4\n 5\n-6\n+six\n"
+                     + " 7\n 8\n 9\n"
+                     + "@@ -15,6 +15,5 @@\n 15\n 16\n 17\n-18\n 19\n 20\n",
+                     diff.text());
+    }
+
+    @Test
+    public void missingVersionsAndNewlines() {
+        UnifiedDiff added = new UnifiedDiff("f", null, bytes("a\nb"));
+        assertEquals("diff --git a/f b/f\n--- /dev/null\n+++ b/f\n"
+                     + "@@ -0,0 +1,2 @@\n+a\n+b\n"
+                     + "\\ No newline at end of file\n", added.text());
+        UnifiedDiff removed = new UnifiedDiff("f", bytes("a\n"), null);
+        assertEquals("diff --git a/f b/f\n--- a/f\n+++ /dev/null\n"
+                     + "@@ -1 +0,0 @@\n-a\n", removed.text());
+    }
+
+    @Test
+    public void binaryFiles() {
+        UnifiedDiff diff = new UnifiedDiff("b", new byte[] { 1, 0, 2 },
+                                           bytes("text\n"));
+        assertTrue(diff.isBinary());
+        assertEquals("diff --git a/b b/b\nBinary files a/b and b/b differ\n",
+                     diff.text());
+    }
+
+    @Test
+    public void stat() {
+        StringBuilder many = new StringBuilder();
+        for (int k = 0; k < 80; k += 1) {
+            many.append(k).append('\n');
+        }
+        List<UnifiedDiff> diffs = List.of(
+            new UnifiedDiff("long", null, bytes(many.toString())),
+            new UnifiedDiff("s", bytes("x\n"), bytes("y\n")),
+            new UnifiedDiff("bin", null, new byte[] { 0 }));
+        assertEquals(" long | 80 " + "+".repeat(40) + "\n"
+                     + " s    |  2 +-\n"
+                     + " bin  | Bin\n"
+                     + " 3 files changed, 81 insertions(+), 1 deletion(-)\n",
+                     UnifiedDiff.stat(diffs));
+    }
+}
@@ -12,7 +12,27 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class, CodecTest.class,
+                                         TreeTest.class, UnifiedDiffTest.class,
+                                         RenameDetectorTest.class,
+                                         TransferTest.class,
+                                         ObjectStoreTest.class,
+                                         ChunkerTest.class,
+                                         CommitIndexTest.class,
+                                         PackTest.class,
+                                         DaemonTest.class,
+                                         CommitGraphTest.class,
+                                         MergeBaseTest.class,
+                                         ObjectCacheTest.class,
+                                         StatIndexTest.class,
+                                         WorkingTreeTest.class,
+                                         StagingAreaTest.class,
+                                         TransactionTest.class,
+                                         CommitLogTest.class,
+                                         MessageIndexTest.class,
+                                         LogFilterTest.class,
+                                         DiffTest.class,
+                                         ThreeWayMergeTest.class));
     }
 
     /** A dummy test to avoid complaint. */
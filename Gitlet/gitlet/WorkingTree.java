@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+
+/** A snapshot of the files in a working directory and its
+ *  subdirectories (other than .gitlet), with their stat data, taken once
+ *  per command.  The directories are listed, and the files hashed, in
+ *  parallel on a fork-join pool, and keys are looked up in a StatIndex
+ *  so that only files changed since they were last hashed are read.
+ *  Directories reached through symbolic links are not entered.
+ *  @author Kerem Dilmen
+ */
+class WorkingTree {
+
+    /** A snapshot of the working directory ROOT, whose files are hashed
+     *  through INDEX. */
+    WorkingTree(File root, StatIndex index) {
+        _root = root;
+        _index = index;
+        ConcurrentHashMap<String, StatIndex.Stat> found =
+            new ConcurrentHashMap<String, StatIndex.Stat>();
+        POOL.invoke(new Scan(root.toPath(), "", found));
+        _files.putAll(found);
+    }
+
+    /** Returns the paths of the files, in sorted order. */
+    Collection<String> files() {
+        return _files.keySet();
+    }
+
+    /** Returns true iff there is a file with path PATH. */
+    boolean contains(String path) {
+        return _files.containsKey(path);
+    }
+
+    /** Updates the snapshot after the file with path PATH was written or
+     *  deleted. */
+    void update(String path) {
+        StatIndex.Stat stat = StatIndex.stat(new File(_root, path));
+        if (stat == null) {
+            _files.remove(path);
+        } else {
+            _files.put(path, stat);
+        }
+    }
+
+    /** Returns the SHA-1 key of the contents of the file with path PATH,
+     *  or null if there was no such file. */
+    String hash(String path) {
+        if (!_files.containsKey(path)) {
+            return null;
+        }
+        return _index.hash(path, new File(_root, path), _files.get(path));
+    }
+
+    /** Returns the SHA-1 keys of those of the files with paths PATHS
+     *  that exist, hashing them in parallel. */
+    Map<String, String> hashAll(Collection<String> paths) {
+        return hashAll(paths, (path, id) -> id);
+    }
+
+    /** Returns the SHA-1 keys of those of the files with paths PATHS
+     *  that exist, hashing them in parallel.  As soon as a file is
+     *  hashed, THEN is called (on the same thread) with its path and key,
+     *  and its result is used as the key of the file instead. */
+    Map<String, String> hashAll(Collection<String> paths,
+                                BiFunction<String, String, String> then) {
+        ArrayList<String> present = new ArrayList<String>();
+        for (String path : paths) {
+            if (_files.containsKey(path)) {
+                present.add(path);
+            }
+        }
+        ConcurrentHashMap<String, String> result =
+            new ConcurrentHashMap<String, String>();
+        POOL.submit(() -> present.parallelStream().forEach(path -> {
+            String id = hash(path);
+            if (id != null) {
+                result.put(path, then.apply(path, id));
+            }
+        })).join();
+        return new TreeMap<String, String>(result);
+    }
+
+    /** Lists one directory, adding its files to the snapshot and
+     *  scanning its subdirectories as subtasks.  A directory that cannot
+     *  be listed is an error, not an empty directory. */
+    private static class Scan extends RecursiveAction {
+        /** Scans directory DIR0, whose files have paths starting with
+         *  PREFIX0, adding them to FOUND0. */
+        Scan(Path dir0, String prefix0,
+             ConcurrentHashMap<String, StatIndex.Stat> found0) {
+            dir = dir0;
+            prefix = prefix0;
+            found = found0;
+        }
+
+        @Override
+        protected void compute() {
+            List<Scan> subdirs = new ArrayList<Scan>();
+            try (DirectoryStream<Path> entries =
+                     Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        if (!(prefix.isEmpty() && name.equals(".gitlet"))) {
+                            subdirs.add(new Scan(entry, prefix + name + "/",
+                                                 found));
+                        }
+                        continue;
+                    }
+                    StatIndex.Stat stat = StatIndex.stat(entry.toFile());
+                    if (stat != null) {
+                        found.put(prefix + name, stat);
+                    }
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            invokeAll(subdirs);
+        }
+
+        /** The directory scanned. */
+        private final Path dir;
+        /** Prefix of the paths of its files. */
+        private final String prefix;
+        /** The files found so far and their stat data. */
+        private final ConcurrentHashMap<String, StatIndex.Stat> found;
+    }
+
+    /** The pool scanning and hashing runs on, with one thread per
+     *  processor. */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /** The working directory. */
+    private final File _root;
+
+    /** Keys of files hashed before. */
+    private final StatIndex _index;
+
+    /** The files and their stat data, by path. */
+    private final TreeMap<String, StatIndex.Stat> _files =
+        new TreeMap<String, StatIndex.Stat>();
+}
@@ -0,0 +1,65 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of WorkingTree.
+ *  @author Kerem Dilmen
+ */
+public class WorkingTreeTest {
+
+    /** Returns a new temporary directory holding the files top.txt,
+     *  a/one.txt, a/b/two.txt and .gitlet/hidden. */
+    private static File tree() {
+        File dir = TestUtils.tempDir();
+        new File(dir, "a/b").mkdirs();
+        new File(dir, ".gitlet").mkdirs();
+        Utils.writeContents(new File(dir, "top.txt"), "top");
+        Utils.writeContents(new File(dir, "a/one.txt"), "one");
+        Utils.writeContents(new File(dir, "a/b/two.txt"), "two");
+        Utils.writeContents(new File(dir, ".gitlet/hidden"), "hidden");
+        return dir;
+    }
+
+    @Test
+    public void listsNestedFiles() {
+        File dir = tree();
+        WorkingTree working = new WorkingTree(
+            dir, new StatIndex(new File(dir, ".gitlet/index")));
+        assertEquals(Arrays.asList("a/b/two.txt", "a/one.txt", "top.txt"),
+                     List.copyOf(working.files()));
+        assertTrue(working.contains("a/one.txt"));
+        assertFalse(working.contains(".gitlet/hidden"));
+    }
+
+    @Test
+    public void hashesInParallel() {
+        File dir = tree();
+        StatIndex index = new StatIndex(new File(dir, ".gitlet/index"));
+        WorkingTree working = new WorkingTree(dir, index);
+        Map<String, String> hashes = working.hashAll(
+            Arrays.asList("a/b/two.txt", "top.txt", "none.txt"));
+        assertEquals(2, hashes.size());
+        assertEquals(Utils.sha1("two"), hashes.get("a/b/two.txt"));
+        assertEquals(Utils.sha1("top"), hashes.get("top.txt"));
+        assertEquals(Utils.sha1("one"), working.hash("a/one.txt"));
+        assertNull(working.hash("none.txt"));
+        assertEquals(3, index.rehashed());
+    }
+
+    @Test
+    public void unreadableDirectoryIsAnError() {
+        File dir = TestUtils.tempDir();
+        try {
+            new WorkingTree(new File(dir, "missing"),
+                            new StatIndex(new File(dir, "index")));
+            fail("listed a missing directory");
+        } catch (IllegalArgumentException excp) {
+            return;
+        }
+    }
+}